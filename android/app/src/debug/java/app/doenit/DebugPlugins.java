@@ -0,0 +1,16 @@
+package doenit.app;
+
+import com.getcapacitor.Plugin;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Plugins registered in debug builds only; release builds get an empty list
+ * from their own copy of this class.
+ */
+class DebugPlugins {
+    static List<Class<? extends Plugin>> all() {
+        return Collections.singletonList(WidgetSyncDebugPlugin.class);
+    }
+}
@@ -0,0 +1,82 @@
+package doenit.app;
+
+import android.content.Context;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Local stand-in for the FCM backend. Builds widget delta messages against the
+ * current snapshot and feeds them through {@link WidgetSync#handle}, the same
+ * path real messages take, so delta handling and coalescing can be exercised
+ * and timed without a server.
+ */
+public class FakeMessageSource {
+    private final Random random;
+    private long revision;
+    private int created;
+
+    /**
+     * @param firstRevision Revision of the first message; must be above the
+     *                      last applied one for the messages to be applied
+     */
+    public FakeMessageSource(long firstRevision, long seed) {
+        this.revision = firstRevision;
+        this.random = new Random(seed);
+    }
+
+    /**
+     * Builds one delta: an existing task is renamed and moved by a few days,
+     * and every few messages a task is added or removed.
+     */
+    public Map<String, String> next(JSONArray snapshot) throws JSONException {
+        JSONArray upserts = new JSONArray();
+        JSONArray removed = new JSONArray();
+
+        if (snapshot.length() > 0) {
+            JSONObject task = new JSONObject(snapshot.getJSONObject(random.nextInt(snapshot.length())).toString());
+            task.put("name", task.optString("name", "") + " *");
+            task.put("due_date", TaskUtil.toIsoDate(TaskUtil.today() + random.nextInt(14)));
+            upserts.put(task);
+        }
+
+        if (revision % 5 == 0) {
+            JSONObject task = new JSONObject();
+            task.put("id", "fake-" + revision + "-" + created++);
+            task.put("name", "Fake task " + created);
+            task.put("due_date", TaskUtil.toIsoDate(TaskUtil.today() + random.nextInt(7)));
+            upserts.put(task);
+        }
+
+        if (revision % 7 == 0 && snapshot.length() > 0) {
+            removed.put(snapshot.getJSONObject(random.nextInt(snapshot.length())).optString("id"));
+        }
+
+        Map<String, String> data = new HashMap<>();
+        data.put("type", WidgetSync.MESSAGE_TYPE);
+        data.put("revision", String.valueOf(revision++));
+        data.put("upserts", upserts.toString());
+        data.put("removed", removed.toString());
+        return data;
+    }
+
+    /**
+     * Sends a burst of {@code count} deltas built against the current snapshot.
+     *
+     * @return The number of messages sent.
+     */
+    public int send(Context context, int count) throws JSONException {
+        String tasksJson = DB.getString(Const.WIDGET_TASKS);
+        JSONArray snapshot = Utils.isEmpty(tasksJson) ? new JSONArray() : new JSONArray(tasksJson);
+
+        for (int i = 0; i < count; i++) {
+            WidgetSync.handle(context, next(snapshot));
+        }
+        return count;
+    }
+}
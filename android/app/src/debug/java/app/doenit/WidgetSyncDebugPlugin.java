@@ -0,0 +1,65 @@
+package doenit.app;
+
+import android.content.Context;
+
+import com.getcapacitor.JSObject;
+import com.getcapacitor.Plugin;
+import com.getcapacitor.PluginCall;
+import com.getcapacitor.PluginMethod;
+import com.getcapacitor.annotation.CapacitorPlugin;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Debug builds only: feeds widget delta messages through the same path as
+ * FCM, so delta handling can be exercised without a server.
+ */
+@CapacitorPlugin(name = "WidgetSyncDebug")
+public class WidgetSyncDebugPlugin extends Plugin {
+
+    /**
+     * Either {@code messages} (data payloads as string maps) are sent as-is,
+     * or {@code count} deltas are generated by {@link FakeMessageSource}
+     * against the current snapshot.
+     */
+    @PluginMethod
+    public void simulateWidgetDeltas(PluginCall call) {
+        try {
+            Context context = getContext();
+            DB.init(context);
+            int sent = 0;
+
+            JSONArray messages = call.getArray("messages");
+            if (messages != null) {
+                for (int i = 0; i < messages.length(); i++) {
+                    JSONObject message = messages.getJSONObject(i);
+                    Map<String, String> data = new HashMap<>();
+                    Iterator<String> keys = message.keys();
+                    while (keys.hasNext()) {
+                        String key = keys.next();
+                        data.put(key, message.getString(key));
+                    }
+                    if (WidgetSync.handle(context, data)) {
+                        sent++;
+                    }
+                }
+            } else {
+                int count = call.getInt("count", 1);
+                long firstRevision = WidgetSync.getRevision(context) + 1;
+                sent = new FakeMessageSource(firstRevision, System.nanoTime()).send(context, count);
+            }
+
+            JSObject ret = new JSObject();
+            ret.put("success", true);
+            ret.put("sent", sent);
+            call.resolve(ret);
+        } catch (Exception e) {
+            call.reject("Failed to simulate widget deltas: " + e.getMessage());
+        }
+    }
+}
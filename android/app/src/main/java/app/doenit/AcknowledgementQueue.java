@@ -0,0 +1,307 @@
+package doenit.app;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+
+import com.android.billingclient.api.AcknowledgePurchaseResponseListener;
+import com.android.billingclient.api.BillingClient.BillingResponseCode;
+import com.android.billingclient.api.BillingResult;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Persisted queue of purchase tokens still to be acknowledged with Play.
+ *
+ * Play refunds a purchase that is not acknowledged within three days of
+ * being made, so a token stays queued across failures and restarts until Play
+ * accepts it, says it is unknown, or that window has passed; the queue has its
+ * own preferences file, since a token lost to {@link DB#clearData()} would be
+ * refunded. The queue is drained whenever the billing connection is ready,
+ * {@code BATCH_SIZE} tokens at a time; a failed token is retried with
+ * exponential backoff. Each token is queued once, so a purchase update and the
+ * web layer's acknowledgePurchase for the same token share one request, and
+ * every caller waiting on it gets its result. A caller joining a backed-off
+ * token is not left waiting out the backoff: the token is retried at once.
+ */
+public class AcknowledgementQueue {
+    private static final String TAG = Const.LOG_TAG_DOENIT;
+    private static final String PREFS_NAME = "DoenitAcknowledgements";
+    private static final String KEY_PENDING = "pending";
+
+    private static final int BATCH_SIZE = 5;
+    private static final long BASE_BACKOFF_MS = 2000;
+    private static final long MAX_BACKOFF_MS = 5 * 60 * 1000;
+    private static final long ACK_WINDOW_MS = 3L * 24 * 60 * 60 * 1000;
+
+    private static class Entry {
+        final String token;
+        final long enqueuedAt;
+        // When the purchase was made, or 0 if no caller knew it
+        long purchaseTime;
+        int attempts;
+        long nextAttemptAt;
+        boolean inFlight;
+        final List<AcknowledgePurchaseResponseListener> waiters = new ArrayList<>();
+
+        Entry(String token, long enqueuedAt, long purchaseTime) {
+            this.token = token;
+            this.enqueuedAt = enqueuedAt;
+            this.purchaseTime = purchaseTime;
+        }
+
+        /**
+         * Start of Play's acknowledgement window: the purchase time, or when
+         * the token was queued if that is not known.
+         */
+        long windowStart() {
+            return purchaseTime != 0 ? purchaseTime : enqueuedAt;
+        }
+    }
+
+    private static AcknowledgementQueue instance;
+
+    private final SharedPreferences prefs;
+    private final Map<String, Entry> pending = new LinkedHashMap<>();
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Runnable drainTask = this::drain;
+    private BillingGateway gateway;
+
+    /**
+     * Loads the queue from its file. Package-private so tests can reload it
+     * as a restarted process would; the app uses {@link #get(Context)}.
+     */
+    AcknowledgementQueue(Context context) {
+        prefs = context.getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        load();
+    }
+
+    public static synchronized AcknowledgementQueue get(Context context) {
+        if (instance == null) {
+            instance = new AcknowledgementQueue(context);
+        }
+        return instance;
+    }
+
+    /**
+     * Sets the client tokens are acknowledged through; null stops draining
+     * (the tokens stay queued).
+     */
+    public synchronized void attach(BillingGateway gateway) {
+        this.gateway = gateway;
+        if (gateway == null) {
+            handler.removeCallbacks(drainTask);
+        }
+    }
+
+    /**
+     * Queues a token unless it is queued already. A waiter joining a queued
+     * token makes it due now, so the next {@link #drain()} retries it.
+     *
+     * @param purchaseTime When the purchase was made, or 0 if not known
+     * @param waiter       Told the result of the next attempt for the token,
+     *                     or null
+     */
+    public synchronized void add(String token, long purchaseTime, AcknowledgePurchaseResponseListener waiter) {
+        Entry entry = pending.get(token);
+        if (entry == null) {
+            entry = new Entry(token, System.currentTimeMillis(), purchaseTime);
+            pending.put(token, entry);
+            save();
+        } else {
+            Logger.d(TAG, () -> "Acknowledgement already queued, sharing it");
+            boolean changed = false;
+            if (entry.purchaseTime == 0 && purchaseTime != 0) {
+                entry.purchaseTime = purchaseTime;
+                changed = true;
+            }
+            if (waiter != null && !entry.inFlight && entry.nextAttemptAt != 0) {
+                entry.nextAttemptAt = 0;
+                changed = true;
+            }
+            if (changed) {
+                save();
+            }
+        }
+
+        if (waiter != null) {
+            entry.waiters.add(waiter);
+        }
+        updateMetrics();
+    }
+
+    /**
+     * Starts the next batch: up to {@code BATCH_SIZE} tokens that are due and
+     * not already being acknowledged. Does nothing until the connection is
+     * ready; call again once it is.
+     */
+    public void drain() {
+        List<Entry> batch = new ArrayList<>();
+        BillingGateway client;
+        synchronized (this) {
+            client = gateway;
+            if (client == null || !client.isReady()) {
+                return;
+            }
+
+            long now = System.currentTimeMillis();
+            int inFlight = 0;
+            for (Entry entry : pending.values()) {
+                if (entry.inFlight) {
+                    inFlight++;
+                }
+            }
+
+            for (Entry entry : pending.values()) {
+                if (inFlight + batch.size() >= BATCH_SIZE) {
+                    break;
+                }
+                if (!entry.inFlight && entry.nextAttemptAt <= now) {
+                    entry.inFlight = true;
+                    batch.add(entry);
+                }
+            }
+        }
+
+        if (!batch.isEmpty()) {
+            Logger.d(TAG, () -> "Acknowledging " + batch.size() + " purchase(s)");
+        }
+        for (Entry entry : batch) {
+            long start = Metrics.start();
+            client.acknowledgePurchase(entry.token, result -> {
+                Metrics.stop(Const.METRIC_BILLING_ACKNOWLEDGE, start);
+                onResult(entry, result);
+            });
+        }
+    }
+
+    private void onResult(Entry entry, BillingResult result) {
+        int code = result.getResponseCode();
+        List<AcknowledgePurchaseResponseListener> waiters;
+
+        synchronized (this) {
+            entry.inFlight = false;
+            waiters = new ArrayList<>(entry.waiters);
+            entry.waiters.clear();
+
+            long now = System.currentTimeMillis();
+            if (code == BillingResponseCode.OK) {
+                pending.remove(entry.token);
+                Logger.d(TAG, "Purchase acknowledged successfully");
+            } else if (isFinal(code) || now - entry.windowStart() > ACK_WINDOW_MS) {
+                pending.remove(entry.token);
+                Metrics.increment(Const.METRIC_BILLING_ACK_DROPPED);
+                Logger.e(TAG, "Giving up acknowledging purchase: " + result.getDebugMessage());
+            } else {
+                entry.attempts++;
+                entry.nextAttemptAt = now + backoff(entry.attempts);
+                Metrics.increment(Const.METRIC_BILLING_ACK_RETRY);
+                Logger.w(TAG, "Failed to acknowledge purchase, retrying in "
+                        + (entry.nextAttemptAt - now) + " ms: " + result.getDebugMessage());
+            }
+
+            save();
+            updateMetrics();
+        }
+
+        for (AcknowledgePurchaseResponseListener waiter : waiters) {
+            waiter.onAcknowledgePurchaseResponse(result);
+        }
+
+        drain();
+        scheduleNext();
+    }
+
+    /**
+     * Posts a drain for when the earliest backed-off token is due.
+     */
+    private synchronized void scheduleNext() {
+        long next = Long.MAX_VALUE;
+        for (Entry entry : pending.values()) {
+            if (!entry.inFlight) {
+                next = Math.min(next, entry.nextAttemptAt);
+            }
+        }
+
+        handler.removeCallbacks(drainTask);
+        if (next != Long.MAX_VALUE && gateway != null) {
+            handler.postDelayed(drainTask, Math.max(0, next - System.currentTimeMillis()));
+        }
+    }
+
+    /**
+     * Play will never accept the token: it is unknown, or was refunded.
+     */
+    private static boolean isFinal(int code) {
+        return code == BillingResponseCode.ITEM_NOT_OWNED || code == BillingResponseCode.DEVELOPER_ERROR;
+    }
+
+    private static long backoff(int attempts) {
+        long delay = BASE_BACKOFF_MS << Math.min(attempts - 1, 16);
+        return Math.min(delay, MAX_BACKOFF_MS);
+    }
+
+    public synchronized int size() {
+        return pending.size();
+    }
+
+    /**
+     * Publishes the queue depth and the age of its oldest token.
+     */
+    public synchronized void updateMetrics() {
+        long oldest = 0;
+        long now = System.currentTimeMillis();
+        for (Entry entry : pending.values()) {
+            oldest = Math.max(oldest, now - entry.enqueuedAt);
+        }
+        Metrics.setGauge(Const.METRIC_BILLING_ACK_QUEUE_DEPTH, pending.size());
+        Metrics.setGauge(Const.METRIC_BILLING_ACK_QUEUE_AGE, oldest);
+    }
+
+    private void save() {
+        try {
+            JSONArray array = new JSONArray();
+            for (Entry entry : pending.values()) {
+                JSONObject json = new JSONObject();
+                json.put("token", entry.token);
+                json.put("enqueued_at", entry.enqueuedAt);
+                json.put("purchase_time", entry.purchaseTime);
+                json.put("attempts", entry.attempts);
+                json.put("next_attempt_at", entry.nextAttemptAt);
+                array.put(json);
+            }
+            prefs.edit().putString(KEY_PENDING, array.toString()).apply();
+        } catch (JSONException e) {
+            Logger.e(TAG, "Error saving acknowledgement queue", e);
+        }
+    }
+
+    private void load() {
+        String json = prefs.getString(KEY_PENDING, null);
+        if (Utils.isEmpty(json)) {
+            return;
+        }
+
+        try {
+            JSONArray array = new JSONArray(json);
+            for (int i = 0; i < array.length(); i++) {
+                JSONObject item = array.getJSONObject(i);
+                Entry entry = new Entry(item.getString("token"), item.getLong("enqueued_at"),
+                        item.optLong("purchase_time", 0));
+                entry.attempts = item.optInt("attempts", 0);
+                entry.nextAttemptAt = item.optLong("next_attempt_at", 0);
+                pending.put(entry.token, entry);
+            }
+        } catch (JSONException e) {
+            Logger.e(TAG, "Error loading acknowledgement queue", e);
+        }
+    }
+}
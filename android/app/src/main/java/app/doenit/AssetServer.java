@@ -0,0 +1,221 @@
+package doenit.app;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.content.res.AssetManager;
+import android.net.Uri;
+import android.webkit.WebResourceRequest;
+import android.webkit.WebResourceResponse;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Serves the SPA's hashed, immutable chunks ({@code /_app/immutable/...}) from
+ * a process-wide LRU cache of the packaged assets.
+ *
+ * Each chunk is read out of the APK once; the cache outlives the activity, so
+ * a recreated WebView gets its chunks from memory, with a year-long immutable
+ * Cache-Control. Paths with no such asset are remembered, so a miss costs one
+ * failed asset open per process rather than one per request.
+ *
+ * Everything else (index.html, unhashed files, missing chunks) falls through
+ * to Capacitor's own asset handler.
+ */
+public class AssetServer {
+    private static final String TAG = Const.LOG_TAG_DOENIT;
+    private static final String PREFS_NAME = "DoenitAssets";
+    private static final String KEY_ENABLED = "enabled";
+
+    private static final String IMMUTABLE_PREFIX = "/_app/immutable/";
+    // Capacitor copies the web build into assets/public
+    private static final String ASSET_ROOT = "public";
+    private static final String CACHE_CONTROL = "public, max-age=31536000, immutable";
+    private static final long CACHE_BUDGET_BYTES = 6L * 1024 * 1024;
+
+    private static final Map<String, byte[]> cache = new LinkedHashMap<>(64, 0.75f, true);
+    // Guarded by cache, like cachedBytes
+    private static final Set<String> missing = new HashSet<>();
+    private static long cachedBytes;
+
+    private static final CacheRegistry.Cache registration = new CacheRegistry.Cache() {
+        @Override
+        public String name() {
+            return "asset_chunks";
+        }
+
+        @Override
+        public int tier() {
+            return CacheRegistry.TIER_RETAINED;
+        }
+
+        @Override
+        public long sizeBytes() {
+            synchronized (cache) {
+                return cachedBytes;
+            }
+        }
+
+        @Override
+        public void trim() {
+            clearCache();
+        }
+    };
+
+    static {
+        CacheRegistry.register(registration);
+    }
+
+    /**
+     * Whether chunks are served from here; off falls back to Capacitor's
+     * handler for every request, for comparing startup timelines.
+     */
+    public static boolean isEnabled(Context context) {
+        return getPrefs(context).getBoolean(KEY_ENABLED, true);
+    }
+
+    public static void setEnabled(Context context, boolean enabled) {
+        getPrefs(context).edit().putBoolean(KEY_ENABLED, enabled).apply();
+    }
+
+    private static SharedPreferences getPrefs(Context context) {
+        return context.getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * @return The response for an immutable chunk, or null to let the
+     *         default handler serve the request.
+     */
+    public static WebResourceResponse serve(AssetManager assets, String host, WebResourceRequest request) {
+        Uri url = request.getUrl();
+        String path = url.getPath();
+        if (path == null || !path.startsWith(IMMUTABLE_PREFIX) || !"GET".equals(request.getMethod())
+                || host == null || !host.equals(url.getHost())) {
+            return null;
+        }
+
+        long start = Metrics.start();
+        try {
+            byte[] body = get(assets, path);
+            if (body == null) {
+                return null;
+            }
+
+            Map<String, String> headers = new HashMap<>();
+            headers.put("Cache-Control", CACHE_CONTROL);
+            headers.put("Content-Length", String.valueOf(body.length));
+            return new WebResourceResponse(mimeTypeOf(path), "UTF-8", 200, "OK", headers,
+                    new ByteArrayInputStream(body));
+        } finally {
+            Metrics.stop(Const.METRIC_ASSET_SERVE, start);
+        }
+    }
+
+    private static byte[] get(AssetManager assets, String path) {
+        synchronized (cache) {
+            byte[] body = cache.get(path);
+            if (body != null) {
+                Metrics.increment(Const.METRIC_ASSET_CACHE_HIT);
+                return body;
+            }
+            if (missing.contains(path)) {
+                return null;
+            }
+        }
+
+        Metrics.increment(Const.METRIC_ASSET_CACHE_MISS);
+        byte[] body;
+        Tracer.Span span = Tracer.begin("AssetServer.load", path);
+        try {
+            body = load(assets, ASSET_ROOT + path);
+        } catch (IOException e) {
+            // Missing (or unreadable): not ours to serve, now or later
+            Logger.d(TAG, () -> "No asset for " + path);
+            synchronized (cache) {
+                missing.add(path);
+            }
+            return null;
+        } finally {
+            span.end();
+        }
+
+        synchronized (cache) {
+            if (body.length <= CACHE_BUDGET_BYTES && !cache.containsKey(path)) {
+                cache.put(path, body);
+                cachedBytes += body.length;
+                evictLocked();
+            }
+            Metrics.setGauge(Const.METRIC_ASSET_CACHE_BYTES, cachedBytes);
+        }
+        return body;
+    }
+
+    private static void evictLocked() {
+        Iterator<Map.Entry<String, byte[]>> entries = cache.entrySet().iterator();
+        while (cachedBytes > CACHE_BUDGET_BYTES && entries.hasNext()) {
+            cachedBytes -= entries.next().getValue().length;
+            entries.remove();
+        }
+    }
+
+    /**
+     * Reads the asset out of the APK; the asset manager inflates entries the
+     * build compressed.
+     */
+    private static byte[] load(AssetManager assets, String name) throws IOException {
+        try (InputStream in = assets.open(name, AssetManager.ACCESS_STREAMING)) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(64 * 1024);
+            byte[] chunk = new byte[16 * 1024];
+            int n;
+            while ((n = in.read(chunk)) != -1) {
+                out.write(chunk, 0, n);
+            }
+            return out.toByteArray();
+        }
+    }
+
+    private static String mimeTypeOf(String path) {
+        String extension = path.substring(path.lastIndexOf('.') + 1);
+        switch (extension) {
+            case "js":
+            case "mjs":
+                return "text/javascript";
+            case "css":
+                return "text/css";
+            case "json":
+                return "application/json";
+            case "svg":
+                return "image/svg+xml";
+            case "wasm":
+                return "application/wasm";
+            case "woff2":
+                return "font/woff2";
+            case "woff":
+                return "font/woff";
+            case "ttf":
+                return "font/ttf";
+            case "png":
+                return "image/png";
+            case "webp":
+                return "image/webp";
+            default:
+                return "application/octet-stream";
+        }
+    }
+
+    public static void clearCache() {
+        synchronized (cache) {
+            cache.clear();
+            cachedBytes = 0;
+            Metrics.setGauge(Const.METRIC_ASSET_CACHE_BYTES, 0);
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package doenit.app;
+
+import android.webkit.WebResourceRequest;
+import android.webkit.WebResourceResponse;
+import android.webkit.WebView;
+
+import com.getcapacitor.Bridge;
+import com.getcapacitor.BridgeWebViewClient;
+
+/**
+ * Capacitor's WebView client with {@link AssetServer} in front of its asset
+ * handler.
+ */
+public class AssetWebViewClient extends BridgeWebViewClient {
+    private final Bridge bridge;
+
+    public AssetWebViewClient(Bridge bridge) {
+        super(bridge);
+        this.bridge = bridge;
+    }
+
+    @Override
+    public WebResourceResponse shouldInterceptRequest(WebView view, WebResourceRequest request) {
+        WebResourceResponse response = AssetServer.serve(bridge.getContext().getAssets(), bridge.getHost(), request);
+        return response != null ? response : super.shouldInterceptRequest(view, request);
+    }
+}
@@ -0,0 +1,44 @@
+package doenit.app;
+
+import android.app.Activity;
+
+import com.android.billingclient.api.AcknowledgePurchaseResponseListener;
+import com.android.billingclient.api.BillingClientStateListener;
+import com.android.billingclient.api.BillingResult;
+import com.android.billingclient.api.ProductDetails;
+import com.android.billingclient.api.ProductDetailsResponseListener;
+import com.android.billingclient.api.PurchasesResponseListener;
+import com.android.billingclient.api.PurchasesUpdatedListener;
+
+import java.util.List;
+
+/**
+ * The Play Billing operations {@link BillingPlugin} uses, so a scripted client
+ * can stand in for Play off-device.
+ *
+ * Arguments are plain values rather than Play's param objects, which have no
+ * getters a stand-in could read. Results and listeners are Play's own types.
+ * Callbacks may arrive on any thread.
+ */
+public interface BillingGateway {
+    interface Factory {
+        BillingGateway create(Activity activity, PurchasesUpdatedListener listener);
+    }
+
+    void startConnection(BillingClientStateListener listener);
+
+    boolean isReady();
+
+    void endConnection();
+
+    void queryProductDetails(String productType, List<String> productIds, ProductDetailsResponseListener listener);
+
+    void queryPurchases(String productType, PurchasesResponseListener listener);
+
+    void acknowledgePurchase(String purchaseToken, AcknowledgePurchaseResponseListener listener);
+
+    /**
+     * @param accountId Obfuscated account ID to tag the purchase with, or null
+     */
+    BillingResult launchBillingFlow(Activity activity, ProductDetails details, String offerToken, String accountId);
+}
@@ -2,15 +2,9 @@ package doenit.app;
 
 import android.app.Activity;
 import android.app.AlertDialog;
-import android.util.Log;
 
 import com.android.billingclient.api.*;
 import com.android.billingclient.api.AccountIdentifiers;
-import com.android.billingclient.api.QueryPurchasesParams;
-import com.android.billingclient.api.QueryProductDetailsParams;
-import com.android.billingclient.api.QueryProductDetailsParams.Product;
-import com.android.billingclient.api.QueryProductDetailsParams.Product.Builder;
-import com.android.billingclient.api.AcknowledgePurchaseParams;
 import com.android.billingclient.api.ProductDetails.SubscriptionOfferDetails;
 import com.android.billingclient.api.ProductDetails.PricingPhase;
 
@@ -36,23 +30,31 @@ public class BillingPlugin extends Plugin {
     private static final int MAX_RETRIES = 3;
     private static final long RETRY_DELAY_MS = 1000;
 
-    private BillingClient billing_client;
-    private PluginCall pending_purchase_call;
+    private static BillingGateway.Factory gateway_factory = PlayBillingGateway::new;
+
+    private BillingGateway billing_client;
+    private AcknowledgementQueue ack_queue;
+    private final PurchaseFlows purchase_flows = new PurchaseFlows(this::handleFlowTimeout);
+
+    /**
+     * Replaces Play's billing client for plugins initialized from now on, so
+     * tests can script it. Null restores Play.
+     */
+    static void setGatewayFactory(BillingGateway.Factory factory) {
+        gateway_factory = factory != null ? factory : PlayBillingGateway::new;
+    }
 
     @PluginMethod
     public void initialize(PluginCall call) {
         Activity activity = getActivity();
         if (activity == null) {
             String msg = "Activity not available for billing";
-            Log.e(TAG, msg);
+            Logger.e(TAG, msg);
             rejectWithError(call, "ACTIVITY_UNAVAILABLE", msg);
             return;
         }
 
-        BillingClient.Builder builder = BillingClient.newBuilder(activity);
-        builder.setListener(this::handlePurchaseUpdate);
-        builder.enablePendingPurchases();
-        billing_client = builder.build();
+        billing_client = gateway_factory.create(activity, this::handlePurchaseUpdate);
 
         if (billing_client == null) {
             String msg = "Failed to initialize billing client";
@@ -60,16 +62,28 @@ public class BillingPlugin extends Plugin {
             return;
         }
 
+        ack_queue = AcknowledgementQueue.get(getContext());
+        ack_queue.attach(billing_client);
         connectWithRetry(call, null, 0);
     }
 
     private void connectWithRetry(PluginCall call, Runnable on_success, int retry_count) {
+        // Anything but the first connection from initialize is a reconnect
+        if (on_success != null || retry_count > 0) {
+            Metrics.increment(Const.METRIC_BILLING_RECONNECT);
+        }
+
+        long start = Metrics.start();
         BillingClientStateListener listener = new BillingClientStateListener() {
             @Override
             public void onBillingSetupFinished(BillingResult billing_result) {
+                Metrics.stop(Const.METRIC_BILLING_CONNECT, start);
                 int code = billing_result.getResponseCode();
 
                 if (code == BillingResponseCode.OK) {
+                    // Tokens left over from failed attempts or an earlier run
+                    ack_queue.drain();
+
                     if (on_success != null) {
                         on_success.run();
                         return;
@@ -91,7 +105,7 @@ public class BillingPlugin extends Plugin {
                 int attempt = retry_count + 1;
                 String log_msg = "Billing connection failed, retrying... ";
                 log_msg += "(" + attempt + "/" + MAX_RETRIES + ")";
-                Log.w(TAG, log_msg);
+                Logger.w(TAG, log_msg);
 
                 Activity activity = getActivity();
                 if (activity == null) {
@@ -113,7 +127,7 @@ public class BillingPlugin extends Plugin {
 
             @Override
             public void onBillingServiceDisconnected() {
-                Log.w(TAG, "Billing service disconnected");
+                Logger.w(TAG, "Billing service disconnected");
             }
         };
 
@@ -134,6 +148,7 @@ public class BillingPlugin extends Plugin {
     }
 
     private void rejectWithError(PluginCall call, String error_code, String message) {
+        Metrics.increment(Const.METRIC_BILLING_ERROR);
         if (call == null) {
             return;
         }
@@ -163,7 +178,7 @@ public class BillingPlugin extends Plugin {
 
         int count = purchases.size();
         String msg = "Purchase successful, processing " + count + " purchase(s)";
-        Log.d(TAG, msg);
+        Logger.d(TAG, msg);
 
         for (Purchase purchase : purchases) {
             processPurchase(purchase);
@@ -171,44 +186,49 @@ public class BillingPlugin extends Plugin {
     }
 
     private void handleUserCancelled() {
-        Log.d(TAG, "User cancelled purchase");
-
-        if (pending_purchase_call == null) {
-            return;
-        }
+        Logger.d(TAG, "User cancelled purchase");
 
+        // Updates without purchases belong to the dialog that was showing
         String msg = "User cancelled the purchase";
-        rejectWithError(pending_purchase_call, "USER_CANCELED", msg);
-        clearPendingPurchaseCall();
+        rejectAll(purchase_flows.takeLaunched(), "USER_CANCELED", msg);
     }
 
     private void handlePurchaseError(BillingResult billing_result, int response_code) {
         String msg = "Purchase failed: " + billing_result.getDebugMessage();
-        Log.e(TAG, msg);
-
-        if (pending_purchase_call == null) {
-            return;
-        }
+        Logger.e(TAG, msg);
 
         String error_code = String.valueOf(response_code);
         String error_msg = billing_result.getDebugMessage();
-        rejectWithError(pending_purchase_call, error_code, error_msg);
-        clearPendingPurchaseCall();
+        rejectAll(purchase_flows.takeLaunched(), error_code, error_msg);
     }
 
-    private void clearPendingPurchaseCall() {
-        pending_purchase_call = null;
+    private void handleFlowTimeout(String product_id, List<PluginCall> calls) {
+        String msg = "No answer from the billing flow for: " + product_id;
+        Logger.w(TAG, msg);
+        rejectAll(calls, "TIMEOUT", msg);
+    }
+
+    private void rejectAll(List<PluginCall> calls, String error_code, String message) {
+        for (PluginCall call : calls) {
+            rejectWithError(call, error_code, message);
+        }
     }
 
     private void processPurchase(Purchase purchase) {
         int purchase_state = purchase.getPurchaseState();
         boolean is_pending = purchase_state == PurchaseState.PENDING;
 
-        if (pending_purchase_call != null) {
+        // Only flows for this purchase's products are answered; a purchase
+        // nobody is waiting on (e.g. a pending one completing later) is not
+        List<String> products = purchase.getProducts();
+        for (String product_id : products) {
+            List<PluginCall> calls = purchase_flows.take(product_id);
+            if (calls.isEmpty()) {
+                continue;
+            }
+
             JSObject result = new JSObject();
             String token = purchase.getPurchaseToken();
-            List<String> products = purchase.getProducts();
-            String product_id = products.get(0);
             String order_id = purchase.getOrderId();
 
             result.put("purchase_token", token);
@@ -216,8 +236,14 @@ public class BillingPlugin extends Plugin {
             result.put("order_id", order_id);
             result.put("pending", is_pending);
 
-            pending_purchase_call.resolve(result);
-            clearPendingPurchaseCall();
+            if (!is_pending) {
+                putEntitlement(result, purchase);
+                EntitlementStore.get(getContext()).save();
+            }
+
+            for (PluginCall call : calls) {
+                call.resolve(result);
+            }
         }
 
         if (is_pending) {
@@ -232,28 +258,8 @@ public class BillingPlugin extends Plugin {
             return;
         }
 
-        acknowledgePurchaseInternal(purchase);
-    }
-
-    private void acknowledgePurchaseInternal(Purchase purchase) {
-        String token = purchase.getPurchaseToken();
-
-        AcknowledgePurchaseParams.Builder builder = AcknowledgePurchaseParams.newBuilder();
-        builder.setPurchaseToken(token);
-        AcknowledgePurchaseParams params = builder.build();
-
-        billing_client.acknowledgePurchase(params, result -> {
-            int code = result.getResponseCode();
-
-            if (code == BillingResponseCode.OK) {
-                Log.d(TAG, "Purchase acknowledged successfully");
-                return;
-            }
-
-            String msg = "Failed to acknowledge purchase: ";
-            msg += result.getDebugMessage();
-            Log.e(TAG, msg);
-        });
+        ack_queue.add(purchase.getPurchaseToken(), purchase.getPurchaseTime(), null);
+        ack_queue.drain();
     }
 
     @PluginMethod
@@ -271,34 +277,32 @@ public class BillingPlugin extends Plugin {
             return;
         }
 
-        List<Product> product_list = buildProductList(call, product_ids);
+        List<String> product_list = buildProductList(call, product_ids);
         if (product_list == null) {
             return;
         }
 
-        QueryProductDetailsParams.Builder builder = QueryProductDetailsParams.newBuilder();
-        builder.setProductList(product_list);
-        QueryProductDetailsParams params = builder.build();
-
-        billing_client.queryProductDetailsAsync(
-                params,
+        long start = Metrics.start();
+        billing_client.queryProductDetails(
+                ProductType.SUBS,
+                product_list,
                 (result, details_list) -> {
+                    Metrics.stop(Const.METRIC_BILLING_QUERY_PRODUCTS, start);
                     handleProductDetailsResponse(call, result, details_list);
                 });
     }
 
-    private List<Product> buildProductList(PluginCall call, JSArray product_ids) {
-        List<Product> product_list = new ArrayList<>();
+    private List<String> buildProductList(PluginCall call, JSArray product_ids) {
+        List<String> product_list = new ArrayList<>();
 
         try {
             int count = product_ids.length();
             for (int i = 0; i < count; i++) {
                 String product_id = product_ids.getString(i);
-                Product product = createProduct(product_id);
-                product_list.add(product);
+                product_list.add(product_id);
             }
         } catch (JSONException e) {
-            Log.e(TAG, "Invalid product IDs", e);
+            Logger.e(TAG, "Invalid product IDs", e);
             String msg = "Invalid product IDs: " + e.getMessage();
             rejectWithError(call, "INVALID_PARAMS", msg);
             return null;
@@ -307,20 +311,13 @@ public class BillingPlugin extends Plugin {
         return product_list;
     }
 
-    private Product createProduct(String product_id) {
-        Builder builder = QueryProductDetailsParams.Product.newBuilder();
-        builder.setProductId(product_id);
-        builder.setProductType(ProductType.SUBS);
-        return builder.build();
-    }
-
     private void handleProductDetailsResponse(PluginCall call, BillingResult billing_result,
             List<ProductDetails> product_details_list) {
         int response_code = billing_result.getResponseCode();
         if (response_code != BillingResponseCode.OK) {
             String msg = "Failed to query products: ";
             msg += billing_result.getDebugMessage();
-            Log.e(TAG, msg);
+            Logger.e(TAG, msg);
             String code = String.valueOf(response_code);
             rejectWithError(call, code, msg);
             return;
@@ -402,18 +399,17 @@ public class BillingPlugin extends Plugin {
             return;
         }
 
-        pending_purchase_call = call;
-
-        List<Product> product_list = new ArrayList<>();
-        Product product = createProduct(product_id);
-        product_list.add(product);
+        if (!purchase_flows.join(product_id, call)) {
+            Logger.d(TAG, () -> "Purchase of " + product_id + " already in progress, waiting on it");
+            return;
+        }
 
-        QueryProductDetailsParams.Builder builder = QueryProductDetailsParams.newBuilder();
-        builder.setProductList(product_list);
-        QueryProductDetailsParams params = builder.build();
+        List<String> product_list = new ArrayList<>();
+        product_list.add(product_id);
 
-        billing_client.queryProductDetailsAsync(
-                params,
+        billing_client.queryProductDetails(
+                ProductType.SUBS,
+                product_list,
                 (result, details_list) -> {
                     handleStartPurchaseResponse(
                             result,
@@ -430,14 +426,14 @@ public class BillingPlugin extends Plugin {
         if (response_code != BillingResponseCode.OK) {
             String msg = "Failed to query product: ";
             msg += billing_result.getDebugMessage();
-            Log.e(TAG, msg);
-            rejectPendingPurchase("QUERY_FAILED", msg);
+            Logger.e(TAG, msg);
+            rejectFlow(product_id, "QUERY_FAILED", msg);
             return;
         }
 
         if (product_details_list == null || product_details_list.isEmpty()) {
             String msg = "Product not found: " + product_id;
-            rejectPendingPurchase("PRODUCT_NOT_FOUND", msg);
+            rejectFlow(product_id, "PRODUCT_NOT_FOUND", msg);
             return;
         }
 
@@ -446,7 +442,7 @@ public class BillingPlugin extends Plugin {
 
         if (offers == null || offers.isEmpty()) {
             String msg = "No subscription offers available for: " + product_id;
-            rejectPendingPurchase("NO_OFFERS", msg);
+            rejectFlow(product_id, "NO_OFFERS", msg);
             return;
         }
 
@@ -455,33 +451,19 @@ public class BillingPlugin extends Plugin {
     }
 
     private void launchBillingFlow(ProductDetails details, SubscriptionOfferDetails offer, String account_id) {
+        String product_id = details.getProductId();
         String offer_token = offer.getOfferToken();
-
-        BillingFlowParams.ProductDetailsParams params = BillingFlowParams.ProductDetailsParams.newBuilder()
-                .setProductDetails(details)
-                .setOfferToken(offer_token)
-                .build();
-
-        List<BillingFlowParams.ProductDetailsParams> params_list = new ArrayList<>();
-        params_list.add(params);
-
-        BillingFlowParams.Builder builder = BillingFlowParams.newBuilder();
-        builder.setProductDetailsParamsList(params_list);
-
-        if (!Utils.isEmpty(account_id)) {
-            builder.setObfuscatedAccountId(account_id);
-        }
-
-        BillingFlowParams flow_params = builder.build();
         Activity activity = getActivity();
 
         if (activity == null) {
             String msg = "Activity not available";
-            rejectPendingPurchase("ACTIVITY_UNAVAILABLE", msg);
+            rejectFlow(product_id, "ACTIVITY_UNAVAILABLE", msg);
             return;
         }
 
-        BillingResult result = billing_client.launchBillingFlow(activity, flow_params);
+        // Before launching, as the answer may arrive before launch returns
+        purchase_flows.markLaunched(product_id, offer_token);
+        BillingResult result = billing_client.launchBillingFlow(activity, details, offer_token, account_id);
         int code = result.getResponseCode();
 
         if (code == BillingResponseCode.OK) {
@@ -490,17 +472,12 @@ public class BillingPlugin extends Plugin {
 
         String msg = "Failed to launch billing flow: ";
         msg += result.getDebugMessage();
-        Log.e(TAG, msg);
-        rejectPendingPurchase("LAUNCH_FAILED", msg);
+        Logger.e(TAG, msg);
+        rejectFlow(product_id, "LAUNCH_FAILED", msg);
     }
 
-    private void rejectPendingPurchase(String error_code, String message) {
-        if (pending_purchase_call == null) {
-            return;
-        }
-
-        rejectWithError(pending_purchase_call, error_code, message);
-        clearPendingPurchaseCall();
+    private void rejectFlow(String product_id, String error_code, String message) {
+        rejectAll(purchase_flows.take(product_id), error_code, message);
     }
 
     @PluginMethod
@@ -517,13 +494,11 @@ public class BillingPlugin extends Plugin {
             return;
         }
 
-        QueryPurchasesParams.Builder builder = QueryPurchasesParams.newBuilder();
-        builder.setProductType(ProductType.SUBS);
-        QueryPurchasesParams params = builder.build();
-
-        billing_client.queryPurchasesAsync(
-                params,
+        long start = Metrics.start();
+        billing_client.queryPurchases(
+                ProductType.SUBS,
                 (result, purchases) -> {
+                    Metrics.stop(Const.METRIC_BILLING_QUERY_PURCHASES, start);
                     handleQueryPurchasesResponse(
                             call,
                             result,
@@ -545,7 +520,7 @@ public class BillingPlugin extends Plugin {
         if (response_code != BillingResponseCode.OK) {
             String msg = "Query purchases failed: ";
             msg += billing_result.getDebugMessage();
-            Log.e(TAG, msg);
+            Logger.e(TAG, msg);
             String error_msg = "Failed to query purchases: " + msg;
             String code = String.valueOf(response_code);
             rejectWithError(call, code, error_msg);
@@ -553,23 +528,21 @@ public class BillingPlugin extends Plugin {
         }
 
         int total = purchases != null ? purchases.size() : 0;
-        Log.d(TAG, "Query returned " + total + " total purchases");
+        Logger.d(TAG, () -> "Query returned " + total + " total purchases");
 
         List<Purchase> filtered = filterPurchasesByAccount(purchases, hashed_account_id);
+        queueUnacknowledged(filtered);
 
         if (filtered.isEmpty()) {
             resolveEmptyPurchases(call);
             return;
         }
 
-        List<Product> product_list = buildProductListFromPurchases(filtered);
-
-        QueryProductDetailsParams.Builder builder = QueryProductDetailsParams.newBuilder();
-        builder.setProductList(product_list);
-        QueryProductDetailsParams params = builder.build();
+        List<String> product_list = buildProductListFromPurchases(filtered);
 
-        billing_client.queryProductDetailsAsync(
-                params,
+        billing_client.queryProductDetails(
+                ProductType.SUBS,
+                product_list,
                 (details_result, details_list) -> {
                     resolvePurchasesWithDetails(
                             call,
@@ -579,6 +552,24 @@ public class BillingPlugin extends Plugin {
                 });
     }
 
+    /**
+     * Queues purchases a failed or missed acknowledgement left behind, before
+     * Play refunds them.
+     */
+    private void queueUnacknowledged(List<Purchase> purchases) {
+        boolean queued = false;
+        for (Purchase purchase : purchases) {
+            if (purchase.getPurchaseState() == PurchaseState.PURCHASED && !purchase.isAcknowledged()) {
+                ack_queue.add(purchase.getPurchaseToken(), purchase.getPurchaseTime(), null);
+                queued = true;
+            }
+        }
+
+        if (queued) {
+            ack_queue.drain();
+        }
+    }
+
     private List<Purchase> filterPurchasesByAccount(List<Purchase> purchases, String account_id) {
         List<Purchase> filtered = new ArrayList<>();
 
@@ -604,8 +595,8 @@ public class BillingPlugin extends Plugin {
         return filtered;
     }
 
-    private List<Product> buildProductListFromPurchases(List<Purchase> purchases) {
-        List<Product> product_list = new ArrayList<>();
+    private List<String> buildProductListFromPurchases(List<Purchase> purchases) {
+        List<String> product_list = new ArrayList<>();
 
         for (Purchase purchase : purchases) {
             List<String> products = purchase.getProducts();
@@ -614,9 +605,11 @@ public class BillingPlugin extends Plugin {
                 continue;
             }
 
+            // One details query per product, however many purchases it has
             String product_id = products.get(0);
-            Product product = createProduct(product_id);
-            product_list.add(product);
+            if (!product_list.contains(product_id)) {
+                product_list.add(product_id);
+            }
         }
 
         return product_list;
@@ -634,6 +627,7 @@ public class BillingPlugin extends Plugin {
 
             purchases_array.put(purchase_obj);
         }
+        EntitlementStore.get(getContext()).save();
 
         JSObject result = new JSObject();
         result.put("purchases", purchases_array);
@@ -664,6 +658,7 @@ public class BillingPlugin extends Plugin {
         obj.put("acknowledged", acknowledged);
         obj.put("order_id", order_id);
         obj.put("purchase_time", purchase_time);
+        putEntitlement(obj, purchase);
 
         if (details_list == null) {
             return obj;
@@ -713,6 +708,49 @@ public class BillingPlugin extends Plugin {
         return obj;
     }
 
+    /**
+     * Adds what the entitlement store knows about a purchased purchase, when
+     * purchases can be verified on-device: whether its signature is valid,
+     * whether it grants access, and the last server verdict.
+     */
+    private void putEntitlement(JSObject obj, Purchase purchase) {
+        EntitlementStore.Entitlement entitlement = EntitlementStore.get(getContext()).check(purchase);
+        if (entitlement == null) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        obj.put("signature_valid", entitlement.signatureValid);
+        obj.put("entitled", entitlement.isEntitled(now));
+        obj.put("needs_revalidation", entitlement.needsRevalidation(now));
+
+        if (entitlement.serverVerifiedAt > 0) {
+            obj.put("verified_time", entitlement.serverVerifiedAt);
+        }
+        if (entitlement.expiryTime > 0) {
+            obj.put("expiry_time", entitlement.expiryTime);
+        }
+    }
+
+    /**
+     * Stores the server's verdict on a purchase, so later checks are answered
+     * locally until it is due for revalidation.
+     */
+    @PluginMethod
+    public void recordVerification(PluginCall call) {
+        String purchase_token = call.getString("purchase_token");
+        if (Utils.isEmpty(purchase_token)) {
+            String msg = "Missing purchase_token parameter";
+            rejectWithError(call, "MISSING_PARAM", msg);
+            return;
+        }
+
+        boolean valid = call.getBoolean("valid", false);
+        long expiry_time = call.getLong("expiry_time", 0L);
+        EntitlementStore.get(getContext()).recordServerVerification(purchase_token, valid, expiry_time);
+        call.resolve();
+    }
+
     @PluginMethod
     public void acknowledgePurchase(PluginCall call) {
         if (!billing_client.isReady()) {
@@ -729,11 +767,10 @@ public class BillingPlugin extends Plugin {
             return;
         }
 
-        AcknowledgePurchaseParams.Builder builder = AcknowledgePurchaseParams.newBuilder();
-        builder.setPurchaseToken(purchase_token);
-        AcknowledgePurchaseParams params = builder.build();
-
-        billing_client.acknowledgePurchase(params, result -> {
+        // Shares the request if the token is queued already, which is where
+        // the purchase time comes from; a failed attempt is rejected here but
+        // stays queued for retry
+        ack_queue.add(purchase_token, 0, result -> {
             int code = result.getResponseCode();
 
             if (code == BillingResponseCode.OK) {
@@ -746,11 +783,16 @@ public class BillingPlugin extends Plugin {
             String error_code = String.valueOf(code);
             rejectWithError(call, error_code, msg);
         });
+        ack_queue.drain();
     }
 
     @Override
     protected void handleOnDestroy() {
-        clearPendingPurchaseCall();
+        rejectAll(purchase_flows.takeAll(), "DESTROYED", "Billing plugin destroyed");
+
+        if (ack_queue != null) {
+            ack_queue.attach(null);
+        }
 
         if (billing_client != null && billing_client.isReady()) {
             billing_client.endConnection();
@@ -0,0 +1,139 @@
+package doenit.app;
+
+import android.content.ComponentCallbacks2;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * Process-wide registry of native caches, so they shrink under memory pressure
+ * instead of getting the process (and with it the widget) killed.
+ *
+ * Each cache declares a tier by how expensive it is to rebuild. On
+ * {@link ComponentCallbacks2#onTrimMemory(int)} the registry clears every tier
+ * up to the one the level calls for, cheapest first. Caches are held weakly,
+ * so one whose owner is gone without unregistering is simply dropped.
+ */
+public final class CacheRegistry {
+    /** Rendered views, rebuilt from data already in memory */
+    public static final int TIER_RENDERED = 0;
+    /** Parsed or decoded data, reloaded from prefs or assets */
+    public static final int TIER_DECODED = 1;
+    /** Data kept across activity recreations; evicted only when critical */
+    public static final int TIER_RETAINED = 2;
+
+    public interface Cache {
+        String name();
+
+        int tier();
+
+        /**
+         * @return An estimate of the memory the cache holds.
+         */
+        long sizeBytes();
+
+        /**
+         * Drops everything the cache holds; it refills on next use.
+         */
+        void trim();
+    }
+
+    private static final Set<Cache> caches = Collections.newSetFromMap(new WeakHashMap<>());
+
+    private CacheRegistry() {
+    }
+
+    public static void register(Cache cache) {
+        synchronized (caches) {
+            caches.add(cache);
+        }
+    }
+
+    /**
+     * Trims the cache and unregisters it; for owners going away (e.g. a
+     * destroyed widget factory), so the memory is handed back through the
+     * same accounting as an eviction.
+     */
+    public static void release(Cache cache) {
+        synchronized (caches) {
+            caches.remove(cache);
+        }
+        evict(cache, "release");
+    }
+
+    /**
+     * Clears every tier the trim level calls for: rendered views as soon as
+     * memory runs low or the UI is hidden, decoded data once the process is
+     * in the background or memory is low, everything when it is critical.
+     */
+    public static void onTrimMemory(int level) {
+        int maxTier;
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE
+                || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+            maxTier = TIER_RETAINED;
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND
+                || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            maxTier = TIER_DECODED;
+        } else {
+            maxTier = TIER_RENDERED;
+        }
+
+        Logger.d(Const.LOG_TAG_DOENIT, () -> "Trim memory level " + level + ", evicting tiers up to " + maxTier);
+        trim(maxTier, "trim_" + level);
+    }
+
+    /**
+     * Clears every tier up to and including {@code maxTier}, cheapest first.
+     */
+    public static void trim(int maxTier, String reason) {
+        Tracer.Span span = Tracer.begin("CacheRegistry.trim", reason);
+        try {
+            List<Cache> snapshot;
+            synchronized (caches) {
+                snapshot = new ArrayList<>(caches);
+            }
+            Collections.sort(snapshot, (a, b) -> Integer.compare(a.tier(), b.tier()));
+
+            for (Cache cache : snapshot) {
+                if (cache.tier() <= maxTier) {
+                    evict(cache, reason);
+                }
+            }
+            Metrics.setGauge(Const.METRIC_CACHE_BYTES, totalBytes());
+        } finally {
+            span.end();
+        }
+    }
+
+    /**
+     * @return The estimated size of every registered cache.
+     */
+    public static long totalBytes() {
+        List<Cache> snapshot;
+        synchronized (caches) {
+            snapshot = new ArrayList<>(caches);
+        }
+
+        long total = 0;
+        for (Cache cache : snapshot) {
+            total += cache.sizeBytes();
+        }
+        return total;
+    }
+
+    private static void evict(Cache cache, String reason) {
+        long bytes = cache.sizeBytes();
+        if (bytes == 0) {
+            return;
+        }
+
+        cache.trim();
+        Metrics.increment(Const.METRIC_CACHE_EVICTIONS);
+        Metrics.increment(Const.METRIC_CACHE_EVICTIONS + "." + cache.name());
+        Metrics.add(Const.METRIC_CACHE_EVICTED_BYTES, bytes);
+        Logger.d(Const.LOG_TAG_DOENIT, () -> "Evicted " + cache.name() + " (" + bytes + " bytes, " + reason + ")");
+    }
+}
@@ -11,11 +11,31 @@ public class Const {
     public static final String WIDGET_TASKS = "widget_tasks";
     public static final String WIDGET_CATEGORIES = "widget_categories";
 
+    // Widget render modes
+    public static final String RENDER_MODE_COLLECTION = "collection";
+    public static final String RENDER_MODE_FACTORY = "factory";
+
+    // Widget paging
+    public static final int DEFAULT_PAGE_SIZE = 20;
+    public static final int MAX_PAGE_SIZE = 100;
+
     // Intent actions
     public static final String ACTION_ADD_TASK = "ADD_TASK";
     public static final String ACTION_COMPLETE_TASK = "COMPLETE_TASK";
     public static final String ACTION_OPEN_TASK = "OPEN_TASK";
+    public static final String ACTION_SHOW_MORE = "SHOW_MORE";
+    public static final String ACTION_POSTPONE_TASK = "POSTPONE_TASK";
+    public static final String ACTION_ROLLOVER = "doenit.app.ROLLOVER";
+    public static final String ACTION_REMINDER_BUCKET = "doenit.app.REMINDER_BUCKET";
     public static final String EXTRA_TASK_ID = "task_id";
+    public static final String EXTRA_POSTPONE_DAYS = "postpone_days";
+
+    // Row actions: move a task to tomorrow or next week
+    public static final int POSTPONE_DAY = 1;
+    public static final int POSTPONE_WEEK = 7;
+
+    // Job IDs
+    public static final int JOB_WIDGET_SYNC = 4000;
 
     // Broadcast actions
     public static final String BROADCAST_TASK_COMPLETED = "doenit.app.TASK_COMPLETED";
@@ -28,4 +48,47 @@ public class Const {
     public static final String LOG_TAG_DOENIT_UTILS = "[😨 Doenit]";
     public static final String LOG_TAG_TASK_WIDGET = "[😨 Doenit]";
     public static final String LOG_TAG_DOENIT_SIMPLE = "[😨 Doenit]";
+
+    // Metric names
+    public static final String METRIC_UPDATE_TASKS = "widget.update_tasks";
+    public static final String METRIC_UPDATE_TASKS_FILE = "widget.update_tasks_file";
+    public static final String METRIC_SNAPSHOT_FILE_BYTES = "widget.snapshot_file_bytes";
+    public static final String METRIC_UPDATE_APP_WIDGET = "widget.update_app_widget";
+    public static final String METRIC_LOAD_TASKS = "widget.load_tasks";
+    public static final String METRIC_LOAD_FIRST_PAGE = "widget.load_first_page";
+    public static final String METRIC_GET_VIEW_AT = "widget.get_view_at";
+    public static final String METRIC_ROW_CACHE_HIT = "widget.row_cache_hit";
+    public static final String METRIC_ROW_CACHE_MISS = "widget.row_cache_miss";
+    public static final String METRIC_TASK_COUNT = "widget.task_count";
+    public static final String METRIC_FIRST_ROW_FACTORY = "widget.first_row.factory";
+    public static final String METRIC_FIRST_ROW_COLLECTION = "widget.first_row.collection";
+    public static final String METRIC_BILLING_CONNECT = "billing.connect";
+    public static final String METRIC_BILLING_QUERY_PRODUCTS = "billing.query_products";
+    public static final String METRIC_BILLING_QUERY_PURCHASES = "billing.query_purchases";
+    public static final String METRIC_BILLING_ACKNOWLEDGE = "billing.acknowledge";
+    public static final String METRIC_BILLING_ERROR = "billing.error";
+    public static final String METRIC_BILLING_RECONNECT = "billing.reconnect";
+    public static final String METRIC_BILLING_VERIFY = "billing.verify";
+    public static final String METRIC_BILLING_VERIFY_CACHED = "billing.verify_cached";
+    public static final String METRIC_BILLING_ACK_QUEUE_DEPTH = "billing.ack_queue_depth";
+    public static final String METRIC_BILLING_ACK_QUEUE_AGE = "billing.ack_queue_age_ms";
+    public static final String METRIC_BILLING_ACK_RETRY = "billing.ack_retry";
+    public static final String METRIC_BILLING_ACK_DROPPED = "billing.ack_dropped";
+    public static final String METRIC_WIDGET_SYNC = "widget.sync";
+    public static final String METRIC_WIDGET_SYNC_DELTAS = "widget.sync_deltas";
+    public static final String METRIC_WIDGET_SYNC_STALE = "widget.sync_stale";
+    public static final String METRIC_WIDGET_SYNC_INVALID = "widget.sync_invalid";
+    public static final String METRIC_ASSET_SERVE = "assets.serve";
+    public static final String METRIC_ASSET_CACHE_HIT = "assets.cache_hit";
+    public static final String METRIC_ASSET_CACHE_MISS = "assets.cache_miss";
+    public static final String METRIC_ASSET_CACHE_BYTES = "assets.cache_bytes";
+    public static final String METRIC_CACHE_BYTES = "cache.bytes";
+    public static final String METRIC_CACHE_EVICTIONS = "cache.evictions";
+    public static final String METRIC_CACHE_EVICTED_BYTES = "cache.evicted_bytes";
+    public static final String METRIC_DB_FLUSH = "db.flush";
+    public static final String METRIC_DB_FLUSH_COUNT = "db.flush_count";
+    public static final String METRIC_DB_FLUSH_BYTES = "db.flush_bytes";
+    public static final String METRIC_DB_FLUSH_WRITES = "db.flush_writes";
+    public static final String METRIC_DB_PRELOAD = "db.preload";
+    public static final String METRIC_STRICT_MODE_VIOLATION = "strictmode.violation";
 }
@@ -2,7 +2,6 @@ package doenit.app;
 
 import android.os.Bundle;
 import android.content.Intent;
-import android.util.Log;
 import android.webkit.WebView;
 import com.getcapacitor.BridgeActivity;
 import com.getcapacitor.Bridge;
@@ -23,7 +22,7 @@ public class CreateTaskActivity extends BridgeActivity {
      */
     @Override
     public void onCreate(Bundle savedInstanceState) {
-        Log.d(Const.LOG_TAG_DOENIT, "CreateTaskActivity onCreate called");
+        Logger.d(Const.LOG_TAG_DOENIT, "CreateTaskActivity onCreate called");
 
         // Register only the essential plugins
         registerPlugin(TaskWidgetPlugin.class);
@@ -38,7 +37,7 @@ public class CreateTaskActivity extends BridgeActivity {
         if (bridge != null) {
             WebView webView = bridge.getWebView();
             if (webView != null) {
-                Log.d(Const.LOG_TAG_DOENIT, "Navigating to /create route");
+                Logger.d(Const.LOG_TAG_DOENIT, "Navigating to /create route");
                 webView.post(() -> {
                     try {
                         webView.evaluateJavascript(
@@ -47,11 +46,11 @@ public class CreateTaskActivity extends BridgeActivity {
                                         "}",
                                 null);
                     } catch (Exception e) {
-                        Log.e(Const.LOG_TAG_DOENIT, "Error navigating to /create route", e);
+                        Logger.e(Const.LOG_TAG_DOENIT, "Error navigating to /create route", e);
                     }
                 });
             } else {
-                Log.w(Const.LOG_TAG_DOENIT, "WebView is null, cannot navigate to /create");
+                Logger.w(Const.LOG_TAG_DOENIT, "WebView is null, cannot navigate to /create");
             }
         }
     }
@@ -80,11 +79,11 @@ public class CreateTaskActivity extends BridgeActivity {
                                         "}",
                                 null);
                     } catch (Exception e) {
-                        Log.e(Const.LOG_TAG_DOENIT, "Error navigating to /create route in onNewIntent", e);
+                        Logger.e(Const.LOG_TAG_DOENIT, "Error navigating to /create route in onNewIntent", e);
                     }
                 });
             } else {
-                Log.w(Const.LOG_TAG_DOENIT, "WebView is null in onNewIntent, cannot navigate to /create");
+                Logger.w(Const.LOG_TAG_DOENIT, "WebView is null in onNewIntent, cannot navigate to /create");
             }
         }
     }
@@ -1,15 +1,52 @@
 package doenit.app;
 
 import android.content.SharedPreferences;
-import android.util.Log;
 import android.content.Context;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Static wrapper around the widget's SharedPreferences.
+ *
+ * Writes go through {@link #batch()} and are group-committed: every batch
+ * committed within {@code COMMIT_WINDOW_MS} of the first is coalesced into a
+ * single editor commit on a dedicated I/O thread, so several writes cost one
+ * rewrite of the prefs file. Until then, pending values are served from
+ * memory, so reads always see the latest committed batch.
+ *
+ * Components that can let the process die as soon as they return (broadcast
+ * receivers, jobs) must not leave writes in that window: they call
+ * {@link #flushNow()} from a worker thread or {@link #flushThen(Runnable)}
+ * with a {@code goAsync()} result.
+ */
 public class DB {
-    private static SharedPreferences prefs;
+    private static final long COMMIT_WINDOW_MS = 100;
+    private static final long MAX_RETRY_DELAY_MS = 30_000;
+
+    private static volatile SharedPreferences prefs;
     private static DB instance;
     private static Context appContext;
 
-    public static DB init(Context context) {
+    private static final Object lock = new Object();
+    // Serializes flushes, so an older snapshot of the pending writes is never
+    // committed after a newer one
+    private static final Object flushLock = new Object();
+    // Values waiting to be flushed; a null value marks a removal
+    private static final Map<String, String> pending = new HashMap<>();
+    private static boolean pendingClear;
+    private static int clearGeneration;
+    private static boolean flushScheduled;
+    // Failed flushes in a row; each one doubles the delay before the retry
+    private static int flushFailures;
+    private static Handler ioHandler;
+
+    public static synchronized DB init(Context context) {
         if (prefs != null) {
             return instance;
         }
@@ -22,6 +59,23 @@ public class DB {
         return instance;
     }
     
+    /**
+     * Starts reading the prefs file on a background thread. Called at process
+     * start from {@link DoenitApplication}, so by the time a component reads
+     * from the main thread the file, including the whole task snapshot, has
+     * usually been parsed and the read does not wait for the disk.
+     */
+    public static void preload(Context context) {
+        Context app = context.getApplicationContext();
+        new Thread(() -> {
+            long start = Metrics.start();
+            init(app);
+            // Any read waits until the file is loaded
+            prefs.contains(Const.WIDGET_TASKS);
+            Metrics.stop(Const.METRIC_DB_PRELOAD, start);
+        }, "DoenitDBPreload").start();
+    }
+
     // Lazy initialization - called automatically when needed
     private static void ensureInitialized(Context context) {
         if (prefs == null && context != null) {
@@ -29,33 +83,275 @@ public class DB {
         }
     }
 
+    /**
+     * A set of writes that become visible together when committed.
+     */
+    public static final class Batch {
+        private static final int PUT = 0;
+        private static final int REMOVE = 1;
+        private static final int APPEND = 2;
+
+        private static final class Op {
+            final int type;
+            final String name;
+            final String value;
+            final String separator;
+
+            Op(int type, String name, String value, String separator) {
+                this.type = type;
+                this.name = name;
+                this.value = value;
+                this.separator = separator;
+            }
+        }
+
+        private final List<Op> ops = new ArrayList<>();
+
+        private Batch() {
+        }
+
+        public Batch put(String name, String value) {
+            ops.add(new Op(PUT, name, value, null));
+            return this;
+        }
+
+        public Batch remove(String name) {
+            ops.add(new Op(REMOVE, name, null, null));
+            return this;
+        }
+
+        /**
+         * Appends {@code value} to the current value of {@code name}, joined by
+         * {@code separator}. The read happens at commit time under the DB lock,
+         * so concurrent appends are not lost.
+         */
+        public Batch append(String name, String value, String separator) {
+            ops.add(new Op(APPEND, name, value, separator));
+            return this;
+        }
+
+        public void commit() {
+            if (prefs == null) {
+                Logger.e(Const.LOG_TAG_DOENIT_DB, "SharedPreferences not initialized");
+                return;
+            }
+
+            synchronized (lock) {
+                for (Op op : ops) {
+                    switch (op.type) {
+                        case PUT:
+                            pending.put(op.name, op.value);
+                            break;
+                        case REMOVE:
+                            pending.put(op.name, null);
+                            break;
+                        case APPEND:
+                            String current = readLocked(op.name, null);
+                            pending.put(op.name, current == null ? op.value : current + op.separator + op.value);
+                            break;
+                    }
+                }
+                scheduleFlushLocked();
+            }
+            Logger.d(Const.LOG_TAG_DOENIT_DB, () -> "Committed batch of " + ops.size() + " write(s)");
+        }
+    }
+
+    public static Batch batch() {
+        return new Batch();
+    }
+
     public static void saveData(String name, String data) {
+        try {
+            batch().put(name, data).commit();
+            Logger.d(Const.LOG_TAG_DOENIT_DB, () -> "Saved data for " + name + ": " + Logger.truncate(data));
+        } catch (Exception e) {
+            Logger.e(Const.LOG_TAG_DOENIT_DB, "Error saving data", e);
+        }
+    }
+
+    private static String readLocked(String name, String defaultValue) {
+        if (pending.containsKey(name)) {
+            String value = pending.get(name);
+            return value != null ? value : defaultValue;
+        }
+        if (pendingClear) {
+            return defaultValue;
+        }
+        return prefs.getString(name, defaultValue);
+    }
+
+    private static void scheduleFlushLocked() {
+        if (flushScheduled) {
+            return;
+        }
+        flushScheduled = true;
+        long delay = Math.min(COMMIT_WINDOW_MS << Math.min(flushFailures, 16), MAX_RETRY_DELAY_MS);
+        getIoHandlerLocked().postDelayed(DB::flush, delay);
+    }
+
+    private static Handler getIoHandlerLocked() {
+        if (ioHandler == null) {
+            HandlerThread thread = new HandlerThread("DoenitDB", Process.THREAD_PRIORITY_BACKGROUND);
+            thread.start();
+            ioHandler = new Handler(thread.getLooper());
+        }
+        return ioHandler;
+    }
+
+    /**
+     * Writes every pending batch now, on the calling thread, instead of at
+     * the end of the commit window. Call from a worker thread.
+     *
+     * @return Whether everything pending is on disk.
+     */
+    public static boolean flushNow() {
         if (prefs == null) {
-            Log.e(Const.LOG_TAG_DOENIT_DB, "SharedPreferences not initialized");
+            return true;
+        }
+        return flush();
+    }
+
+    /**
+     * Writes every pending batch on the I/O thread right away, then runs
+     * {@code done} there. Lets a receiver finish its {@code goAsync()} result
+     * only once its writes are on disk, without writing on the main thread.
+     */
+    public static void flushThen(Runnable done) {
+        if (prefs == null) {
+            done.run();
             return;
         }
 
-        try {
-            SharedPreferences.Editor editor = prefs.edit();
-            editor.putString(name, data);
-            editor.apply();
-            Log.d(Const.LOG_TAG_DOENIT_DB, "Saved data for " + name + ": " + data);
-        } catch (Exception e) {
-            Log.e(Const.LOG_TAG_DOENIT_DB, "Error saving data", e);
+        Handler handler;
+        synchronized (lock) {
+            handler = getIoHandlerLocked();
+        }
+        handler.post(() -> {
+            flush();
+            done.run();
+        });
+    }
+
+    /**
+     * Writes everything pending in one editor commit. Pending entries are only
+     * dropped once they are on disk, and only if no later batch replaced them;
+     * a failed commit is retried with backoff, so the writes do not wait in
+     * memory for an unrelated batch.
+     *
+     * @return Whether the writes reached the disk; true if there were none.
+     */
+    private static boolean flush() {
+        synchronized (flushLock) {
+            return flushLocked();
+        }
+    }
+
+    private static boolean flushLocked() {
+        Map<String, String> writes;
+        boolean clear;
+        int generation;
+        synchronized (lock) {
+            writes = new HashMap<>(pending);
+            clear = pendingClear;
+            generation = clearGeneration;
+            flushScheduled = false;
+        }
+
+        if (writes.isEmpty() && !clear) {
+            return true;
+        }
+
+        Tracer.Span span = Tracer.begin("DB.flush");
+        long start = Metrics.start();
+        long bytes = 0;
+
+        SharedPreferences.Editor editor = prefs.edit();
+        if (clear) {
+            editor.clear();
+        }
+        for (Map.Entry<String, String> write : writes.entrySet()) {
+            String value = write.getValue();
+            if (value == null) {
+                editor.remove(write.getKey());
+            } else {
+                editor.putString(write.getKey(), value);
+                bytes += utf8Length(value);
+            }
+            bytes += utf8Length(write.getKey());
+        }
+        boolean written = editor.commit();
+
+        synchronized (lock) {
+            if (!written) {
+                // Everything stays pending for the retry
+                flushFailures++;
+                scheduleFlushLocked();
+            } else {
+                flushFailures = 0;
+                if (generation == clearGeneration) {
+                    for (Map.Entry<String, String> write : writes.entrySet()) {
+                        String name = write.getKey();
+                        if (pending.containsKey(name) && pending.get(name) == write.getValue()) {
+                            pending.remove(name);
+                        }
+                    }
+                    if (clear) {
+                        pendingClear = false;
+                    }
+                }
+            }
         }
+
+        Metrics.stop(Const.METRIC_DB_FLUSH, start);
+        Metrics.increment(Const.METRIC_DB_FLUSH_COUNT);
+        Metrics.add(Const.METRIC_DB_FLUSH_BYTES, bytes);
+        Metrics.add(Const.METRIC_DB_FLUSH_WRITES, writes.size());
+        span.end();
+
+        if (!written) {
+            Logger.e(Const.LOG_TAG_DOENIT_DB, "Failed to flush pending writes, retrying");
+            return false;
+        }
+        int count = writes.size();
+        long flushedBytes = bytes;
+        Logger.d(Const.LOG_TAG_DOENIT_DB, () -> "Flushed " + count + " write(s), " + flushedBytes + " bytes");
+        return true;
+    }
+
+    private static long utf8Length(String value) {
+        long length = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                length += 1;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c)) {
+                length += 4;
+                i++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
     }
+
     public static String getString(String name, String defaultValue) {
         if (prefs == null) {
-            Log.e(Const.LOG_TAG_DOENIT_DB, "SharedPreferences not initialized");
+            Logger.e(Const.LOG_TAG_DOENIT_DB, "SharedPreferences not initialized");
             return defaultValue;
         }
 
         try {
-            String value = prefs.getString(name, defaultValue);
-            Log.d(Const.LOG_TAG_DOENIT_DB, "Retrieved string for " + name + ": " + value);
+            String value;
+            synchronized (lock) {
+                value = readLocked(name, defaultValue);
+            }
+            Logger.d(Const.LOG_TAG_DOENIT_DB, () -> "Retrieved string for " + name + ": " + Logger.truncate(value));
             return value;
         } catch (Exception e) {
-            Log.e(Const.LOG_TAG_DOENIT_DB, "Error getting string", e);
+            Logger.e(Const.LOG_TAG_DOENIT_DB, "Error getting string", e);
             return defaultValue;
         }
     }
@@ -67,7 +363,7 @@ public class DB {
 
     public static int getInt(String name) {
         if (prefs == null) {
-            Log.e(Const.LOG_TAG_DOENIT_DB, "SharedPreferences not initialized");
+            Logger.e(Const.LOG_TAG_DOENIT_DB, "SharedPreferences not initialized");
             return 0;
         }
 
@@ -75,14 +371,14 @@ public class DB {
             String value = DB.getString(name);
             return value != null ? Integer.parseInt(value) : 0;
         } catch (Exception e) {
-            Log.e(Const.LOG_TAG_DOENIT_DB, "Error getting int", e);
+            Logger.e(Const.LOG_TAG_DOENIT_DB, "Error getting int", e);
             return 0;
         }
     }
 
     public static long getLong(String name) {
         if (prefs == null) {
-            Log.e(Const.LOG_TAG_DOENIT_DB, "SharedPreferences not initialized");
+            Logger.e(Const.LOG_TAG_DOENIT_DB, "SharedPreferences not initialized");
             return 0;
         }
 
@@ -90,18 +386,28 @@ public class DB {
             String value = DB.getString(name);
             return value != null ? Long.parseLong(value) : 0;
         } catch (Exception e) {
-            Log.e(Const.LOG_TAG_DOENIT_DB, "Error getting long", e);
+            Logger.e(Const.LOG_TAG_DOENIT_DB, "Error getting long", e);
             return 0;
         }
     }
 
+    /**
+     * Wipes this file, e.g. once the web layer has taken over the widget's
+     * pending changes. Native state that must outlive the wipe is kept in a
+     * preferences file of its own.
+     */
     public static void clearData() {
         if (prefs == null) {
-            Log.e(Const.LOG_TAG_DOENIT_DB, "SharedPreferences not initialized");
+            Logger.e(Const.LOG_TAG_DOENIT_DB, "SharedPreferences not initialized");
             return;
         }
 
-        Log.d(Const.LOG_TAG_DOENIT_DB, "Clearing all data from SharedPreferences");
-        prefs.edit().clear().apply();
+        Logger.d(Const.LOG_TAG_DOENIT_DB, "Clearing all data from SharedPreferences");
+        synchronized (lock) {
+            pending.clear();
+            pendingClear = true;
+            clearGeneration++;
+            scheduleFlushLocked();
+        }
     }
 }
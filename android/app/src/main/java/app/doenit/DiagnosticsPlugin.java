@@ -0,0 +1,184 @@
+package doenit.app;
+
+import android.content.Context;
+import android.content.Intent;
+import android.net.Uri;
+
+import androidx.core.content.FileProvider;
+
+import com.getcapacitor.JSObject;
+import com.getcapacitor.Plugin;
+import com.getcapacitor.PluginCall;
+import com.getcapacitor.PluginMethod;
+import com.getcapacitor.annotation.CapacitorPlugin;
+
+import java.io.File;
+
+/**
+ * Exposes native diagnostics (the {@link Logger} ring buffer, the
+ * {@link Metrics} registry, {@link Tracer} spans and the
+ * {@link StartupTimeline}) to the web app so they can be attached to bug
+ * reports and telemetry.
+ */
+@CapacitorPlugin(name = "Diagnostics")
+public class DiagnosticsPlugin extends Plugin {
+
+    @PluginMethod
+    public void getNativeLog(PluginCall call) {
+        try {
+            JSObject ret = new JSObject();
+            ret.put("entries", Logger.dump());
+            call.resolve(ret);
+        } catch (Exception e) {
+            call.reject("Failed to get native log: " + e.getMessage());
+        }
+    }
+
+    @PluginMethod
+    public void clearNativeLog(PluginCall call) {
+        try {
+            Logger.clear();
+
+            JSObject ret = new JSObject();
+            ret.put("success", true);
+            call.resolve(ret);
+        } catch (Exception e) {
+            call.reject("Failed to clear native log: " + e.getMessage());
+        }
+    }
+
+    @PluginMethod
+    public void getNativeMetrics(PluginCall call) {
+        try {
+            Metrics.setGauge(Const.METRIC_CACHE_BYTES, CacheRegistry.totalBytes());
+            AcknowledgementQueue.get(getContext()).updateMetrics();
+
+            JSObject ret = new JSObject();
+            ret.put("metrics", Metrics.snapshot());
+            call.resolve(ret);
+        } catch (Exception e) {
+            call.reject("Failed to get native metrics: " + e.getMessage());
+        }
+    }
+
+    @PluginMethod
+    public void resetNativeMetrics(PluginCall call) {
+        try {
+            Metrics.reset();
+
+            JSObject ret = new JSObject();
+            ret.put("success", true);
+            call.resolve(ret);
+        } catch (Exception e) {
+            call.reject("Failed to reset native metrics: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Writes the recorded spans as a Chrome trace file and, if {@code share}
+     * is set, opens the share sheet for it.
+     */
+    @PluginMethod
+    public void exportTrace(PluginCall call) {
+        try {
+            Context context = getContext();
+            File file = Tracer.export(context);
+            Uri uri = FileProvider.getUriForFile(context, context.getPackageName() + ".fileprovider", file);
+
+            if (call.getBoolean("share", false)) {
+                Intent shareIntent = new Intent(Intent.ACTION_SEND);
+                shareIntent.setType("application/json");
+                shareIntent.putExtra(Intent.EXTRA_STREAM, uri);
+                shareIntent.addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
+
+                Intent chooser = Intent.createChooser(shareIntent, file.getName());
+                chooser.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+                context.startActivity(chooser);
+            }
+
+            JSObject ret = new JSObject();
+            ret.put("path", file.getAbsolutePath());
+            ret.put("uri", uri.toString());
+            call.resolve(ret);
+        } catch (Exception e) {
+            call.reject("Failed to export trace: " + e.getMessage());
+        }
+    }
+
+    @PluginMethod
+    public void clearTrace(PluginCall call) {
+        try {
+            Tracer.clear();
+
+            JSObject ret = new JSObject();
+            ret.put("success", true);
+            call.resolve(ret);
+        } catch (Exception e) {
+            call.reject("Failed to clear trace: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Called by the web app first thing once it is up; marks when JS first
+     * reached native code in the startup timeline.
+     */
+    @PluginMethod
+    public void markStartup(PluginCall call) {
+        StartupTimeline.mark(StartupTimeline.FIRST_JS_CALL);
+
+        JSObject ret = new JSObject();
+        ret.put("success", true);
+        call.resolve(ret);
+    }
+
+    @PluginMethod
+    public void getStartupTimeline(PluginCall call) {
+        try {
+            JSObject ret = new JSObject();
+            ret.put("timeline", StartupTimeline.summary(getContext(), call.getString("variant")));
+            call.resolve(ret);
+        } catch (Exception e) {
+            call.reject("Failed to get startup timeline: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Turns {@link AssetServer} on or off from the next launch, to compare the
+     * "asset_server" and "default_assets" startup timeline variants.
+     */
+    @PluginMethod
+    public void setAssetServing(PluginCall call) {
+        try {
+            Boolean enabled = call.getBoolean("enabled");
+            if (enabled == null) {
+                call.reject("Missing 'enabled' parameter");
+                return;
+            }
+
+            AssetServer.setEnabled(getContext(), enabled);
+            if (!enabled) {
+                AssetServer.clearCache();
+            }
+
+            JSObject ret = new JSObject();
+            ret.put("success", true);
+            ret.put("enabled", enabled);
+            call.resolve(ret);
+        } catch (Exception e) {
+            call.reject("Failed to set asset serving: " + e.getMessage());
+        }
+    }
+
+    @PluginMethod
+    public void clearStartupTimeline(PluginCall call) {
+        try {
+            StartupTimeline.clear(getContext());
+
+            JSObject ret = new JSObject();
+            ret.put("success", true);
+            call.resolve(ret);
+        } catch (Exception e) {
+            call.reject("Failed to clear startup timeline: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package doenit.app;
+
+import android.app.Application;
+
+/**
+ * Process-wide setup that must run before any component, whichever one the
+ * process was started for (activity, widget, alarm or push message).
+ */
+public class DoenitApplication extends Application {
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        StrictModeAuditor.install();
+        StartupTimeline.begin(this);
+        DB.preload(this);
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        CacheRegistry.onTrimMemory(level);
+    }
+
+    @Override
+    public void onLowMemory() {
+        super.onLowMemory();
+        CacheRegistry.trim(CacheRegistry.TIER_RETAINED, "low_memory");
+    }
+}
@@ -0,0 +1,24 @@
+package doenit.app;
+
+import androidx.annotation.NonNull;
+
+import com.google.firebase.messaging.RemoteMessage;
+
+import io.capawesome.capacitorjs.plugins.firebase.messaging.MessagingService;
+
+/**
+ * The app's FCM entry point. Widget deltas are handled natively by
+ * {@link WidgetSync}; every other message (and token refreshes) goes to the
+ * Firebase Messaging plugin as before, since only one messaging service can
+ * receive the app's messages.
+ */
+public class DoenitMessagingService extends MessagingService {
+
+    @Override
+    public void onMessageReceived(@NonNull RemoteMessage remoteMessage) {
+        if (WidgetSync.handle(getApplicationContext(), remoteMessage.getData())) {
+            return;
+        }
+        super.onMessageReceived(remoteMessage);
+    }
+}
@@ -0,0 +1,209 @@
+package doenit.app;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import com.android.billingclient.api.AccountIdentifiers;
+import com.android.billingclient.api.Purchase;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Persisted, per purchase token record of what is known about a purchase:
+ * whether Play's signature over it checked out on-device, and what the server
+ * said the last time it revalidated it.
+ *
+ * A signature is verified once per version of the purchase JSON (Play rewrites
+ * it when, e.g., the purchase is acknowledged); every later check of the same
+ * purchase is a map lookup. Records have their own preferences file, so a
+ * server verdict survives {@link DB#clearData()} and the purchase is not
+ * re-verified after every hand-off to the web layer.
+ */
+public class EntitlementStore {
+    private static final String TAG = Const.LOG_TAG_DOENIT;
+    private static final String PREFS_NAME = "DoenitEntitlements";
+    private static final String KEY_ENTITLEMENTS = "entitlements";
+
+    /** How long a server verdict stands before it should be revalidated */
+    public static final long REVALIDATE_AFTER_MS = 7L * 24 * 60 * 60 * 1000;
+
+    public static class Entitlement {
+        final String token;
+        String productId;
+        String accountId;
+        String json;
+        String signature;
+        boolean signatureValid;
+        /** When the server last verified the purchase, or 0 if never */
+        long serverVerifiedAt;
+        boolean serverValid;
+        /** Expiry the server reported, or 0 if unknown */
+        long expiryTime;
+
+        Entitlement(String token) {
+            this.token = token;
+        }
+
+        /**
+         * A valid signature grants the purchase until the server says
+         * otherwise or the expiry it reported passes.
+         */
+        public boolean isEntitled(long now) {
+            return signatureValid && (serverVerifiedAt == 0 || serverValid) && !isExpired(now);
+        }
+
+        /**
+         * Also true once the reported expiry passed: a renewed subscription
+         * only gets its new expiry from the server.
+         */
+        public boolean needsRevalidation(long now) {
+            return serverVerifiedAt == 0 || now - serverVerifiedAt > REVALIDATE_AFTER_MS || isExpired(now);
+        }
+
+        private boolean isExpired(long now) {
+            return expiryTime != 0 && now >= expiryTime;
+        }
+    }
+
+    private static EntitlementStore instance;
+
+    private final SharedPreferences prefs;
+    private final Map<String, Entitlement> byToken = new HashMap<>();
+    private boolean dirty;
+
+    private EntitlementStore(Context context) {
+        prefs = context.getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        load();
+    }
+
+    public static synchronized EntitlementStore get(Context context) {
+        if (instance == null) {
+            instance = new EntitlementStore(context);
+        }
+        return instance;
+    }
+
+    /**
+     * Returns the purchase's entitlement, verifying its signature only if
+     * this version of the purchase has not been verified before. Call
+     * {@link #save()} after a batch of checks.
+     *
+     * @return The entitlement, or null if no public key is configured.
+     */
+    public synchronized Entitlement check(Purchase purchase) {
+        if (!PurchaseVerifier.isAvailable()) {
+            return null;
+        }
+
+        String token = purchase.getPurchaseToken();
+        String json = purchase.getOriginalJson();
+        String signature = purchase.getSignature();
+
+        Entitlement entitlement = byToken.get(token);
+        if (entitlement != null && json.equals(entitlement.json) && signature.equals(entitlement.signature)) {
+            Metrics.increment(Const.METRIC_BILLING_VERIFY_CACHED);
+            return entitlement;
+        }
+
+        if (entitlement == null) {
+            entitlement = new Entitlement(token);
+            byToken.put(token, entitlement);
+        }
+
+        List<String> products = purchase.getProducts();
+        AccountIdentifiers identifiers = purchase.getAccountIdentifiers();
+        entitlement.productId = products != null && !products.isEmpty() ? products.get(0) : null;
+        entitlement.accountId = identifiers != null ? identifiers.getObfuscatedAccountId() : null;
+        entitlement.json = json;
+        entitlement.signature = signature;
+        entitlement.signatureValid = PurchaseVerifier.verify(json, signature);
+        dirty = true;
+
+        if (!entitlement.signatureValid) {
+            String productId = entitlement.productId;
+            Logger.w(TAG, () -> "Purchase signature invalid for " + productId);
+        }
+        return entitlement;
+    }
+
+    /**
+     * Records the server's verdict on a purchase, so it holds until the next
+     * revalidation. Unknown tokens are kept too, in case the purchase is
+     * checked later.
+     */
+    public synchronized void recordServerVerification(String token, boolean valid, long expiryTime) {
+        Entitlement entitlement = byToken.get(token);
+        if (entitlement == null) {
+            entitlement = new Entitlement(token);
+            byToken.put(token, entitlement);
+        }
+
+        entitlement.serverVerifiedAt = System.currentTimeMillis();
+        entitlement.serverValid = valid;
+        entitlement.expiryTime = expiryTime;
+        dirty = true;
+        save();
+    }
+
+    /**
+     * Writes the store if anything changed since the last save.
+     */
+    public synchronized void save() {
+        if (!dirty) {
+            return;
+        }
+
+        try {
+            JSONArray array = new JSONArray();
+            for (Entitlement entitlement : byToken.values()) {
+                JSONObject json = new JSONObject();
+                json.put("token", entitlement.token);
+                json.put("product_id", entitlement.productId);
+                json.put("account_id", entitlement.accountId);
+                json.put("json", entitlement.json);
+                json.put("signature", entitlement.signature);
+                json.put("signature_valid", entitlement.signatureValid);
+                json.put("server_verified_at", entitlement.serverVerifiedAt);
+                json.put("server_valid", entitlement.serverValid);
+                json.put("expiry_time", entitlement.expiryTime);
+                array.put(json);
+            }
+            prefs.edit().putString(KEY_ENTITLEMENTS, array.toString()).apply();
+            dirty = false;
+        } catch (JSONException e) {
+            Logger.e(TAG, "Error saving entitlements", e);
+        }
+    }
+
+    private void load() {
+        String json = prefs.getString(KEY_ENTITLEMENTS, null);
+        if (Utils.isEmpty(json)) {
+            return;
+        }
+
+        try {
+            JSONArray array = new JSONArray(json);
+            for (int i = 0; i < array.length(); i++) {
+                JSONObject item = array.getJSONObject(i);
+                Entitlement entitlement = new Entitlement(item.getString("token"));
+                entitlement.productId = item.optString("product_id", null);
+                entitlement.accountId = item.optString("account_id", null);
+                entitlement.json = item.optString("json", null);
+                entitlement.signature = item.optString("signature", null);
+                entitlement.signatureValid = item.optBoolean("signature_valid", false);
+                entitlement.serverVerifiedAt = item.optLong("server_verified_at", 0);
+                entitlement.serverValid = item.optBoolean("server_valid", false);
+                entitlement.expiryTime = item.optLong("expiry_time", 0);
+                byToken.put(entitlement.token, entitlement);
+            }
+        } catch (JSONException e) {
+            Logger.e(TAG, "Error loading entitlements", e);
+        }
+    }
+}
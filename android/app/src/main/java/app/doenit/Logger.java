@@ -0,0 +1,236 @@
+package doenit.app;
+
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Level-gated logging facade for the native layer.
+ *
+ * Debug and verbose output is compiled out of release builds via
+ * {@link BuildConfig#DEBUG}. Messages can be passed as {@link Message}
+ * suppliers so string concatenation only happens when the level is enabled,
+ * and large payloads should go through {@link #truncate(String)}. Every
+ * enabled entry is also kept in a bounded in-memory ring that can be dumped
+ * for bug reports.
+ */
+public final class Logger {
+    public interface Message {
+        String get();
+    }
+
+    public static final int MAX_PAYLOAD_LENGTH = 200;
+    private static final int RING_CAPACITY = 256;
+
+    private static volatile int minLevel = BuildConfig.DEBUG ? Log.DEBUG : Log.INFO;
+
+    private static final long[] ringTimes = new long[RING_CAPACITY];
+    private static final int[] ringLevels = new int[RING_CAPACITY];
+    private static final String[] ringTags = new String[RING_CAPACITY];
+    private static final String[] ringThreads = new String[RING_CAPACITY];
+    private static final String[] ringMessages = new String[RING_CAPACITY];
+    private static int ringNext;
+    private static int ringSize;
+
+    private Logger() {
+    }
+
+    public static void setMinLevel(int level) {
+        minLevel = level;
+    }
+
+    public static boolean isEnabled(int level) {
+        if (level < Log.INFO && !BuildConfig.DEBUG) {
+            return false;
+        }
+        return level >= minLevel;
+    }
+
+    public static void v(String tag, String message) {
+        if (BuildConfig.DEBUG && isEnabled(Log.VERBOSE)) {
+            write(Log.VERBOSE, tag, message, null);
+        }
+    }
+
+    public static void v(String tag, Message message) {
+        if (BuildConfig.DEBUG && isEnabled(Log.VERBOSE)) {
+            write(Log.VERBOSE, tag, message.get(), null);
+        }
+    }
+
+    public static void d(String tag, String message) {
+        if (BuildConfig.DEBUG && isEnabled(Log.DEBUG)) {
+            write(Log.DEBUG, tag, message, null);
+        }
+    }
+
+    public static void d(String tag, Message message) {
+        if (BuildConfig.DEBUG && isEnabled(Log.DEBUG)) {
+            write(Log.DEBUG, tag, message.get(), null);
+        }
+    }
+
+    public static void i(String tag, String message) {
+        if (isEnabled(Log.INFO)) {
+            write(Log.INFO, tag, message, null);
+        }
+    }
+
+    public static void i(String tag, Message message) {
+        if (isEnabled(Log.INFO)) {
+            write(Log.INFO, tag, message.get(), null);
+        }
+    }
+
+    public static void w(String tag, String message) {
+        if (isEnabled(Log.WARN)) {
+            write(Log.WARN, tag, message, null);
+        }
+    }
+
+    public static void w(String tag, Message message) {
+        if (isEnabled(Log.WARN)) {
+            write(Log.WARN, tag, message.get(), null);
+        }
+    }
+
+    public static void w(String tag, String message, Throwable error) {
+        if (isEnabled(Log.WARN)) {
+            write(Log.WARN, tag, message, error);
+        }
+    }
+
+    public static void e(String tag, String message) {
+        if (isEnabled(Log.ERROR)) {
+            write(Log.ERROR, tag, message, null);
+        }
+    }
+
+    public static void e(String tag, Message message) {
+        if (isEnabled(Log.ERROR)) {
+            write(Log.ERROR, tag, message.get(), null);
+        }
+    }
+
+    public static void e(String tag, String message, Throwable error) {
+        if (isEnabled(Log.ERROR)) {
+            write(Log.ERROR, tag, message, error);
+        }
+    }
+
+    public static void e(String tag, Message message, Throwable error) {
+        if (isEnabled(Log.ERROR)) {
+            write(Log.ERROR, tag, message.get(), error);
+        }
+    }
+
+    /**
+     * Shortens a payload (e.g. a JSON blob) to {@link #MAX_PAYLOAD_LENGTH}
+     * characters, noting how much was dropped.
+     */
+    public static String truncate(String payload) {
+        if (payload == null || payload.length() <= MAX_PAYLOAD_LENGTH) {
+            return payload;
+        }
+        int dropped = payload.length() - MAX_PAYLOAD_LENGTH;
+        return payload.substring(0, MAX_PAYLOAD_LENGTH) + "…(+" + dropped + " chars)";
+    }
+
+    private static void write(int level, String tag, String message, Throwable error) {
+        switch (level) {
+            case Log.VERBOSE:
+                Log.v(tag, message);
+                break;
+            case Log.DEBUG:
+                Log.d(tag, message);
+                break;
+            case Log.INFO:
+                Log.i(tag, message);
+                break;
+            case Log.WARN:
+                if (error != null) {
+                    Log.w(tag, message, error);
+                } else {
+                    Log.w(tag, message);
+                }
+                break;
+            default:
+                if (error != null) {
+                    Log.e(tag, message, error);
+                } else {
+                    Log.e(tag, message);
+                }
+                break;
+        }
+
+        String entry = error != null ? message + ": " + error : message;
+        record(level, tag, entry);
+    }
+
+    /**
+     * Adds an entry to the ring without writing it to logcat.
+     */
+    public static synchronized void record(int level, String tag, String message) {
+        int slot = ringNext;
+        ringTimes[slot] = System.currentTimeMillis();
+        ringLevels[slot] = level;
+        ringTags[slot] = tag;
+        ringThreads[slot] = Thread.currentThread().getName();
+        ringMessages[slot] = truncate(message);
+
+        ringNext = (slot + 1) % RING_CAPACITY;
+        if (ringSize < RING_CAPACITY) {
+            ringSize++;
+        }
+    }
+
+    /**
+     * @return The ring's entries, oldest first.
+     */
+    public static synchronized JSONArray dump() {
+        JSONArray entries = new JSONArray();
+        int first = (ringNext - ringSize + RING_CAPACITY) % RING_CAPACITY;
+        for (int i = 0; i < ringSize; i++) {
+            int slot = (first + i) % RING_CAPACITY;
+            try {
+                JSONObject entry = new JSONObject();
+                entry.put("time", ringTimes[slot]);
+                entry.put("level", levelName(ringLevels[slot]));
+                entry.put("tag", ringTags[slot]);
+                entry.put("thread", ringThreads[slot]);
+                entry.put("message", ringMessages[slot]);
+                entries.put(entry);
+            } catch (JSONException e) {
+                // Skip the entry rather than fail the whole dump
+            }
+        }
+        return entries;
+    }
+
+    public static synchronized void clear() {
+        for (int i = 0; i < RING_CAPACITY; i++) {
+            ringTags[i] = null;
+            ringThreads[i] = null;
+            ringMessages[i] = null;
+        }
+        ringNext = 0;
+        ringSize = 0;
+    }
+
+    private static String levelName(int level) {
+        switch (level) {
+            case Log.VERBOSE:
+                return "V";
+            case Log.DEBUG:
+                return "D";
+            case Log.INFO:
+                return "I";
+            case Log.WARN:
+                return "W";
+            default:
+                return "E";
+        }
+    }
+}
@@ -6,12 +6,13 @@ import android.content.BroadcastReceiver;
 import android.content.SharedPreferences;
 import android.content.IntentFilter;
 import android.content.Context;
-import android.util.Log;
 
 import android.webkit.WebView;
 import com.getcapacitor.BridgeActivity;
+import com.getcapacitor.WebViewListener;
 import java.util.Set;
 import com.getcapacitor.Bridge;
+import com.getcapacitor.Plugin;
 
 public class MainActivity extends BridgeActivity {
 
@@ -27,13 +28,21 @@ public class MainActivity extends BridgeActivity {
      */
     @Override
     public void onCreate(Bundle savedInstanceState) {
-        Log.d(Const.LOG_TAG_DOENIT, "MainActivity onCreate called");
+        Logger.d(Const.LOG_TAG_DOENIT, "MainActivity onCreate called");
+        Tracer.Span span = Tracer.begin("MainActivity.onCreate");
 
         // Register plugins
         registerPlugin(TaskWidgetPlugin.class);
         registerPlugin(BillingPlugin.class);
+        registerPlugin(ReminderPlugin.class);
+        registerPlugin(DiagnosticsPlugin.class);
+        for (Class<? extends Plugin> plugin : DebugPlugins.all()) {
+            registerPlugin(plugin);
+        }
+        StartupTimeline.mark(StartupTimeline.PLUGINS_REGISTERED);
 
         super.onCreate(savedInstanceState);
+        StartupTimeline.mark(StartupTimeline.BRIDGE_READY);
 
         // Initialize DB lazily only when needed
         DB.init(getApplicationContext());
@@ -41,6 +50,17 @@ public class MainActivity extends BridgeActivity {
         // Handle intent
         Intent intent = getIntent();
         Bridge bridge = getBridge();
+        boolean assetServing = AssetServer.isEnabled(this);
+        if (assetServing) {
+            bridge.setWebViewClient(new AssetWebViewClient(bridge));
+        }
+        StartupTimeline.setVariant(assetServing ? "asset_server" : "default_assets");
+        bridge.addWebViewListener(new WebViewListener() {
+            @Override
+            public void onPageLoaded(WebView webView) {
+                StartupTimeline.mark(StartupTimeline.PAGE_FINISHED);
+            }
+        });
 
         Utils.navigateToRoute(bridge, intent);
 
@@ -50,11 +70,20 @@ public class MainActivity extends BridgeActivity {
             // Check for pending task updates from SharedPreferences
             checkForPendingTaskUpdates();
         }
+
+        span.end();
+    }
+
+    @Override
+    public void onStop() {
+        super.onStop();
+        // Save what the launch reached if it is left before finishing
+        StartupTimeline.finish();
     }
 
     @Override
     public void onResume() {
-        Log.d(Const.LOG_TAG_DOENIT, "MainActivity onResume called");
+        Logger.d(Const.LOG_TAG_DOENIT, "MainActivity onResume called");
         super.onResume();
 
         // Wait for WebView to be ready before performing operations
@@ -92,41 +121,50 @@ public class MainActivity extends BridgeActivity {
     }
 
     private void checkForPendingTaskUpdates() {
+        Tracer.Span span = Tracer.begin("MainActivity.checkForPendingTaskUpdates");
         try {
             String taskIds = DB.getString(Const.TASK_ID);
             if (taskIds == null) {
-                Log.d(Const.LOG_TAG_DOENIT, "No completed task found");
+                Logger.d(Const.LOG_TAG_DOENIT, "No completed task found");
+                StartupTimeline.mark(StartupTimeline.PENDING_UPDATES);
                 return;
             }
 
             Bridge bridge = getBridge();
             if (bridge == null) {
-                Log.w(Const.LOG_TAG_DOENIT, "Bridge is null, cannot forward task completion");
+                Logger.w(Const.LOG_TAG_DOENIT, "Bridge is null, cannot forward task completion");
                 return;
             }
 
             WebView webView = bridge.getWebView();
             if (webView == null) {
-                Log.w(Const.LOG_TAG_DOENIT, "WebView is null, cannot forward task completion");
+                Logger.w(Const.LOG_TAG_DOENIT, "WebView is null, cannot forward task completion");
                 return;
             }
 
-            Log.d(Const.LOG_TAG_DOENIT, "Found pending task update for taskIds: " + taskIds);
+            Logger.d(Const.LOG_TAG_DOENIT, () -> "Found pending task update for taskIds: " + taskIds);
             final String js = String.format(
                 "if (window.location) { window.location.href = '/?completed_task_ids=%s'; }",
                 taskIds
             );
 
             webView.post(() -> {
+                Tracer.Span jsSpan = Tracer.begin("MainActivity.forwardCompletedTasks", taskIds);
                 try {
                     webView.evaluateJavascript(js, null);
                     DB.clearData();
+                    WidgetFirstPage.clear(MainActivity.this);
+                    StartupTimeline.mark(StartupTimeline.PENDING_UPDATES);
                 } catch (Exception e) {
-                    Log.e(Const.LOG_TAG_DOENIT, "Error executing JavaScript for task completion", e);
+                    Logger.e(Const.LOG_TAG_DOENIT, "Error executing JavaScript for task completion", e);
+                } finally {
+                    jsSpan.end();
                 }
             });
         } catch (Exception e) {
-            Log.e(Const.LOG_TAG_DOENIT, "Error checking for pending task updates", e);
+            Logger.e(Const.LOG_TAG_DOENIT, "Error checking for pending task updates", e);
+        } finally {
+            span.end();
         }
     }
 }
@@ -0,0 +1,206 @@
+package doenit.app;
+
+import android.os.SystemClock;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free registry of native counters, gauges and latency histograms.
+ *
+ * Metrics are created on first use and recorded with atomic operations only,
+ * so instrumenting hot paths (e.g. getViewAt) costs a map lookup and a few
+ * CAS-free increments. Latencies are recorded in microseconds.
+ */
+public final class Metrics {
+    private static final Map<String, AtomicLong> counters = new ConcurrentHashMap<>();
+    private static final Map<String, AtomicLong> gauges = new ConcurrentHashMap<>();
+    private static final Map<String, Histogram> histograms = new ConcurrentHashMap<>();
+
+    private Metrics() {
+    }
+
+    public static void increment(String name) {
+        add(name, 1);
+    }
+
+    public static void add(String name, long delta) {
+        counters.computeIfAbsent(name, key -> new AtomicLong()).addAndGet(delta);
+    }
+
+    public static void setGauge(String name, long value) {
+        gauges.computeIfAbsent(name, key -> new AtomicLong()).set(value);
+    }
+
+    public static Histogram histogram(String name) {
+        return histograms.computeIfAbsent(name, key -> new Histogram());
+    }
+
+    public static void record(String name, long micros) {
+        histogram(name).record(micros);
+    }
+
+    /**
+     * @return A start timestamp to pass to {@link #stop(String, long)}.
+     */
+    public static long start() {
+        return SystemClock.elapsedRealtimeNanos();
+    }
+
+    /**
+     * Records the time elapsed since {@code startNanos} into the named
+     * histogram.
+     */
+    public static void stop(String name, long startNanos) {
+        record(name, (SystemClock.elapsedRealtimeNanos() - startNanos) / 1000);
+    }
+
+    /**
+     * @return {counters: {name: n}, gauges: {name: n}, histograms: {name:
+     *         {count, sum_us, max_us, p50_us, p90_us, p99_us}}}
+     */
+    public static JSONObject snapshot() throws JSONException {
+        JSONObject counterJson = new JSONObject();
+        for (Map.Entry<String, AtomicLong> entry : counters.entrySet()) {
+            counterJson.put(entry.getKey(), entry.getValue().get());
+        }
+
+        JSONObject gaugeJson = new JSONObject();
+        for (Map.Entry<String, AtomicLong> entry : gauges.entrySet()) {
+            gaugeJson.put(entry.getKey(), entry.getValue().get());
+        }
+
+        JSONObject histogramJson = new JSONObject();
+        for (Map.Entry<String, Histogram> entry : histograms.entrySet()) {
+            histogramJson.put(entry.getKey(), entry.getValue().toJson());
+        }
+
+        JSONObject result = new JSONObject();
+        result.put("counters", counterJson);
+        result.put("gauges", gaugeJson);
+        result.put("histograms", histogramJson);
+        return result;
+    }
+
+    /**
+     * Zeroes every counter and histogram. Gauges keep their last value since
+     * they describe current state rather than accumulate.
+     */
+    public static void reset() {
+        for (AtomicLong counter : counters.values()) {
+            counter.set(0);
+        }
+        for (Histogram histogram : histograms.values()) {
+            histogram.reset();
+        }
+    }
+
+    /**
+     * Log-linear histogram in the style of HdrHistogram: every power of two is
+     * split into {@code SUB_BUCKETS} linear buckets, which bounds the relative
+     * error of a recorded value to 1/{@code SUB_BUCKETS} (~6%) over the whole
+     * range while keeping a fixed, small array of atomic counts.
+     */
+    public static final class Histogram {
+        private static final int SUB_BITS = 4;
+        private static final int SUB_BUCKETS = 1 << SUB_BITS;
+        // Values are clamped below 2^MAX_MAGNITUDE+1 us (~1.2 hours)
+        private static final int MAX_MAGNITUDE = 31;
+        private static final int BUCKET_COUNT = (MAX_MAGNITUDE - SUB_BITS + 2) * SUB_BUCKETS;
+        private static final long MAX_VALUE = (1L << (MAX_MAGNITUDE + 1)) - 1;
+
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong sum = new AtomicLong();
+        private final AtomicLong max = new AtomicLong();
+
+        public void record(long value) {
+            if (value < 0) {
+                value = 0;
+            } else if (value > MAX_VALUE) {
+                value = MAX_VALUE;
+            }
+
+            counts.incrementAndGet(indexOf(value));
+            count.incrementAndGet();
+            sum.addAndGet(value);
+
+            long current = max.get();
+            while (value > current && !max.compareAndSet(current, value)) {
+                current = max.get();
+            }
+        }
+
+        public long count() {
+            return count.get();
+        }
+
+        /**
+         * @param quantile Between 0 and 1
+         * @return The highest value equivalent to the bucket holding the
+         *         quantile, capped at the recorded maximum.
+         */
+        public long valueAt(double quantile) {
+            long total = count.get();
+            if (total == 0) {
+                return 0;
+            }
+
+            long rank = Math.max(1, (long) Math.ceil(quantile * total));
+            long seen = 0;
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                seen += counts.get(i);
+                if (seen >= rank) {
+                    return Math.min(highestValueIn(i), max.get());
+                }
+            }
+            return max.get();
+        }
+
+        public void reset() {
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                counts.set(i, 0);
+            }
+            count.set(0);
+            sum.set(0);
+            max.set(0);
+        }
+
+        JSONObject toJson() throws JSONException {
+            JSONObject json = new JSONObject();
+            json.put("count", count.get());
+            json.put("sum_us", sum.get());
+            json.put("max_us", max.get());
+            json.put("p50_us", valueAt(0.50));
+            json.put("p90_us", valueAt(0.90));
+            json.put("p99_us", valueAt(0.99));
+            return json;
+        }
+
+        static int indexOf(long value) {
+            if (value < SUB_BUCKETS * 2) {
+                return (int) value;
+            }
+
+            int magnitude = 63 - Long.numberOfLeadingZeros(value);
+            int shift = magnitude - SUB_BITS;
+            int sub = (int) (value >>> shift) - SUB_BUCKETS;
+            return (shift + 1) * SUB_BUCKETS + sub;
+        }
+
+        static long highestValueIn(int index) {
+            if (index < SUB_BUCKETS * 2) {
+                return index;
+            }
+
+            int shift = index / SUB_BUCKETS - 1;
+            int sub = index % SUB_BUCKETS;
+            return ((long) (SUB_BUCKETS + sub + 1) << shift) - 1;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package doenit.app;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Persisted queue of task changes made natively (e.g. by
+ * {@link QuickAddActivity}) while the WebView was not running.
+ *
+ * The web layer takes the whole queue in one call on its next start, applies
+ * it to its database and acknowledges the mutations it applied; anything not
+ * acknowledged is handed over again next time. The queue lives in its own
+ * preferences file so {@link DB#clearData()} does not wipe it.
+ *
+ * Each mutation is {id, type, task_id, fields, created_at}, where
+ * {@code fields} holds the task columns to create or change.
+ */
+public class PendingMutations {
+    private static final String TAG = Const.LOG_TAG_DOENIT;
+    private static final String PREFS_NAME = "DoenitPendingMutations";
+    private static final String KEY_MUTATIONS = "mutations";
+
+    public static final String TYPE_CREATE = "create";
+    public static final String TYPE_UPDATE = "update";
+
+    private static PendingMutations instance;
+
+    private final SharedPreferences prefs;
+    private JSONArray mutations = new JSONArray();
+
+    private PendingMutations(Context context) {
+        prefs = context.getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        load();
+    }
+
+    public static synchronized PendingMutations get(Context context) {
+        if (instance == null) {
+            instance = new PendingMutations(context);
+        }
+        return instance;
+    }
+
+    /**
+     * Queues a mutation and persists the queue.
+     *
+     * @return The mutation's ID, used to acknowledge it.
+     */
+    public synchronized String add(String type, String taskId, JSONObject fields) throws JSONException {
+        String id = UUID.randomUUID().toString();
+
+        JSONObject mutation = new JSONObject();
+        mutation.put("id", id);
+        mutation.put("type", type);
+        mutation.put("task_id", taskId);
+        mutation.put("fields", fields);
+        mutation.put("created_at", System.currentTimeMillis());
+        mutations.put(mutation);
+
+        save();
+        Logger.d(TAG, () -> "Queued " + type + " mutation for task " + taskId);
+        return id;
+    }
+
+    /**
+     * @return A copy of every queued mutation, oldest first.
+     */
+    public synchronized JSONArray getAll() throws JSONException {
+        return new JSONArray(mutations.toString());
+    }
+
+    public synchronized int size() {
+        return mutations.length();
+    }
+
+    /**
+     * Drops the acknowledged mutations.
+     *
+     * @return The number of mutations removed.
+     */
+    public synchronized int ack(Set<String> ids) {
+        JSONArray remaining = new JSONArray();
+        int removed = 0;
+        for (int i = 0; i < mutations.length(); i++) {
+            JSONObject mutation = mutations.optJSONObject(i);
+            if (mutation != null && ids.contains(mutation.optString("id"))) {
+                removed++;
+            } else {
+                remaining.put(mutation);
+            }
+        }
+
+        if (removed > 0) {
+            mutations = remaining;
+            save();
+        }
+        return removed;
+    }
+
+    private void save() {
+        prefs.edit().putString(KEY_MUTATIONS, mutations.toString()).apply();
+    }
+
+    private void load() {
+        String json = prefs.getString(KEY_MUTATIONS, null);
+        if (Utils.isEmpty(json)) {
+            return;
+        }
+
+        try {
+            mutations = new JSONArray(json);
+        } catch (JSONException e) {
+            Logger.e(TAG, "Error loading pending mutations", e);
+        }
+    }
+}
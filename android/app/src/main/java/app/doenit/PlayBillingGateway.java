@@ -0,0 +1,99 @@
+package doenit.app;
+
+import android.app.Activity;
+
+import com.android.billingclient.api.AcknowledgePurchaseParams;
+import com.android.billingclient.api.AcknowledgePurchaseResponseListener;
+import com.android.billingclient.api.BillingClient;
+import com.android.billingclient.api.BillingClientStateListener;
+import com.android.billingclient.api.BillingFlowParams;
+import com.android.billingclient.api.BillingResult;
+import com.android.billingclient.api.ProductDetails;
+import com.android.billingclient.api.ProductDetailsResponseListener;
+import com.android.billingclient.api.PurchasesResponseListener;
+import com.android.billingclient.api.PurchasesUpdatedListener;
+import com.android.billingclient.api.QueryProductDetailsParams;
+import com.android.billingclient.api.QueryPurchasesParams;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * {@link BillingGateway} backed by Play's {@link BillingClient}.
+ */
+public class PlayBillingGateway implements BillingGateway {
+    private final BillingClient client;
+
+    public PlayBillingGateway(Activity activity, PurchasesUpdatedListener listener) {
+        client = BillingClient.newBuilder(activity)
+                .setListener(listener)
+                .enablePendingPurchases()
+                .build();
+    }
+
+    @Override
+    public void startConnection(BillingClientStateListener listener) {
+        client.startConnection(listener);
+    }
+
+    @Override
+    public boolean isReady() {
+        return client.isReady();
+    }
+
+    @Override
+    public void endConnection() {
+        client.endConnection();
+    }
+
+    @Override
+    public void queryProductDetails(String productType, List<String> productIds,
+            ProductDetailsResponseListener listener) {
+        List<QueryProductDetailsParams.Product> products = new ArrayList<>(productIds.size());
+        for (String productId : productIds) {
+            products.add(QueryProductDetailsParams.Product.newBuilder()
+                    .setProductId(productId)
+                    .setProductType(productType)
+                    .build());
+        }
+
+        QueryProductDetailsParams params = QueryProductDetailsParams.newBuilder()
+                .setProductList(products)
+                .build();
+        client.queryProductDetailsAsync(params, listener);
+    }
+
+    @Override
+    public void queryPurchases(String productType, PurchasesResponseListener listener) {
+        QueryPurchasesParams params = QueryPurchasesParams.newBuilder()
+                .setProductType(productType)
+                .build();
+        client.queryPurchasesAsync(params, listener);
+    }
+
+    @Override
+    public void acknowledgePurchase(String purchaseToken, AcknowledgePurchaseResponseListener listener) {
+        AcknowledgePurchaseParams params = AcknowledgePurchaseParams.newBuilder()
+                .setPurchaseToken(purchaseToken)
+                .build();
+        client.acknowledgePurchase(params, listener);
+    }
+
+    @Override
+    public BillingResult launchBillingFlow(Activity activity, ProductDetails details, String offerToken,
+            String accountId) {
+        BillingFlowParams.ProductDetailsParams product = BillingFlowParams.ProductDetailsParams.newBuilder()
+                .setProductDetails(details)
+                .setOfferToken(offerToken)
+                .build();
+
+        BillingFlowParams.Builder builder = BillingFlowParams.newBuilder()
+                .setProductDetailsParamsList(Collections.singletonList(product));
+        if (!Utils.isEmpty(accountId)) {
+            builder.setObfuscatedAccountId(accountId);
+        }
+
+        return client.launchBillingFlow(activity, builder.build());
+    }
+}
@@ -0,0 +1,137 @@
+package doenit.app;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import com.getcapacitor.PluginCall;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The purchase flows {@link BillingPlugin} has in flight, each with every
+ * plugin call waiting on it.
+ *
+ * Flows are keyed by product ID; the plugin always buys a product's first
+ * offer, so the product identifies the flow. A second startPurchase for a
+ * product joins the flow already running instead of opening another billing
+ * dialog. Purchase updates are routed to flows by the products they contain;
+ * updates without purchases (a cancel or an error) go to the flow whose
+ * dialog was opened last, as Play shows one at a time. A flow that gets no
+ * answer within {@code TIMEOUT_MS} is handed to the timeout listener.
+ */
+public class PurchaseFlows {
+    /** Long enough for a user to add a payment method in the dialog */
+    public static final long TIMEOUT_MS = 15 * 60 * 1000;
+
+    public interface TimeoutListener {
+        void onTimeout(String productId, List<PluginCall> calls);
+    }
+
+    private static class Flow {
+        final String productId;
+        final List<PluginCall> calls = new ArrayList<>();
+        final Runnable timeout;
+        String offerToken;
+
+        Flow(String productId, Runnable timeout) {
+            this.productId = productId;
+            this.timeout = timeout;
+        }
+    }
+
+    private final Map<String, Flow> flows = new HashMap<>();
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final TimeoutListener timeoutListener;
+    private String launchedProductId;
+
+    public PurchaseFlows(TimeoutListener timeoutListener) {
+        this.timeoutListener = timeoutListener;
+    }
+
+    /**
+     * Adds the call to the product's flow, starting one if there is none.
+     *
+     * @return True if a new flow was started and the caller must launch it;
+     *         false if the call joined one already running.
+     */
+    public synchronized boolean join(String productId, PluginCall call) {
+        Flow flow = flows.get(productId);
+        if (flow != null) {
+            flow.calls.add(call);
+            return false;
+        }
+
+        flow = new Flow(productId, () -> expire(productId));
+        flow.calls.add(call);
+        flows.put(productId, flow);
+        handler.postDelayed(flow.timeout, TIMEOUT_MS);
+        return true;
+    }
+
+    /**
+     * Records that the flow's billing dialog is showing.
+     */
+    public synchronized void markLaunched(String productId, String offerToken) {
+        Flow flow = flows.get(productId);
+        if (flow == null) {
+            return;
+        }
+
+        flow.offerToken = offerToken;
+        launchedProductId = productId;
+    }
+
+    /**
+     * Ends the product's flow.
+     *
+     * @return The calls that were waiting on it; empty if there was no flow.
+     */
+    public synchronized List<PluginCall> take(String productId) {
+        Flow flow = flows.remove(productId);
+        if (flow == null) {
+            return new ArrayList<>();
+        }
+
+        handler.removeCallbacks(flow.timeout);
+        if (productId.equals(launchedProductId)) {
+            launchedProductId = null;
+        }
+        return flow.calls;
+    }
+
+    /**
+     * Ends the flow whose dialog was opened last, for updates that do not say
+     * which product they are about.
+     */
+    public synchronized List<PluginCall> takeLaunched() {
+        if (launchedProductId == null) {
+            return new ArrayList<>();
+        }
+        return take(launchedProductId);
+    }
+
+    /**
+     * Ends every flow, e.g. when the plugin is destroyed.
+     */
+    public synchronized List<PluginCall> takeAll() {
+        List<PluginCall> calls = new ArrayList<>();
+        for (String productId : new ArrayList<>(flows.keySet())) {
+            calls.addAll(take(productId));
+        }
+        return calls;
+    }
+
+    public synchronized int size() {
+        return flows.size();
+    }
+
+    private void expire(String productId) {
+        List<PluginCall> calls = take(productId);
+        if (!calls.isEmpty()) {
+            timeoutListener.onTimeout(productId, calls);
+        }
+    }
+}
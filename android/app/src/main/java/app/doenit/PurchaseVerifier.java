@@ -0,0 +1,80 @@
+package doenit.app;
+
+import android.util.Base64;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.spec.X509EncodedKeySpec;
+
+/**
+ * Checks a purchase's JSON against the signature Play attached to it, using
+ * the app's licensing public key (Play Console, Monetization setup), so a
+ * purchase can be trusted without a server round trip.
+ *
+ * The key is read from {@code PLAY_BILLING_PUBLIC_KEY} in the build's .env
+ * file. Builds without one cannot verify locally and leave entitlement to the
+ * server.
+ */
+public class PurchaseVerifier {
+    private static final String TAG = Const.LOG_TAG_DOENIT;
+    private static final String KEY_ALGORITHM = "RSA";
+    private static final String SIGNATURE_ALGORITHM = "SHA1withRSA";
+
+    private static PublicKey publicKey;
+    private static boolean loaded;
+
+    /**
+     * @return Whether a valid public key is configured.
+     */
+    public static boolean isAvailable() {
+        return getPublicKey() != null;
+    }
+
+    /**
+     * @return Whether {@code signature} is Play's signature over {@code json};
+     *         false for anything malformed or when no key is configured.
+     */
+    public static boolean verify(String json, String signature) {
+        PublicKey key = getPublicKey();
+        if (key == null || Utils.isEmpty(json) || Utils.isEmpty(signature)) {
+            return false;
+        }
+
+        long start = Metrics.start();
+        try {
+            Signature verifier = Signature.getInstance(SIGNATURE_ALGORITHM);
+            verifier.initVerify(key);
+            verifier.update(json.getBytes(StandardCharsets.UTF_8));
+            return verifier.verify(Base64.decode(signature, Base64.DEFAULT));
+        } catch (GeneralSecurityException | IllegalArgumentException e) {
+            Logger.w(TAG, "Purchase signature could not be checked: " + e.getMessage());
+            return false;
+        } finally {
+            Metrics.stop(Const.METRIC_BILLING_VERIFY, start);
+        }
+    }
+
+    private static synchronized PublicKey getPublicKey() {
+        if (loaded) {
+            return publicKey;
+        }
+        loaded = true;
+
+        String encoded = BuildConfig.PLAY_BILLING_PUBLIC_KEY;
+        if (Utils.isEmpty(encoded)) {
+            Logger.i(TAG, "No Play billing public key configured, purchases are verified by the server only");
+            return null;
+        }
+
+        try {
+            byte[] bytes = Base64.decode(encoded, Base64.DEFAULT);
+            publicKey = KeyFactory.getInstance(KEY_ALGORITHM).generatePublic(new X509EncodedKeySpec(bytes));
+        } catch (GeneralSecurityException | IllegalArgumentException e) {
+            Logger.e(TAG, "Invalid Play billing public key", e);
+        }
+        return publicKey;
+    }
+}
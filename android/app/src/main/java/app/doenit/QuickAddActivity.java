@@ -0,0 +1,213 @@
+package doenit.app;
+
+import android.app.Activity;
+import android.app.DatePickerDialog;
+import android.content.DialogInterface;
+import android.content.Intent;
+import android.os.Bundle;
+import android.view.ViewGroup;
+import android.view.inputmethod.EditorInfo;
+import android.widget.ArrayAdapter;
+import android.widget.Button;
+import android.widget.EditText;
+import android.widget.Spinner;
+import android.widget.TextView;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.UUID;
+
+import doenit.app.R;
+
+/**
+ * Lightweight quick-add dialog opened from the widget's add button.
+ *
+ * Unlike {@link CreateTaskActivity} this is a plain Activity: it never starts
+ * the WebView, so it opens about as fast as a system dialog. A saved task is
+ * added to the widget's snapshot right away and queued in
+ * {@link PendingMutations}; the app creates it in its own database the next
+ * time it starts. The full editor stays one tap away.
+ */
+public class QuickAddActivity extends Activity {
+    private static final String STATE_DUE_DAY = "due_day";
+
+    private EditText nameInput;
+    private Button dateButton;
+    private Spinner categorySpinner;
+    private final List<String> categoryIds = new ArrayList<>();
+    private int dueDay = TaskTable.NO_DATE;
+    private boolean english;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        Tracer.Span span = Tracer.begin("QuickAddActivity.onCreate");
+        DB.init(getApplicationContext());
+
+        boolean light = "light".equals(DB.getString("theme", "dark"));
+        setTheme(light ? R.style.Theme_App_QuickAdd_Light : R.style.Theme_App_QuickAdd);
+        super.onCreate(savedInstanceState);
+
+        setContentView(R.layout.quick_add_task);
+        getWindow().setLayout(ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.WRAP_CONTENT);
+        english = "en".equals(DB.getString("language", "af"));
+
+        if (savedInstanceState != null) {
+            dueDay = savedInstanceState.getInt(STATE_DUE_DAY, TaskTable.NO_DATE);
+        }
+
+        TextView heading = findViewById(R.id.quick_add_heading);
+        heading.setText(text("New task", "Nuwe taak"));
+
+        nameInput = findViewById(R.id.quick_add_name);
+        nameInput.setHint(text("What must be done?", "Wat moet gedoen word?"));
+        nameInput.setOnEditorActionListener((view, actionId, event) -> {
+            if (actionId == EditorInfo.IME_ACTION_DONE) {
+                save();
+                return true;
+            }
+            return false;
+        });
+
+        dateButton = findViewById(R.id.quick_add_date);
+        dateButton.setOnClickListener(view -> pickDate());
+        updateDateButton();
+
+        categorySpinner = findViewById(R.id.quick_add_category);
+        setUpCategories();
+
+        Button openEditor = findViewById(R.id.quick_add_open_editor);
+        openEditor.setText(text("More options", "Meer opsies"));
+        openEditor.setOnClickListener(view -> openEditor());
+
+        Button saveButton = findViewById(R.id.quick_add_save);
+        saveButton.setText(text("Save", "Stoor"));
+        saveButton.setOnClickListener(view -> save());
+
+        span.end();
+    }
+
+    @Override
+    protected void onSaveInstanceState(Bundle outState) {
+        super.onSaveInstanceState(outState);
+        outState.putInt(STATE_DUE_DAY, dueDay);
+    }
+
+    private String text(String en, String af) {
+        return english ? en : af;
+    }
+
+    /**
+     * Fills the category picker from the categories the app last sent to the
+     * widget, with "no category" first.
+     */
+    private void setUpCategories() {
+        List<String> names = new ArrayList<>();
+        names.add(text("No category", "Geen kategorie"));
+        categoryIds.add(null);
+
+        String categoriesJson = DB.getString(Const.WIDGET_CATEGORIES);
+        if (!Utils.isEmpty(categoriesJson)) {
+            try {
+                JSONObject categories = new JSONObject(categoriesJson);
+                Iterator<String> keys = categories.keys();
+                while (keys.hasNext()) {
+                    String id = keys.next();
+                    JSONObject category = categories.optJSONObject(id);
+                    if (category != null) {
+                        names.add(category.optString("name", ""));
+                        categoryIds.add(id);
+                    }
+                }
+            } catch (JSONException e) {
+                Logger.e(Const.LOG_TAG_DOENIT, "Error parsing categories for quick add", e);
+            }
+        }
+
+        ArrayAdapter<String> adapter = new ArrayAdapter<>(this, android.R.layout.simple_spinner_item, names);
+        adapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
+        categorySpinner.setAdapter(adapter);
+    }
+
+    private void pickDate() {
+        int[] date = TaskUtil.fromEpochDay(dueDay != TaskTable.NO_DATE ? dueDay : TaskUtil.today());
+        DatePickerDialog dialog = new DatePickerDialog(this, (picker, year, month, day) -> {
+            dueDay = TaskUtil.toEpochDay(year, month + 1, day);
+            updateDateButton();
+        }, date[0], date[1] - 1, date[2]);
+
+        dialog.setButton(DialogInterface.BUTTON_NEUTRAL, text("No date", "Geen datum"), (d, which) -> {
+            dueDay = TaskTable.NO_DATE;
+            updateDateButton();
+        });
+        dialog.show();
+    }
+
+    private void updateDateButton() {
+        if (dueDay == TaskTable.NO_DATE) {
+            dateButton.setText(text("No due date", "Geen sperdatum"));
+        } else {
+            dateButton.setText(TaskUtil.toDisplayDate(dueDay, TaskUtil.getDisplayLocale()));
+        }
+    }
+
+    /**
+     * Adds the task to the widget and queues it for the app, then closes. The
+     * task gets its final ID here so the widget row and the app's task match.
+     */
+    private void save() {
+        String name = nameInput.getText().toString().trim();
+        if (name.isEmpty()) {
+            nameInput.setError(text("What must be done?", "Wat moet gedoen word?"));
+            return;
+        }
+
+        Tracer.Span span = Tracer.begin("QuickAddActivity.save");
+        try {
+            String taskId = UUID.randomUUID().toString();
+            String categoryId = categoryIds.get(Math.max(0, categorySpinner.getSelectedItemPosition()));
+
+            JSONObject fields = new JSONObject();
+            fields.put("name", name);
+            fields.put("due_date", dueDay != TaskTable.NO_DATE ? TaskUtil.toIsoDate(dueDay) : JSONObject.NULL);
+            fields.put("category_id", categoryId != null ? categoryId : JSONObject.NULL);
+            fields.put("created_at", nowTimestamp());
+
+            PendingMutations.get(this).add(PendingMutations.TYPE_CREATE, taskId, fields);
+
+            JSONObject widgetTask = new JSONObject(fields.toString());
+            widgetTask.put("id", taskId);
+            TaskWidgetProvider.addTask(getApplicationContext(), widgetTask);
+
+            finish();
+        } catch (JSONException e) {
+            Logger.e(Const.LOG_TAG_DOENIT, "Error saving quick-add task", e);
+        } finally {
+            span.end();
+        }
+    }
+
+    /**
+     * Hands over to the WebView editor; nothing typed here is saved.
+     */
+    private void openEditor() {
+        Intent intent = new Intent(this, CreateTaskActivity.class);
+        intent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TOP
+                | Intent.FLAG_ACTIVITY_SINGLE_TOP);
+        startActivity(intent);
+        finish();
+    }
+
+    private static String nowTimestamp() {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.ROOT);
+        format.setTimeZone(TimeZone.getDefault());
+        return format.format(new Date());
+    }
+}
@@ -0,0 +1,126 @@
+package doenit.app;
+
+import android.content.Context;
+
+import com.getcapacitor.JSArray;
+import com.getcapacitor.JSObject;
+import com.getcapacitor.Plugin;
+import com.getcapacitor.PluginCall;
+import com.getcapacitor.PluginMethod;
+import com.getcapacitor.annotation.CapacitorPlugin;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+@CapacitorPlugin(name = "Reminders")
+public class ReminderPlugin extends Plugin {
+
+    @PluginMethod
+    public void schedule(PluginCall call) {
+        try {
+            JSONArray reminders = call.getArray("reminders");
+            if (reminders == null) {
+                call.reject("Missing 'reminders' parameter");
+                return;
+            }
+
+            List<ReminderStore.Reminder> batch = new ArrayList<>();
+            for (int i = 0; i < reminders.length(); i++) {
+                batch.add(ReminderStore.fromJson(reminders.getJSONObject(i)));
+            }
+
+            Context context = getContext();
+            ReminderScheduler.schedule(context, batch);
+
+            JSObject ret = new JSObject();
+            ret.put("success", true);
+            ret.put("count", batch.size());
+            call.resolve(ret);
+        } catch (Exception e) {
+            call.reject("Failed to schedule reminders: " + e.getMessage());
+        }
+    }
+
+    @PluginMethod
+    public void cancelForTasks(PluginCall call) {
+        try {
+            JSONArray taskIds = call.getArray("task_ids");
+            if (taskIds == null) {
+                call.reject("Missing 'task_ids' parameter");
+                return;
+            }
+
+            Context context = getContext();
+            for (int i = 0; i < taskIds.length(); i++) {
+                ReminderScheduler.cancelForTask(context, taskIds.getString(i));
+            }
+
+            JSObject ret = new JSObject();
+            ret.put("success", true);
+            call.resolve(ret);
+        } catch (Exception e) {
+            call.reject("Failed to cancel reminders: " + e.getMessage());
+        }
+    }
+
+    @PluginMethod
+    public void cancel(PluginCall call) {
+        try {
+            JSONArray ids = call.getArray("ids");
+            if (ids == null) {
+                call.reject("Missing 'ids' parameter");
+                return;
+            }
+
+            int[] reminderIds = new int[ids.length()];
+            for (int i = 0; i < reminderIds.length; i++) {
+                reminderIds[i] = Integer.parseInt(ids.getString(i));
+            }
+            ReminderScheduler.cancel(getContext(), reminderIds);
+
+            JSObject ret = new JSObject();
+            ret.put("success", true);
+            call.resolve(ret);
+        } catch (Exception e) {
+            call.reject("Failed to cancel reminders: " + e.getMessage());
+        }
+    }
+
+    @PluginMethod
+    public void cancelAll(PluginCall call) {
+        try {
+            ReminderScheduler.cancelAll(getContext());
+
+            JSObject ret = new JSObject();
+            ret.put("success", true);
+            call.resolve(ret);
+        } catch (Exception e) {
+            call.reject("Failed to cancel reminders: " + e.getMessage());
+        }
+    }
+
+    @PluginMethod
+    public void getPending(PluginCall call) {
+        try {
+            JSArray reminders = new JSArray();
+            for (ReminderStore.Reminder reminder : ReminderStore.get(getContext()).getPending()) {
+                JSONObject json = new JSONObject();
+                json.put("id", reminder.id);
+                json.put("title", reminder.title);
+                json.put("at", reminder.at);
+                json.put("task_ids", new JSONArray(Arrays.asList(reminder.taskIds)));
+                reminders.put(json);
+            }
+
+            JSObject ret = new JSObject();
+            ret.put("reminders", reminders);
+            call.resolve(ret);
+        } catch (Exception e) {
+            call.reject("Failed to get pending reminders: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package doenit.app;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+
+/**
+ * Delivers reminder buckets when their alarm fires and re-arms pending
+ * buckets after a reboot or app update, since alarms do not survive either.
+ */
+public class ReminderReceiver extends BroadcastReceiver {
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        String action = intent.getAction();
+        Logger.d(Const.LOG_TAG_DOENIT, () -> "ReminderReceiver called with action: " + action);
+
+        if (Const.ACTION_REMINDER_BUCKET.equals(action)) {
+            long bucket = ReminderScheduler.getBucket(intent);
+            if (bucket >= 0) {
+                ReminderScheduler.deliverBucket(context, bucket);
+            }
+        } else if (Intent.ACTION_BOOT_COMPLETED.equals(action)
+                || Intent.ACTION_MY_PACKAGE_REPLACED.equals(action)) {
+            ReminderScheduler.rescheduleAll(context);
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package doenit.app;
+
+import android.app.AlarmManager;
+import android.app.Notification;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Build;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * First-party reminder scheduling for tasks.
+ *
+ * Reminders are grouped into {@link ReminderStore#BUCKET_MS} buckets and each
+ * bucket gets a single alarm, so scheduling a month of reminders costs one
+ * alarm per distinct time instead of one per task. Cancelling by task is a
+ * hash lookup in the store followed by re-arming only the touched buckets.
+ */
+public class ReminderScheduler {
+    private static final String TAG = Const.LOG_TAG_DOENIT;
+    private static final String CHANNEL_ID = "doenit_reminders";
+    private static final String EXTRA_BUCKET = "bucket";
+
+    // Language the channel was last registered in, or null before the first
+    // delivery in this process
+    private static String channelLanguage;
+
+    /**
+     * Adds or replaces the given reminders and arms one alarm per bucket they
+     * touch. The store is written once for the whole batch.
+     */
+    public static void schedule(Context context, List<ReminderStore.Reminder> reminders) {
+        ReminderStore store = ReminderStore.get(context);
+        Set<Long> buckets = new HashSet<>();
+
+        for (ReminderStore.Reminder reminder : reminders) {
+            long previousBucket = store.put(reminder);
+            if (previousBucket >= 0) {
+                buckets.add(previousBucket);
+            }
+            buckets.add(reminder.bucket());
+        }
+        store.save();
+
+        armBuckets(context, buckets);
+        Logger.d(TAG, () -> "Scheduled " + reminders.size() + " reminder(s) in " + buckets.size() + " alarm bucket(s)");
+    }
+
+    /**
+     * Cancels every pending reminder for the task and dismisses any of its
+     * reminders that are already showing.
+     */
+    public static void cancelForTask(Context context, String taskId) {
+        if (context == null || Utils.isEmpty(taskId)) {
+            return;
+        }
+
+        ReminderStore store = ReminderStore.get(context);
+        List<ReminderStore.Reminder> removed = store.removeForTask(taskId);
+        if (removed.isEmpty()) {
+            return;
+        }
+
+        store.save();
+        release(context, removed);
+        Logger.d(TAG, () -> "Cancelled " + removed.size() + " reminder(s) for task: " + taskId);
+    }
+
+    public static void cancel(Context context, int[] ids) {
+        ReminderStore store = ReminderStore.get(context);
+        List<ReminderStore.Reminder> removed = new ArrayList<>();
+        for (int id : ids) {
+            ReminderStore.Reminder reminder = store.remove(id);
+            if (reminder != null) {
+                removed.add(reminder);
+            }
+        }
+
+        if (removed.isEmpty()) {
+            return;
+        }
+
+        store.save();
+        release(context, removed);
+    }
+
+    public static void cancelAll(Context context) {
+        ReminderStore store = ReminderStore.get(context);
+        List<ReminderStore.Reminder> removed = store.removeAll();
+        store.save();
+        release(context, removed);
+    }
+
+    /**
+     * Re-arms every pending bucket, e.g. after a reboot cleared all alarms.
+     */
+    public static void rescheduleAll(Context context) {
+        Set<Long> buckets = ReminderStore.get(context).getPendingBuckets();
+        armBuckets(context, buckets);
+        Logger.d(TAG, () -> "Re-armed " + buckets.size() + " reminder bucket(s)");
+    }
+
+    /**
+     * Posts every reminder due in the bucket. Called by {@link ReminderReceiver}
+     * when the bucket's alarm fires.
+     */
+    static void deliverBucket(Context context, long bucket) {
+        ReminderStore store = ReminderStore.get(context);
+        List<ReminderStore.Reminder> due = store.takeBucket(bucket);
+        if (due.isEmpty()) {
+            return;
+        }
+        store.save();
+
+        NotificationManager notificationManager = getNotificationManager(context);
+        if (notificationManager == null) {
+            return;
+        }
+        ensureChannel(context, notificationManager);
+
+        for (ReminderStore.Reminder reminder : due) {
+            notificationManager.notify(reminder.id, buildNotification(context, reminder));
+        }
+        Logger.d(TAG, () -> "Delivered " + due.size() + " reminder(s) for bucket " + bucket);
+    }
+
+    static long getBucket(Intent intent) {
+        return intent.getLongExtra(EXTRA_BUCKET, -1);
+    }
+
+    private static void release(Context context, List<ReminderStore.Reminder> removed) {
+        Set<Long> buckets = new HashSet<>();
+        NotificationManager notificationManager = getNotificationManager(context);
+
+        for (ReminderStore.Reminder reminder : removed) {
+            if (reminder.delivered) {
+                if (notificationManager != null) {
+                    notificationManager.cancel(reminder.id);
+                }
+            } else {
+                buckets.add(reminder.bucket());
+            }
+        }
+
+        armBuckets(context, buckets);
+    }
+
+    /**
+     * Arms (or cancels, when empty) the alarm of each bucket.
+     */
+    private static void armBuckets(Context context, Set<Long> buckets) {
+        AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        if (alarmManager == null) {
+            return;
+        }
+
+        ReminderStore store = ReminderStore.get(context);
+        long now = System.currentTimeMillis();
+        for (long bucket : buckets) {
+            PendingIntent pendingIntent = getBucketIntent(context, bucket);
+            if (!store.hasBucket(bucket)) {
+                alarmManager.cancel(pendingIntent);
+                continue;
+            }
+
+            long triggerAt = Math.max(store.getBucketTriggerTime(bucket), now);
+            boolean canExact = Build.VERSION.SDK_INT < Build.VERSION_CODES.S || alarmManager.canScheduleExactAlarms();
+            if (canExact) {
+                alarmManager.setExactAndAllowWhileIdle(AlarmManager.RTC_WAKEUP, triggerAt, pendingIntent);
+            } else {
+                alarmManager.setAndAllowWhileIdle(AlarmManager.RTC_WAKEUP, triggerAt, pendingIntent);
+            }
+        }
+    }
+
+    private static PendingIntent getBucketIntent(Context context, long bucket) {
+        Intent intent = new Intent(context, ReminderReceiver.class);
+        intent.setAction(Const.ACTION_REMINDER_BUCKET);
+        intent.putExtra(EXTRA_BUCKET, bucket);
+
+        // Bucket indices are minutes since the epoch, which fit in an int
+        return PendingIntent.getBroadcast(
+                context,
+                (int) bucket,
+                intent,
+                PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
+    }
+
+    private static NotificationManager getNotificationManager(Context context) {
+        return (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
+    }
+
+    /**
+     * Registers the reminder channel once per process, and again when the
+     * app's language changed, which renames it in the system settings.
+     */
+    private static synchronized void ensureChannel(Context context, NotificationManager notificationManager) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.O) {
+            return;
+        }
+
+        DB.init(context);
+        String language = DB.getString("language", "af");
+        if (language.equals(channelLanguage)) {
+            return;
+        }
+
+        NotificationChannel channel = new NotificationChannel(CHANNEL_ID, TaskUtil.getReminderChannelName(),
+                NotificationManager.IMPORTANCE_HIGH);
+        notificationManager.createNotificationChannel(channel);
+        channelLanguage = language;
+    }
+
+    private static Notification buildNotification(Context context, ReminderStore.Reminder reminder) {
+        // Single-task reminders open that task, grouped ones open the list
+        String route = reminder.taskIds.length == 1 ? "/" + reminder.taskIds[0] : "/";
+        Intent appIntent = new Intent(context, MainActivity.class);
+        appIntent.putExtra("route", route);
+        appIntent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TOP);
+        PendingIntent contentIntent = PendingIntent.getActivity(
+                context,
+                reminder.id,
+                appIntent,
+                PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
+
+        Notification.Builder builder = Build.VERSION.SDK_INT >= Build.VERSION_CODES.O
+                ? new Notification.Builder(context, CHANNEL_ID)
+                : new Notification.Builder(context);
+
+        return builder
+                .setSmallIcon(R.drawable.ic_stat_logo)
+                .setContentTitle(reminder.title)
+                .setContentText(reminder.body)
+                .setWhen(reminder.at)
+                .setShowWhen(true)
+                .setAutoCancel(true)
+                .setContentIntent(contentIntent)
+                .build();
+    }
+}
@@ -0,0 +1,287 @@
+package doenit.app;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Indexed, persisted store of native reminders.
+ *
+ * Reminders are indexed three ways: by notification ID, by task ID (so all
+ * reminders for a completed task are found without a scan) and by time
+ * bucket (so one alarm can deliver every reminder due in that bucket). The
+ * store has its own preferences file: alarms set before
+ * {@link DB#clearData()} still fire after it, and must find their reminders.
+ */
+public class ReminderStore {
+    private static final String TAG = Const.LOG_TAG_DOENIT;
+    private static final String PREFS_NAME = "DoenitReminders";
+    private static final String KEY_REMINDERS = "reminders";
+
+    /** Reminders due within the same bucket share one alarm. */
+    public static final long BUCKET_MS = 60 * 1000;
+
+    private static final long DELIVERED_RETENTION_MS = 2L * 24 * 60 * 60 * 1000;
+
+    public static class Reminder {
+        final int id;
+        final String title;
+        final String body;
+        final long at;
+        final String[] taskIds;
+        boolean delivered;
+
+        Reminder(int id, String title, String body, long at, String[] taskIds) {
+            this.id = id;
+            this.title = title;
+            this.body = body;
+            this.at = at;
+            this.taskIds = taskIds;
+        }
+
+        long bucket() {
+            return bucketOf(at);
+        }
+    }
+
+    private static ReminderStore instance;
+
+    private final SharedPreferences prefs;
+    private final Map<Integer, Reminder> byId = new HashMap<>();
+    private final Map<String, Set<Integer>> byTask = new HashMap<>();
+    private final Map<Long, Set<Integer>> byBucket = new HashMap<>();
+
+    private ReminderStore(Context context) {
+        prefs = context.getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        load();
+    }
+
+    public static synchronized ReminderStore get(Context context) {
+        if (instance == null) {
+            instance = new ReminderStore(context);
+        }
+        return instance;
+    }
+
+    public static long bucketOf(long at) {
+        return Math.floorDiv(at, BUCKET_MS);
+    }
+
+    /**
+     * Adds or replaces a reminder.
+     *
+     * @return The bucket the replaced reminder was in, or -1 if it is new. The
+     *         caller must re-arm that bucket's alarm.
+     */
+    public synchronized long put(Reminder reminder) {
+        Reminder previous = unindex(reminder.id);
+        index(reminder);
+        return previous != null && !previous.delivered ? previous.bucket() : -1;
+    }
+
+    /**
+     * Removes every reminder for the given task.
+     *
+     * @return The removed reminders (delivered ones included, so their
+     *         notifications can be dismissed).
+     */
+    public synchronized List<Reminder> removeForTask(String taskId) {
+        List<Reminder> removed = new ArrayList<>();
+        Set<Integer> ids = byTask.get(taskId);
+        if (ids == null) {
+            return removed;
+        }
+
+        for (Integer id : new ArrayList<>(ids)) {
+            Reminder reminder = unindex(id);
+            if (reminder != null) {
+                removed.add(reminder);
+            }
+        }
+        return removed;
+    }
+
+    public synchronized Reminder remove(int id) {
+        return unindex(id);
+    }
+
+    public synchronized List<Reminder> removeAll() {
+        List<Reminder> removed = new ArrayList<>(byId.values());
+        byId.clear();
+        byTask.clear();
+        byBucket.clear();
+        return removed;
+    }
+
+    /**
+     * Marks every pending reminder in the bucket as delivered and returns them.
+     */
+    public synchronized List<Reminder> takeBucket(long bucket) {
+        List<Reminder> due = new ArrayList<>();
+        Set<Integer> ids = byBucket.remove(bucket);
+        if (ids == null) {
+            return due;
+        }
+
+        for (Integer id : ids) {
+            Reminder reminder = byId.get(id);
+            if (reminder != null) {
+                reminder.delivered = true;
+                due.add(reminder);
+            }
+        }
+        return due;
+    }
+
+    public synchronized boolean hasBucket(long bucket) {
+        Set<Integer> ids = byBucket.get(bucket);
+        return ids != null && !ids.isEmpty();
+    }
+
+    /**
+     * @return The latest trigger time in the bucket, so no reminder in it
+     *         fires early.
+     */
+    public synchronized long getBucketTriggerTime(long bucket) {
+        long triggerAt = bucket * BUCKET_MS;
+        Set<Integer> ids = byBucket.get(bucket);
+        if (ids != null) {
+            for (Integer id : ids) {
+                triggerAt = Math.max(triggerAt, byId.get(id).at);
+            }
+        }
+        return triggerAt;
+    }
+
+    public synchronized Set<Long> getPendingBuckets() {
+        return new HashSet<>(byBucket.keySet());
+    }
+
+    public synchronized List<Reminder> getPending() {
+        List<Reminder> pending = new ArrayList<>();
+        for (Reminder reminder : byId.values()) {
+            if (!reminder.delivered) {
+                pending.add(reminder);
+            }
+        }
+        return pending;
+    }
+
+    private void index(Reminder reminder) {
+        byId.put(reminder.id, reminder);
+        for (String taskId : reminder.taskIds) {
+            Set<Integer> ids = byTask.get(taskId);
+            if (ids == null) {
+                ids = new HashSet<>();
+                byTask.put(taskId, ids);
+            }
+            ids.add(reminder.id);
+        }
+
+        if (!reminder.delivered) {
+            Set<Integer> ids = byBucket.get(reminder.bucket());
+            if (ids == null) {
+                ids = new HashSet<>();
+                byBucket.put(reminder.bucket(), ids);
+            }
+            ids.add(reminder.id);
+        }
+    }
+
+    private Reminder unindex(int id) {
+        Reminder reminder = byId.remove(id);
+        if (reminder == null) {
+            return null;
+        }
+
+        for (String taskId : reminder.taskIds) {
+            Set<Integer> ids = byTask.get(taskId);
+            if (ids != null) {
+                ids.remove(id);
+                if (ids.isEmpty()) {
+                    byTask.remove(taskId);
+                }
+            }
+        }
+
+        Set<Integer> ids = byBucket.get(reminder.bucket());
+        if (ids != null) {
+            ids.remove(id);
+            if (ids.isEmpty()) {
+                byBucket.remove(reminder.bucket());
+            }
+        }
+        return reminder;
+    }
+
+    /**
+     * Writes the whole store once; callers batch their mutations before saving.
+     */
+    public synchronized void save() {
+        try {
+            JSONArray array = new JSONArray();
+            for (Reminder reminder : byId.values()) {
+                JSONObject json = new JSONObject();
+                json.put("id", reminder.id);
+                json.put("title", reminder.title);
+                json.put("body", reminder.body);
+                json.put("at", reminder.at);
+                json.put("task_ids", new JSONArray(Arrays.asList(reminder.taskIds)));
+                json.put("delivered", reminder.delivered);
+                array.put(json);
+            }
+            prefs.edit().putString(KEY_REMINDERS, array.toString()).apply();
+        } catch (JSONException e) {
+            Logger.e(TAG, "Error saving reminders", e);
+        }
+    }
+
+    private void load() {
+        String json = prefs.getString(KEY_REMINDERS, null);
+        if (Utils.isEmpty(json)) {
+            return;
+        }
+
+        long cutoff = System.currentTimeMillis() - DELIVERED_RETENTION_MS;
+        try {
+            JSONArray array = new JSONArray(json);
+            for (int i = 0; i < array.length(); i++) {
+                Reminder reminder = fromJson(array.getJSONObject(i));
+                reminder.delivered = array.getJSONObject(i).optBoolean("delivered", false);
+                if (reminder.delivered && reminder.at < cutoff) {
+                    continue;
+                }
+                index(reminder);
+            }
+        } catch (JSONException e) {
+            Logger.e(TAG, "Error loading reminders", e);
+        }
+    }
+
+    public static Reminder fromJson(JSONObject json) throws JSONException {
+        JSONArray taskIdsJson = json.optJSONArray("task_ids");
+        int count = taskIdsJson != null ? taskIdsJson.length() : 0;
+        String[] taskIds = new String[count];
+        for (int i = 0; i < count; i++) {
+            taskIds[i] = taskIdsJson.getString(i);
+        }
+
+        return new Reminder(
+                json.getInt("id"),
+                json.optString("title", ""),
+                json.optString("body", ""),
+                json.getLong("at"),
+                taskIds);
+    }
+}
@@ -0,0 +1,74 @@
+package doenit.app;
+
+import android.app.AlarmManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+
+import java.util.Calendar;
+
+/**
+ * Replaces periodic widget polling with a single alarm at the next local
+ * midnight on which any task's past/ongoing state actually changes.
+ *
+ * The alarm is inexact and non-waking: if the device is asleep at midnight
+ * the refresh simply happens the next time it wakes up.
+ */
+public class RolloverScheduler {
+    private static final int REQUEST_CODE = 3000;
+
+    /**
+     * Schedules (or cancels) the rollover alarm for the given snapshot. Safe to
+     * call repeatedly; every call replaces the previous alarm.
+     *
+     * @param today The epoch day the table was classified for
+     */
+    public static void schedule(Context context, TaskTable tasks, int today) {
+        AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        if (alarmManager == null) {
+            return;
+        }
+
+        PendingIntent pendingIntent = getPendingIntent(context);
+        int nextDay = tasks.nextStateChangeDay(today);
+        if (nextDay == TaskTable.NO_DATE) {
+            alarmManager.cancel(pendingIntent);
+            Logger.d(Const.LOG_TAG_DOENIT_SIMPLE, "No upcoming task state changes, rollover alarm cancelled");
+            return;
+        }
+
+        long triggerAt = getStartOfDayMillis(nextDay);
+        alarmManager.set(AlarmManager.RTC, triggerAt, pendingIntent);
+        Logger.d(Const.LOG_TAG_DOENIT_SIMPLE, () -> "Scheduled widget rollover for epoch day " + nextDay + " at " + triggerAt);
+    }
+
+    public static void cancel(Context context) {
+        AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        if (alarmManager != null) {
+            alarmManager.cancel(getPendingIntent(context));
+        }
+    }
+
+    /**
+     * @return The first millisecond of the given epoch day in the device's time
+     *         zone (DST-safe, since the calendar resolves local midnight).
+     */
+    static long getStartOfDayMillis(int epochDay) {
+        int[] date = TaskUtil.fromEpochDay(epochDay);
+
+        Calendar calendar = Calendar.getInstance();
+        calendar.clear();
+        calendar.set(date[0], date[1] - 1, date[2], 0, 0, 0);
+        return calendar.getTimeInMillis();
+    }
+
+    private static PendingIntent getPendingIntent(Context context) {
+        Intent intent = new Intent(context, TaskWidgetProvider.class);
+        intent.setAction(Const.ACTION_ROLLOVER);
+        return PendingIntent.getBroadcast(
+                context,
+                REQUEST_CODE,
+                intent,
+                PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
+    }
+}
@@ -0,0 +1,110 @@
+package doenit.app;
+
+import android.content.Context;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Locale;
+
+/**
+ * Reads a task snapshot the web layer wrote to an app-private file, instead of
+ * receiving it as a plugin call argument.
+ *
+ * Over the bridge a large list is parsed into a JSObject tree and written out
+ * again before it can be stored. A file handoff skips both: the file is mapped,
+ * checked against the SHA-256 the web layer computed, and decoded straight into
+ * the string the widget stores.
+ */
+public class SnapshotFile {
+    /**
+     * Resolves a path relative to the app's files directory (Capacitor's
+     * {@code Directory.Data}) and refuses anything outside of it.
+     */
+    public static File resolve(Context context, String path) throws IOException {
+        File dir = context.getFilesDir().getCanonicalFile();
+        File file = new File(dir, path).getCanonicalFile();
+        if (!file.getPath().startsWith(dir.getPath() + File.separator)) {
+            throw new IOException("Snapshot path outside app files: " + path);
+        }
+        return file;
+    }
+
+    /**
+     * Maps the file, verifies its checksum and decodes it.
+     *
+     * @param sha256 Lowercase hex digest of the file's bytes
+     * @return The file's content as a JSON array string.
+     * @throws IOException If the file is missing, does not match the checksum
+     *                     or does not hold a JSON array.
+     */
+    public static String read(File file, String sha256) throws IOException {
+        Tracer.Span span = Tracer.begin("SnapshotFile.read", file.getName());
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+                FileChannel channel = raf.getChannel()) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            Metrics.setGauge(Const.METRIC_SNAPSHOT_FILE_BYTES, buffer.capacity());
+
+            String digest = sha256(buffer.duplicate());
+            if (!digest.equals(sha256 != null ? sha256.toLowerCase(Locale.ROOT) : null)) {
+                throw new IOException("Snapshot checksum mismatch: expected " + sha256 + ", got " + digest);
+            }
+
+            String json = StandardCharsets.UTF_8.decode(buffer).toString();
+            if (!isJsonArray(json)) {
+                throw new IOException("Snapshot is not a JSON array");
+            }
+            return json;
+        } finally {
+            span.end();
+        }
+    }
+
+    /**
+     * Removes a consumed snapshot; a leftover file is only wasted space, so
+     * failures are logged and ignored.
+     */
+    public static void delete(File file) {
+        if (file.exists() && !file.delete()) {
+            Logger.w(Const.LOG_TAG_DOENIT, () -> "Could not delete snapshot file " + file.getName());
+        }
+    }
+
+    private static String sha256(ByteBuffer buffer) throws IOException {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(buffer);
+            byte[] hash = digest.digest();
+
+            StringBuilder hex = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16));
+                hex.append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException("SHA-256 unavailable", e);
+        }
+    }
+
+    /**
+     * Cheap shape check; the rows are parsed when the widget loads them.
+     */
+    private static boolean isJsonArray(String json) {
+        int start = 0;
+        int end = json.length() - 1;
+        while (start <= end && Character.isWhitespace(json.charAt(start))) {
+            start++;
+        }
+        while (end >= start && Character.isWhitespace(json.charAt(end))) {
+            end--;
+        }
+        return start < end && json.charAt(start) == '[' && json.charAt(end) == ']';
+    }
+}
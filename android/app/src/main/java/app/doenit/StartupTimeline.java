@@ -0,0 +1,255 @@
+package doenit.app;
+
+import android.app.ActivityManager;
+import android.content.Context;
+import android.os.Build;
+import android.os.Process;
+import android.os.SystemClock;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Records when each stage of a cold launch is reached, in milliseconds since
+ * the process started, so slow starts can be attributed to the bridge, the
+ * prefs or the web app.
+ *
+ * Only launches whose process was started for an activity are recorded; a
+ * process started for the widget or a push message has an unrelated head
+ * start. A launch is written to a ring file once every stage has been marked,
+ * or when {@link MainActivity} stops first, keeping the last
+ * {@code MAX_LAUNCHES}.
+ */
+public class StartupTimeline {
+    public static final String APPLICATION_CREATE = "application_create";
+    public static final String PLUGINS_REGISTERED = "plugins_registered";
+    public static final String BRIDGE_READY = "bridge_ready";
+    public static final String PAGE_FINISHED = "page_finished";
+    public static final String FIRST_JS_CALL = "first_js_call";
+    public static final String PENDING_UPDATES = "pending_updates";
+
+    private static final String[] STAGES = {
+            APPLICATION_CREATE, PLUGINS_REGISTERED, BRIDGE_READY,
+            PAGE_FINISHED, FIRST_JS_CALL, PENDING_UPDATES
+    };
+
+    private static final String FILE_NAME = "startup_timeline.json";
+    private static final int MAX_LAUNCHES = 50;
+
+    private static final long[] marks = new long[STAGES.length];
+    private static long processStart;
+    private static boolean recording;
+    private static String variant;
+    private static File file;
+
+    /**
+     * Starts the timeline. Called first thing in {@link DoenitApplication#onCreate()}.
+     */
+    public static synchronized void begin(Context context) {
+        file = new File(context.getFilesDir(), FILE_NAME);
+
+        processStart = Build.VERSION.SDK_INT >= Build.VERSION_CODES.N
+                ? Process.getStartElapsedRealtime()
+                : SystemClock.elapsedRealtime();
+
+        ActivityManager.RunningAppProcessInfo info = new ActivityManager.RunningAppProcessInfo();
+        ActivityManager.getMyMemoryState(info);
+        recording = info.importance == ActivityManager.RunningAppProcessInfo.IMPORTANCE_FOREGROUND;
+        if (!recording) {
+            Logger.d(Const.LOG_TAG_DOENIT, "Process started in the background, not recording startup");
+            return;
+        }
+
+        for (int i = 0; i < marks.length; i++) {
+            marks[i] = -1;
+        }
+        mark(APPLICATION_CREATE);
+    }
+
+    /**
+     * Tags the launch with the configuration it ran with (e.g. how assets were
+     * served), so launches can be compared by variant.
+     */
+    public static synchronized void setVariant(String name) {
+        variant = name;
+    }
+
+    /**
+     * Marks a stage as reached now. Only the first mark of a stage counts, and
+     * marks after the launch was saved are ignored.
+     */
+    public static synchronized void mark(String stage) {
+        if (!recording) {
+            return;
+        }
+
+        int index = indexOf(stage);
+        if (index < 0 || marks[index] >= 0) {
+            return;
+        }
+
+        long elapsed = SystemClock.elapsedRealtime() - processStart;
+        marks[index] = elapsed;
+        Logger.d(Const.LOG_TAG_DOENIT, () -> "Startup " + stage + " at " + elapsed + " ms");
+
+        for (long mark : marks) {
+            if (mark < 0) {
+                return;
+            }
+        }
+        finish();
+    }
+
+    /**
+     * Saves the launch with the stages reached so far; later marks are
+     * ignored.
+     */
+    public static synchronized void finish() {
+        if (!recording) {
+            return;
+        }
+        recording = false;
+
+        try {
+            JSONObject launch = new JSONObject();
+            launch.put("time", System.currentTimeMillis());
+            if (variant != null) {
+                launch.put("variant", variant);
+            }
+            for (int i = 0; i < STAGES.length; i++) {
+                if (marks[i] >= 0) {
+                    launch.put(STAGES[i], marks[i]);
+                }
+            }
+
+            File target = file;
+            new Thread(() -> append(target, launch), "DoenitStartup").start();
+        } catch (JSONException e) {
+            Logger.e(Const.LOG_TAG_DOENIT, "Error recording startup timeline", e);
+        }
+    }
+
+    /**
+     * @param onlyVariant Only include launches of this variant, or null for all
+     * @return {launches, latest: {time, variant, stage: ms}, stages: {stage:
+     *         {count, p50_ms, p90_ms, p99_ms, max_ms}}} over the recorded
+     *         launches.
+     */
+    public static JSONObject summary(Context context, String onlyVariant) throws IOException, JSONException {
+        JSONArray recorded = read(new File(context.getFilesDir(), FILE_NAME));
+        JSONArray launches = new JSONArray();
+        for (int i = 0; i < recorded.length(); i++) {
+            JSONObject launch = recorded.getJSONObject(i);
+            if (onlyVariant == null || onlyVariant.equals(launch.optString("variant", null))) {
+                launches.put(launch);
+            }
+        }
+
+        JSONObject stages = new JSONObject();
+        for (String stage : STAGES) {
+            List<Long> values = new ArrayList<>();
+            for (int i = 0; i < launches.length(); i++) {
+                JSONObject launch = launches.getJSONObject(i);
+                if (launch.has(stage)) {
+                    values.add(launch.getLong(stage));
+                }
+            }
+            if (values.isEmpty()) {
+                continue;
+            }
+
+            Collections.sort(values);
+            JSONObject percentiles = new JSONObject();
+            percentiles.put("count", values.size());
+            percentiles.put("p50_ms", valueAt(values, 0.50));
+            percentiles.put("p90_ms", valueAt(values, 0.90));
+            percentiles.put("p99_ms", valueAt(values, 0.99));
+            percentiles.put("max_ms", values.get(values.size() - 1));
+            stages.put(stage, percentiles);
+        }
+
+        JSONObject result = new JSONObject();
+        result.put("launches", launches.length());
+        result.put("latest", launches.length() > 0 ? launches.getJSONObject(launches.length() - 1) : new JSONObject());
+        result.put("stages", stages);
+        return result;
+    }
+
+    public static void clear(Context context) {
+        synchronized (StartupTimeline.class) {
+            new File(context.getFilesDir(), FILE_NAME).delete();
+        }
+    }
+
+    private static int indexOf(String stage) {
+        for (int i = 0; i < STAGES.length; i++) {
+            if (STAGES[i].equals(stage)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Nearest-rank percentile of a sorted list.
+     */
+    private static long valueAt(List<Long> sorted, double quantile) {
+        int rank = (int) Math.ceil(quantile * sorted.size());
+        return sorted.get(Math.max(0, rank - 1));
+    }
+
+    private static void append(File target, JSONObject launch) {
+        synchronized (StartupTimeline.class) {
+            try {
+                JSONArray launches = read(target);
+                launches.put(launch);
+
+                JSONArray kept = new JSONArray();
+                for (int i = Math.max(0, launches.length() - MAX_LAUNCHES); i < launches.length(); i++) {
+                    kept.put(launches.get(i));
+                }
+
+                try (OutputStream out = new FileOutputStream(target)) {
+                    out.write(kept.toString().getBytes(StandardCharsets.UTF_8));
+                }
+            } catch (IOException | JSONException e) {
+                Logger.e(Const.LOG_TAG_DOENIT, "Error saving startup timeline", e);
+            }
+        }
+    }
+
+    private static JSONArray read(File source) throws IOException, JSONException {
+        synchronized (StartupTimeline.class) {
+            if (!source.isFile()) {
+                return new JSONArray();
+            }
+
+            byte[] bytes = new byte[(int) source.length()];
+            try (InputStream in = new FileInputStream(source)) {
+                int read = 0;
+                while (read < bytes.length) {
+                    int n = in.read(bytes, read, bytes.length - read);
+                    if (n < 0) {
+                        break;
+                    }
+                    read += n;
+                }
+            }
+
+            String json = new String(bytes, StandardCharsets.UTF_8);
+            return Utils.isEmpty(json) ? new JSONArray() : new JSONArray(json);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package doenit.app;
+
+import android.os.Build;
+import android.os.StrictMode;
+import android.os.strictmode.Violation;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * Debug builds only: reports disk and network access on the main thread.
+ *
+ * Each violation is counted in {@link Metrics}, and the first one from each
+ * call site goes to the native log ring, with the app frames that led to it,
+ * so it shows up in {@link DiagnosticsPlugin#getNativeLog}. The full stack
+ * trace is written to logcat. Before API 28 StrictMode has no listener, so
+ * violations are only written to logcat there.
+ */
+public class StrictModeAuditor {
+    private static final String TAG = Const.LOG_TAG_DOENIT;
+    private static final String APP_PACKAGE = "doenit.app.";
+    private static final int MAX_FRAMES = 3;
+
+    private static final Set<String> reported = new HashSet<>();
+
+    /**
+     * Sets the main thread's policy. Call from the main thread, first thing in
+     * {@link DoenitApplication#onCreate()}.
+     */
+    public static void install() {
+        if (!BuildConfig.DEBUG) {
+            return;
+        }
+
+        StrictMode.ThreadPolicy.Builder policy = new StrictMode.ThreadPolicy.Builder()
+                .detectDiskReads()
+                .detectDiskWrites()
+                .detectNetwork();
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.P) {
+            // Off the main thread, so reporting does not add to what it reports
+            Executor executor = Executors.newSingleThreadExecutor();
+            policy.penaltyListener(executor, StrictModeAuditor::onViolation);
+        } else {
+            policy.penaltyLog();
+        }
+
+        StrictMode.setThreadPolicy(policy.build());
+        Logger.i(TAG, "StrictMode auditing main-thread disk and network access");
+    }
+
+    private static void onViolation(Violation violation) {
+        Metrics.increment(Const.METRIC_STRICT_MODE_VIOLATION);
+
+        String site = violation.getClass().getSimpleName() + " at " + appFrames(violation);
+        synchronized (reported) {
+            if (!reported.add(site)) {
+                return;
+            }
+        }
+        Logger.w(TAG, "StrictMode " + site, violation);
+    }
+
+    /**
+     * @return The innermost app frames of the violation's stack, innermost
+     *         first, or its top frame if none is the app's.
+     */
+    private static String appFrames(Violation violation) {
+        StackTraceElement[] stack = violation.getStackTrace();
+        StringBuilder frames = new StringBuilder();
+        int count = 0;
+        for (StackTraceElement frame : stack) {
+            if (!frame.getClassName().startsWith(APP_PACKAGE)
+                    || frame.getClassName().equals(StrictModeAuditor.class.getName())) {
+                continue;
+            }
+            if (count > 0) {
+                frames.append(" < ");
+            }
+            frames.append(describe(frame));
+            if (++count == MAX_FRAMES) {
+                break;
+            }
+        }
+
+        if (count == 0) {
+            return stack.length > 0 ? describe(stack[0]) : "unknown";
+        }
+        return frames.toString();
+    }
+
+    private static String describe(StackTraceElement frame) {
+        String className = frame.getClassName();
+        String simpleName = className.substring(className.lastIndexOf('.') + 1);
+        return simpleName + "." + frame.getMethodName() + ":" + frame.getLineNumber();
+    }
+}
@@ -0,0 +1,71 @@
+package doenit.app;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Interns strings into a dense int-indexed table so columns can store an int
+ * instead of a reference per row. Index 0 is always the empty string.
+ */
+public class StringPool {
+    public static final int EMPTY = 0;
+
+    private String[] values = new String[16];
+    private final Map<String, Integer> index = new HashMap<>();
+    private int size;
+
+    public StringPool() {
+        clear();
+    }
+
+    public int intern(String value) {
+        if (value == null || value.isEmpty()) {
+            return EMPTY;
+        }
+
+        Integer existing = index.get(value);
+        if (existing != null) {
+            return existing;
+        }
+
+        if (size == values.length) {
+            String[] grown = new String[size * 2];
+            System.arraycopy(values, 0, grown, 0, size);
+            values = grown;
+        }
+
+        int ref = size++;
+        values[ref] = value;
+        index.put(value, ref);
+        return ref;
+    }
+
+    public String get(int ref) {
+        return values[ref];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return A rough estimate of the memory the interned strings hold.
+     */
+    public long estimatedBytes() {
+        long bytes = (long) values.length * 4;
+        for (int i = 0; i < size; i++) {
+            bytes += 40 + 2L * values[i].length();
+        }
+        // The reverse index holds a map entry per string
+        return bytes + (long) size * 48;
+    }
+
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            values[i] = null;
+        }
+        index.clear();
+        values[EMPTY] = "";
+        size = 1;
+    }
+}
@@ -1,11 +0,0 @@
-package doenit.app;
-
-public class Task {
-    String id;
-    String name;
-    String dueDate;
-    String startDate;
-    String category;
-    boolean important;
-    boolean is_repeating;
-}
\ No newline at end of file
@@ -0,0 +1,181 @@
+package doenit.app;
+
+import android.content.Context;
+import android.os.Build;
+import android.widget.RemoteViews;
+
+import androidx.annotation.RequiresApi;
+
+import org.json.JSONException;
+
+import java.util.BitSet;
+import java.util.Locale;
+
+/**
+ * API 31+ rendering path: the whole visible window is pushed to the launcher
+ * as {@link RemoteViews.RemoteCollectionItems} inside updateAppWidget, so no
+ * RemoteViewsService has to be bound (or cold-started) and rows are not
+ * pulled over IPC one at a time. Older devices, or the "factory" render mode,
+ * keep using {@link TaskWidgetService}.
+ *
+ * Because there is no adapter to notify, every data change must rebuild the
+ * widget through {@link TaskWidgetProvider#updateAppWidget}.
+ */
+public class TaskCollection {
+    /**
+     * Most task rows pushed per size variant. Every variant carries its own
+     * copy of the rows in the one parcel sent to the launcher, so a larger
+     * window is served by the factory instead, clear of the binder
+     * transaction limit.
+     */
+    public static final int MAX_ROWS = 50;
+
+    private static final TaskTable tasks = new TaskTable();
+    private static final TaskSections sections = new TaskSections();
+    private static final BitSet changedRows = new BitSet();
+    private static final BitSet patchedRows = new BitSet();
+    private static int loadedVersion = -1;
+    private static int appliedPatch;
+    private static int classifiedDay = TaskTable.NO_DATE;
+    private static Locale locale;
+
+    private static final CacheRegistry.Cache registration = new CacheRegistry.Cache() {
+        @Override
+        public String name() {
+            return "collection_snapshot";
+        }
+
+        @Override
+        public int tier() {
+            return CacheRegistry.TIER_DECODED;
+        }
+
+        @Override
+        public long sizeBytes() {
+            synchronized (TaskCollection.class) {
+                return loadedVersion == -1 ? 0 : tasks.estimatedBytes();
+            }
+        }
+
+        /**
+         * Drops the snapshot; the next build reloads it from the prefs.
+         */
+        @Override
+        public void trim() {
+            synchronized (TaskCollection.class) {
+                tasks.clear();
+                loadedVersion = -1;
+                classifiedDay = TaskTable.NO_DATE;
+            }
+        }
+    };
+
+    static {
+        CacheRegistry.register(registration);
+    }
+
+    public static boolean isEnabled(Context context) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.S) {
+            return false;
+        }
+
+        String mode = WidgetSettings.getRenderMode(context);
+        return !Const.RENDER_MODE_FACTORY.equals(mode);
+    }
+
+    /**
+     * Whether this widget's list is pushed as RemoteCollectionItems: the
+     * collection path is enabled and the widget's window fits in
+     * {@code MAX_ROWS}.
+     */
+    public static boolean isEnabled(Context context, int appWidgetId) {
+        return isEnabled(context) && WidgetPager.getWindowSize(context, appWidgetId) <= MAX_ROWS;
+    }
+
+    /**
+     * Builds the rows that fit the size bucket inside the widget's current
+     * window, plus a trailing "show more" row while tasks remain outside it.
+     *
+     * @param requestedAt When the update started, to record the time to the
+     *                    first task row against, or 0 to not record it
+     */
+    @RequiresApi(Build.VERSION_CODES.S)
+    public static synchronized RemoteViews.RemoteCollectionItems build(Context context, int appWidgetId,
+            int bucket, long requestedAt) {
+        ensureLoaded(context);
+
+        int rowLimit = Math.min(MAX_ROWS, WidgetSize.rowLimit(bucket, WidgetPager.getWindowSize(context, appWidgetId)));
+        boolean headers = WidgetSize.showsSectionHeaders(bucket);
+        int positions = sections.positionCount(rowLimit, headers);
+
+        RemoteViews.RemoteCollectionItems.Builder builder = new RemoteViews.RemoteCollectionItems.Builder()
+                .setHasStableIds(true)
+                .setViewTypeCount(TaskRowViews.VIEW_TYPE_COUNT);
+
+        for (int position = 0; position < positions; position++) {
+            int entry = sections.entryAt(position, headers);
+            if (TaskSections.isHeader(entry)) {
+                int section = TaskSections.headerSection(entry);
+                builder.addItem(TaskRowViews.HEADER_ITEM_ID + section,
+                        TaskRowViews.buildSectionHeaderView(context, section));
+            } else {
+                builder.addItem(TaskRowViews.itemId(tasks.id(entry)),
+                        TaskRowViews.buildTaskView(context, tasks, entry, locale, bucket));
+                if (requestedAt != 0) {
+                    Metrics.stop(Const.METRIC_FIRST_ROW_COLLECTION, requestedAt);
+                    requestedAt = 0;
+                }
+            }
+        }
+
+        if (tasks.size() > rowLimit && WidgetSize.showsMoreRow(bucket)) {
+            int remaining = tasks.size() - rowLimit;
+            builder.addItem(TaskRowViews.SHOW_MORE_ITEM_ID,
+                    TaskRowViews.buildShowMoreView(context, appWidgetId, remaining));
+        }
+
+        return builder.build();
+    }
+
+    /**
+     * Reloads the shared snapshot when the persisted data changed, otherwise
+     * applies rows postponed from the widget, and re-classifies it when the
+     * day rolled over.
+     */
+    private static void ensureLoaded(Context context) {
+        int version = TaskWidgetService.getDataVersion();
+        int today = TaskUtil.today();
+        if (version == loadedVersion && today == classifiedDay && appliedPatch == TaskPatches.latest()) {
+            return;
+        }
+
+        if (version != loadedVersion) {
+            classifiedDay = TaskTable.NO_DATE;
+            appliedPatch = TaskPatches.latest();
+            try {
+                tasks.load(DB.getString(Const.WIDGET_TASKS), DB.getString(Const.WIDGET_CATEGORIES));
+            } catch (JSONException e) {
+                Logger.e(Const.LOG_TAG_DOENIT_WIDGET, "Error parsing JSON", e);
+                tasks.clear();
+            }
+            locale = TaskUtil.getDisplayLocale();
+            loadedVersion = version;
+            Metrics.setGauge(Const.METRIC_TASK_COUNT, tasks.size());
+        }
+
+        if (classifiedDay == TaskTable.NO_DATE) {
+            tasks.classify(today, null);
+            sections.rebuild(tasks);
+        } else {
+            // Rows postponed from the widget, then a possible day rollover:
+            // only rows that changed state move section
+            patchedRows.clear();
+            appliedPatch = TaskPatches.apply(tasks, appliedPatch, patchedRows);
+            changedRows.clear();
+            tasks.classify(today, changedRows);
+            sections.update(tasks, changedRows);
+        }
+        classifiedDay = today;
+        RolloverScheduler.schedule(context, tasks, today);
+    }
+}
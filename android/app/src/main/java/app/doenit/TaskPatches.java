@@ -0,0 +1,76 @@
+package doenit.app;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Date changes made natively to single tasks (e.g. postponing a row from the
+ * widget), shared by every loaded {@link TaskTable}.
+ *
+ * Instead of bumping {@link TaskWidgetService#invalidate()}, which makes every
+ * factory reload and rebuild all rows, a change is logged here with a sequence
+ * number; each table applies the entries it has not seen yet in place, so only
+ * the patched rows need new views. The persisted snapshot is updated as well,
+ * so a full reload yields the same result and the log can be dropped then.
+ */
+public class TaskPatches {
+    private static final class Patch {
+        final int seq;
+        final String taskId;
+        final int startDay;
+        final int dueDay;
+
+        Patch(int seq, String taskId, int startDay, int dueDay) {
+            this.seq = seq;
+            this.taskId = taskId;
+            this.startDay = startDay;
+            this.dueDay = dueDay;
+        }
+    }
+
+    private static final List<Patch> patches = new ArrayList<>();
+    private static int latest;
+
+    public static synchronized void add(String taskId, int startDay, int dueDay) {
+        patches.add(new Patch(++latest, taskId, startDay, dueDay));
+    }
+
+    /**
+     * @return The sequence number of the newest patch; a table that has
+     *         applied up to here is current.
+     */
+    public static synchronized int latest() {
+        return latest;
+    }
+
+    /**
+     * Drops the log once the snapshot is reloaded in full. Sequence numbers
+     * keep counting, so tables that applied older patches still compare
+     * correctly.
+     */
+    public static synchronized void clear() {
+        patches.clear();
+    }
+
+    /**
+     * Applies the patches after {@code appliedSeq} to the table's date columns.
+     *
+     * @param patched Receives the rows whose dates were changed
+     * @return The sequence number to pass next time.
+     */
+    public static synchronized int apply(TaskTable tasks, int appliedSeq, BitSet patched) {
+        for (Patch patch : patches) {
+            if (patch.seq <= appliedSeq) {
+                continue;
+            }
+
+            int row = tasks.rowOf(patch.taskId);
+            if (row >= 0) {
+                tasks.setDays(row, patch.startDay, patch.dueDay);
+                patched.set(row);
+            }
+        }
+        return latest;
+    }
+}
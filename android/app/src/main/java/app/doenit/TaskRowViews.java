@@ -0,0 +1,265 @@
+package doenit.app;
+
+import android.appwidget.AppWidgetManager;
+import android.content.Context;
+import android.content.Intent;
+import android.view.View;
+import android.widget.RemoteViews;
+
+import java.util.Locale;
+
+import doenit.app.R;
+
+/**
+ * Builds the widget's list rows. Shared by the RemoteViewsFactory and the
+ * RemoteCollectionItems rendering paths so both produce identical rows.
+ */
+public class TaskRowViews {
+    // Full row, compact row, section header and "show more"
+    public static final int VIEW_TYPE_COUNT = 4;
+
+    public static final long SHOW_MORE_ITEM_ID = Long.MIN_VALUE;
+    // Followed by one ID per section
+    public static final long HEADER_ITEM_ID = Long.MIN_VALUE + 1;
+
+    /**
+     * Builds a section header: a single themed text view and no intents.
+     */
+    public static RemoteViews buildSectionHeaderView(Context context, int section) {
+        RemoteViews views = new RemoteViews(context.getPackageName(), R.layout.task_widget_section_header);
+        views.setTextViewText(R.id.section_title, TaskUtil.getSectionTitle(section));
+        int textColor = context.getResources().getColor(Colors.get("text-normal"));
+        views.setTextColor(R.id.section_title, textColor);
+        return views;
+    }
+
+    public static RemoteViews buildTaskView(Context context, TaskTable tasks, int row, Locale locale, int bucket) {
+        if (bucket == WidgetSize.COMPACT) {
+            return buildCompactTaskView(context, tasks, row);
+        }
+        return buildTaskView(context, tasks, row, locale);
+    }
+
+    /**
+     * Builds a name-only row: state colours and fill-in intents, but no pills
+     * or icons.
+     */
+    public static RemoteViews buildCompactTaskView(Context context, TaskTable tasks, int row) {
+        String taskId = tasks.id(row);
+        RemoteViews views = new RemoteViews(context.getPackageName(), R.layout.task_widget_item_compact);
+
+        byte state = tasks.state(row);
+        boolean isPast = state == TaskTable.STATE_PAST;
+        boolean isOngoing = state == TaskTable.STATE_ONGOING;
+
+        views.setTextViewText(R.id.task_name, tasks.name(row));
+        int text_name_color = Colors.get((isOngoing || isPast) ? "text-alt" : "text-normal");
+        views.setTextColor(R.id.task_name, context.getResources().getColor(text_name_color));
+
+        int backgroundColor = Drawable.taskDefault();
+        if (isOngoing)
+            backgroundColor = Drawable.taskOngoing();
+        else if (isPast)
+            backgroundColor = Drawable.taskPast();
+        views.setInt(R.id.task_container, "setBackgroundResource", backgroundColor);
+
+        setFillInIntents(views, taskId);
+        return views;
+    }
+
+    /**
+     * Builds the list row for one task, including its fill-in intents.
+     */
+    public static RemoteViews buildTaskView(Context context, TaskTable tasks, int row, Locale locale) {
+        String taskId = tasks.id(row);
+        Logger.d(Const.LOG_TAG_DOENIT_SIMPLE, () -> "Creating view for task: " + tasks.name(row) + " (ID: " + taskId + ")");
+
+        RemoteViews views = new RemoteViews(context.getPackageName(), R.layout.task_widget_item);
+
+        // Determine task state
+        byte state = tasks.state(row);
+        boolean isPast = state == TaskTable.STATE_PAST;
+        boolean isOngoing = state == TaskTable.STATE_ONGOING;
+
+        // Set task name
+        views.setTextViewText(R.id.task_name, tasks.name(row));
+        int text_name_color = Colors.get((isOngoing || isPast) ? "text-alt" : "text-normal");
+        int app_name_text_color = context.getResources().getColor(text_name_color);
+        views.setTextColor(R.id.task_name, app_name_text_color);
+
+        // Set background based on task state
+        int backgroundColor = Drawable.taskDefault();
+        if (isOngoing)
+            backgroundColor = Drawable.taskOngoing();
+        else if (isPast)
+            backgroundColor = Drawable.taskPast();
+        views.setInt(R.id.task_container, "setBackgroundResource", backgroundColor);
+
+        // Handle due date display with icon
+
+        // Show date pill if either startDate or dueDate is present
+        int dateDay = TaskUtil.getDateDay(tasks, row);
+        boolean hasDate = dateDay != TaskTable.NO_DATE;
+        if (hasDate) {
+            String date = TaskUtil.toDisplayDate(dateDay, locale);
+            views.setViewVisibility(R.id.date_pill, View.VISIBLE);
+            views.setViewVisibility(R.id.pills_container, View.VISIBLE);
+            views.setTextViewText(R.id.pill_date, date);
+
+            int color = Colors.get((isOngoing || isPast) ? "text-alt" : "text-normal");
+            int dueDateTextColor = context.getResources().getColor(color);
+            views.setTextColor(R.id.pill_date, dueDateTextColor);
+            int clockIconRes = Drawable.iconClockNormal();
+            if (isOngoing || isPast) {
+                clockIconRes = Drawable.iconClockAlt();
+            }
+            views.setImageViewResource(R.id.icon_clock, clockIconRes);
+
+            // Set pill background based on state
+            int pill = Drawable.pillDefault();
+            if (isOngoing) {
+                pill = Drawable.pillOngoing();
+            } else if (isPast) {
+                pill = Drawable.pillPast();
+            }
+            views.setInt(R.id.date_pill, "setBackgroundResource", pill);
+
+            // Show repeat icon if task is repeating
+            boolean isRepeating = tasks.isRepeating(row);
+            views.setViewVisibility(R.id.repeat_icon, isRepeating ? View.VISIBLE : View.GONE);
+            if (isRepeating) {
+                int repeatIconRes = Drawable.iconSyncNormal();
+                if (isOngoing || isPast) {
+                    repeatIconRes = Drawable.iconSyncAlt();
+                }
+                views.setImageViewResource(R.id.repeat_icon, repeatIconRes);
+            }
+        } else {
+            views.setViewVisibility(R.id.date_pill, View.GONE);
+        }
+
+        // Handle category display with icon
+        boolean hasCategory = tasks.hasCategory(row);
+        if (hasCategory) {
+            views.setViewVisibility(R.id.category_container, View.VISIBLE);
+            views.setViewVisibility(R.id.pills_container, View.VISIBLE);
+            views.setTextViewText(R.id.pill_category, tasks.category(row));
+
+            int color = Colors.get((isOngoing || isPast) ? "text-alt" : "text-normal");
+            int categoryTextColor = context.getResources().getColor(color);
+
+            views.setTextColor(R.id.pill_category, categoryTextColor);
+            int categoryIconRes = Drawable.iconCategoryNormal();
+            if (isOngoing || isPast) {
+                categoryIconRes = Drawable.iconCategoryAlt();
+            }
+            views.setImageViewResource(R.id.icon_category, categoryIconRes);
+
+            // Set pill background based on state
+            int pill = Drawable.pillDefault();
+            if (isOngoing) {
+                pill = Drawable.pillOngoing();
+            } else if (isPast) {
+                pill = Drawable.pillPast();
+            }
+            views.setInt(R.id.category_container, "setBackgroundResource", pill);
+        } else {
+            views.setViewVisibility(R.id.category_container, View.GONE);
+        }
+
+        // Hide pills container if both date and category are hidden
+        if (!hasDate && !hasCategory) {
+            views.setViewVisibility(R.id.pills_container, View.GONE);
+        }
+
+        // Set priority indicators
+        views.setViewVisibility(R.id.important_icon, tasks.isImportant(row) ? View.VISIBLE : View.GONE);
+
+        // Postpone actions
+        int postponeColorRes = Colors.get((isOngoing || isPast) ? "text-alt" : "text-normal");
+        int postponeColor = context.getResources().getColor(postponeColorRes);
+        views.setTextColor(R.id.postpone_day, postponeColor);
+        views.setTextColor(R.id.postpone_week, postponeColor);
+
+        setFillInIntents(views, taskId);
+        setPostponeAction(views, R.id.postpone_day, taskId, Const.POSTPONE_DAY);
+        setPostponeAction(views, R.id.postpone_week, taskId, Const.POSTPONE_WEEK);
+        return views;
+    }
+
+    private static void setFillInIntents(RemoteViews views, String taskId) {
+        // Set up fill-in intent for COMPLETE_TASK (complete_button)
+        Intent completeIntent = new Intent();
+        completeIntent.setAction(TaskWidgetProvider.ACTION_COMPLETE_TASK);
+        completeIntent.putExtra(TaskWidgetProvider.EXTRA_TASK_ID, taskId);
+        views.setOnClickFillInIntent(R.id.complete_button, completeIntent);
+
+        // Set up fill-in intent for OPEN_TASK (task_item_layout)
+        Intent openIntent = new Intent();
+        openIntent.setAction(TaskWidgetProvider.ACTION_OPEN_TASK);
+        openIntent.putExtra(TaskWidgetProvider.EXTRA_TASK_ID, taskId);
+        views.setOnClickFillInIntent(R.id.task_item_layout, openIntent);
+    }
+
+    private static void setPostponeAction(RemoteViews views, int viewId, String taskId, int days) {
+        views.setTextViewText(viewId, TaskUtil.getPostponeLabel(days));
+        views.setContentDescription(viewId, TaskUtil.getPostponeDescription(days));
+
+        Intent postponeIntent = new Intent();
+        postponeIntent.setAction(TaskWidgetProvider.ACTION_POSTPONE_TASK);
+        postponeIntent.putExtra(TaskWidgetProvider.EXTRA_TASK_ID, taskId);
+        postponeIntent.putExtra(Const.EXTRA_POSTPONE_DAYS, days);
+        views.setOnClickFillInIntent(viewId, postponeIntent);
+    }
+
+    /**
+     * Builds the placeholder shown for rows that are still loading: the
+     * theme's default row background and a muted "loading" label, instead of
+     * the launcher's own spinner.
+     */
+    public static RemoteViews buildLoadingView(Context context) {
+        RemoteViews views = new RemoteViews(context.getPackageName(), R.layout.task_widget_loading);
+
+        views.setTextViewText(R.id.loading_text, TaskUtil.getLoadingString());
+        int textColor = context.getResources().getColor(Colors.get("text-alt"));
+        views.setTextColor(R.id.loading_text, textColor);
+        views.setInt(R.id.loading_container, "setBackgroundResource", Drawable.taskDefault());
+
+        return views;
+    }
+
+    /**
+     * Builds the trailing "show more" row for a widget whose window hides
+     * {@code remaining} tasks.
+     */
+    public static RemoteViews buildShowMoreView(Context context, int appWidgetId, int remaining) {
+        RemoteViews views = new RemoteViews(context.getPackageName(), R.layout.task_widget_show_more);
+
+        views.setTextViewText(R.id.show_more_text, TaskUtil.getShowMoreString(remaining));
+        int textColor = context.getResources().getColor(Colors.get("text-normal"));
+        views.setTextColor(R.id.show_more_text, textColor);
+
+        Intent showMoreIntent = new Intent();
+        showMoreIntent.setAction(TaskWidgetProvider.ACTION_SHOW_MORE);
+        showMoreIntent.putExtra(AppWidgetManager.EXTRA_APPWIDGET_ID, appWidgetId);
+        views.setOnClickFillInIntent(R.id.show_more_container, showMoreIntent);
+
+        return views;
+    }
+
+    /**
+     * Stable 64-bit FNV-1a hash of the task ID, so a task keeps its item ID
+     * across updates regardless of its position.
+     */
+    public static long itemId(String taskId) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < taskId.length(); i++) {
+            hash ^= taskId.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        if (hash >= SHOW_MORE_ITEM_ID && hash <= HEADER_ITEM_ID + TaskSections.COUNT) {
+            hash += TaskSections.COUNT + 2;
+        }
+        return hash;
+    }
+}
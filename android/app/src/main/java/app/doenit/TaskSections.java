@@ -0,0 +1,167 @@
+package doenit.app;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Groups the rows of a {@link TaskTable} into Overdue / Today / Upcoming
+ * sections and maps list positions to section headers and rows.
+ *
+ * Sections follow the row state computed by {@link TaskTable#classify}: past
+ * rows are overdue, ongoing rows are today's and the rest (including undated
+ * ones) are upcoming. Each section keeps its rows in the order the app sent
+ * them, so a day rollover only moves the rows whose state changed instead of
+ * rebuilding or re-sorting the list.
+ */
+public class TaskSections {
+    public static final int OVERDUE = 0;
+    public static final int TODAY = 1;
+    public static final int UPCOMING = 2;
+    public static final int COUNT = 3;
+
+    private final int[][] rows = new int[COUNT][];
+    private final int[] sizes = new int[COUNT];
+    private byte[] sectionOf = new byte[0];
+
+    public TaskSections() {
+        for (int section = 0; section < COUNT; section++) {
+            rows[section] = new int[16];
+        }
+    }
+
+    public static int sectionOf(byte state) {
+        switch (state) {
+            case TaskTable.STATE_PAST:
+                return OVERDUE;
+            case TaskTable.STATE_ONGOING:
+                return TODAY;
+            default:
+                return UPCOMING;
+        }
+    }
+
+    /**
+     * Assigns every row to its section in one pass over the list order.
+     */
+    public void rebuild(TaskTable tasks) {
+        Arrays.fill(sizes, 0);
+        if (sectionOf.length < tasks.size()) {
+            sectionOf = new byte[tasks.size()];
+        }
+
+        for (int position = 0; position < tasks.size(); position++) {
+            int row = tasks.rowAt(position);
+            int section = sectionOf(tasks.state(row));
+            sectionOf[row] = (byte) section;
+            append(section, row);
+        }
+    }
+
+    /**
+     * Moves only the given rows to the section matching their new state.
+     * Rows keep their relative order within a section because each section
+     * is ordered by row index, which is the list order.
+     *
+     * @param changed Rows whose state changed, as filled in by
+     *                {@link TaskTable#classify}
+     */
+    public void update(TaskTable tasks, BitSet changed) {
+        for (int row = changed.nextSetBit(0); row >= 0; row = changed.nextSetBit(row + 1)) {
+            int from = sectionOf[row];
+            int to = sectionOf(tasks.state(row));
+            if (from == to) {
+                continue;
+            }
+
+            remove(from, row);
+            insert(to, row);
+            sectionOf[row] = (byte) to;
+        }
+    }
+
+    private void append(int section, int row) {
+        ensureCapacity(section);
+        rows[section][sizes[section]++] = row;
+    }
+
+    private void insert(int section, int row) {
+        ensureCapacity(section);
+        int[] list = rows[section];
+        int index = Arrays.binarySearch(list, 0, sizes[section], row);
+        int at = index < 0 ? -index - 1 : index;
+        System.arraycopy(list, at, list, at + 1, sizes[section] - at);
+        list[at] = row;
+        sizes[section]++;
+    }
+
+    private void remove(int section, int row) {
+        int[] list = rows[section];
+        int index = Arrays.binarySearch(list, 0, sizes[section], row);
+        if (index < 0) {
+            return;
+        }
+        System.arraycopy(list, index + 1, list, index, sizes[section] - index - 1);
+        sizes[section]--;
+    }
+
+    private void ensureCapacity(int section) {
+        if (sizes[section] == rows[section].length) {
+            rows[section] = Arrays.copyOf(rows[section], sizes[section] * 2);
+        }
+    }
+
+    public int size(int section) {
+        return sizes[section];
+    }
+
+    /**
+     * @param rowLimit The most task rows to show
+     * @param headers  Whether each non-empty section starts with a header
+     * @return The number of list positions needed to show up to
+     *         {@code rowLimit} rows.
+     */
+    public int positionCount(int rowLimit, boolean headers) {
+        int count = 0;
+        int remaining = rowLimit;
+        for (int section = 0; section < COUNT && remaining > 0; section++) {
+            if (sizes[section] == 0) {
+                continue;
+            }
+            int shown = Math.min(sizes[section], remaining);
+            count += (headers ? 1 : 0) + shown;
+            remaining -= shown;
+        }
+        return count;
+    }
+
+    /**
+     * @return The row at the list position, or {@code -(section + 1)} if the
+     *         position holds that section's header.
+     */
+    public int entryAt(int position, boolean headers) {
+        for (int section = 0; section < COUNT; section++) {
+            if (sizes[section] == 0) {
+                continue;
+            }
+            if (headers) {
+                if (position == 0) {
+                    return -(section + 1);
+                }
+                position--;
+            }
+            if (position < sizes[section]) {
+                return rows[section][position];
+            }
+            position -= sizes[section];
+        }
+        return Integer.MIN_VALUE;
+    }
+
+    public static boolean isHeader(int entry) {
+        return entry < 0;
+    }
+
+    public static int headerSection(int entry) {
+        return -entry - 1;
+    }
+}
@@ -0,0 +1,298 @@
+package doenit.app;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Column-oriented snapshot of the tasks shown in the widget.
+ *
+ * Each task is a row index into primitive columns rather than an object:
+ * dates are epoch days, flags share one bit set and names/categories are
+ * indices into a shared {@link StringPool}. {@code order} is the permutation
+ * that maps a list position to a row.
+ */
+public class TaskTable {
+    public static final int NO_DATE = Integer.MIN_VALUE;
+
+    public static final byte STATE_DEFAULT = 0;
+    public static final byte STATE_ONGOING = 1;
+    public static final byte STATE_PAST = 2;
+
+    private static final int FLAG_IMPORTANT = 0;
+    private static final int FLAG_REPEATING = 1;
+    private static final int FLAG_COUNT = 2;
+
+    final StringPool strings = new StringPool();
+    final BitSet flags = new BitSet();
+
+    String[] ids;
+    int[] names;
+    int[] categories;
+    int[] startDays;
+    int[] dueDays;
+    byte[] states;
+    int[] order;
+    int size;
+
+    public TaskTable() {
+        this(16);
+    }
+
+    public TaskTable(int capacity) {
+        allocate(Math.max(capacity, 1));
+    }
+
+    private void allocate(int capacity) {
+        ids = new String[capacity];
+        names = new int[capacity];
+        categories = new int[capacity];
+        startDays = new int[capacity];
+        dueDays = new int[capacity];
+        states = new byte[capacity];
+        order = new int[capacity];
+    }
+
+    private void grow() {
+        int capacity = ids.length * 2;
+        String[] oldIds = ids;
+        int[] oldNames = names;
+        int[] oldCategories = categories;
+        int[] oldStartDays = startDays;
+        int[] oldDueDays = dueDays;
+        byte[] oldStates = states;
+        int[] oldOrder = order;
+
+        allocate(capacity);
+        System.arraycopy(oldIds, 0, ids, 0, size);
+        System.arraycopy(oldNames, 0, names, 0, size);
+        System.arraycopy(oldCategories, 0, categories, 0, size);
+        System.arraycopy(oldStartDays, 0, startDays, 0, size);
+        System.arraycopy(oldDueDays, 0, dueDays, 0, size);
+        System.arraycopy(oldStates, 0, states, 0, size);
+        System.arraycopy(oldOrder, 0, order, 0, size);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return The row displayed at the given list position.
+     */
+    public int rowAt(int position) {
+        return order[position];
+    }
+
+    public String id(int row) {
+        return ids[row];
+    }
+
+    public String name(int row) {
+        return strings.get(names[row]);
+    }
+
+    public String category(int row) {
+        return strings.get(categories[row]);
+    }
+
+    public boolean hasCategory(int row) {
+        return categories[row] != StringPool.EMPTY;
+    }
+
+    public int startDay(int row) {
+        return startDays[row];
+    }
+
+    public int dueDay(int row) {
+        return dueDays[row];
+    }
+
+    public byte state(int row) {
+        return states[row];
+    }
+
+    public boolean isImportant(int row) {
+        return flags.get(row * FLAG_COUNT + FLAG_IMPORTANT);
+    }
+
+    public boolean isRepeating(int row) {
+        return flags.get(row * FLAG_COUNT + FLAG_REPEATING);
+    }
+
+    /**
+     * @return The row holding the task with the given ID, or -1.
+     */
+    public int rowOf(String id) {
+        for (int row = 0; row < size; row++) {
+            if (ids[row].equals(id)) {
+                return row;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Changes a row's dates in place. The row keeps its list position; call
+     * {@link #classifyRow} to bring its state up to date.
+     */
+    public void setDays(int row, int startDay, int dueDay) {
+        startDays[row] = startDay;
+        dueDays[row] = dueDay;
+    }
+
+    public int add(String id, String name, int categoryRef, int startDay, int dueDay, boolean important,
+            boolean repeating) {
+        if (size == ids.length) {
+            grow();
+        }
+
+        int row = size++;
+        ids[row] = id;
+        names[row] = strings.intern(name);
+        categories[row] = categoryRef;
+        startDays[row] = startDay;
+        dueDays[row] = dueDay;
+        states[row] = STATE_DEFAULT;
+        order[row] = row;
+        flags.set(row * FLAG_COUNT + FLAG_IMPORTANT, important);
+        flags.set(row * FLAG_COUNT + FLAG_REPEATING, repeating);
+        return row;
+    }
+
+    /**
+     * @return A rough estimate of the memory held by the columns, the IDs and
+     *         the interned strings.
+     */
+    public long estimatedBytes() {
+        // An ID reference plus five int columns and the state byte per slot
+        long bytes = (long) ids.length * (4 + 5 * 4 + 1);
+        for (int i = 0; i < size; i++) {
+            bytes += 40 + 2L * ids[i].length();
+        }
+        return bytes + flags.size() / 8 + strings.estimatedBytes();
+    }
+
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            ids[i] = null;
+        }
+        flags.clear();
+        strings.clear();
+        size = 0;
+    }
+
+    /**
+     * Recomputes the past/ongoing state column for every row in one pass.
+     *
+     * @param today   The current local epoch day
+     * @param changed If not null, receives the rows whose state changed
+     * @return The number of rows whose state changed
+     */
+    public int classify(int today, BitSet changed) {
+        int count = 0;
+        for (int row = 0; row < size; row++) {
+            byte state = TaskUtil.getState(startDays[row], dueDays[row], today);
+            if (state != states[row]) {
+                states[row] = state;
+                count++;
+                if (changed != null) {
+                    changed.set(row);
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Recomputes the state of a single row.
+     *
+     * @return Whether the row's state changed
+     */
+    public boolean classifyRow(int row, int today) {
+        byte state = TaskUtil.getState(startDays[row], dueDays[row], today);
+        if (state == states[row]) {
+            return false;
+        }
+        states[row] = state;
+        return true;
+    }
+
+    /**
+     * States only change at day boundaries: a task becomes ongoing on its start
+     * day and past on the day after its due day (or start day if it has none).
+     *
+     * @return The earliest epoch day after {@code today} on which some row
+     *         changes state, or {@link #NO_DATE} if none will.
+     */
+    public int nextStateChangeDay(int today) {
+        int next = Integer.MAX_VALUE;
+        for (int row = 0; row < size; row++) {
+            int startDay = startDays[row];
+            if (startDay == NO_DATE) {
+                continue;
+            }
+
+            int endDay = (dueDays[row] != NO_DATE ? dueDays[row] : startDay) + 1;
+            if (startDay > today && startDay < next) {
+                next = startDay;
+            } else if (endDay > today && endDay < next) {
+                next = endDay;
+            }
+        }
+        return next == Integer.MAX_VALUE ? NO_DATE : next;
+    }
+
+    /**
+     * Replaces the contents of this table with the tasks in the given JSON.
+     * Category names are interned once up front and looked up by ID per task.
+     *
+     * @param tasksJson      JSON array of tasks as sent by the web app
+     * @param categoriesJson JSON object of categories keyed by category ID
+     */
+    public void load(String tasksJson, String categoriesJson) throws JSONException {
+        clear();
+
+        Map<String, Integer> categoryRefs = new HashMap<>();
+        if (!Utils.isEmpty(categoriesJson)) {
+            JSONObject categoryHash = new JSONObject(categoriesJson);
+            Iterator<String> keys = categoryHash.keys();
+            while (keys.hasNext()) {
+                String categoryId = keys.next();
+                JSONObject category = categoryHash.optJSONObject(categoryId);
+                if (category != null) {
+                    categoryRefs.put(categoryId, strings.intern(category.optString("name", "")));
+                }
+            }
+        }
+
+        if (Utils.isEmpty(tasksJson)) {
+            return;
+        }
+
+        JSONArray tasksArray = new JSONArray(tasksJson);
+        int count = tasksArray.length();
+        while (ids.length < count) {
+            grow();
+        }
+
+        for (int i = 0; i < count; i++) {
+            JSONObject taskJson = tasksArray.getJSONObject(i);
+
+            Integer categoryRef = categoryRefs.get(taskJson.optString("category_id", ""));
+            add(
+                    taskJson.optString("id", ""),
+                    taskJson.optString("name", ""),
+                    categoryRef != null ? categoryRef : StringPool.EMPTY,
+                    TaskUtil.parseEpochDay(taskJson.optString("start_date", "")),
+                    TaskUtil.parseEpochDay(taskJson.optString("due_date", "")),
+                    taskJson.optBoolean("important", false),
+                    !taskJson.optString("repeat_interval", "").isEmpty());
+        }
+    }
+}
@@ -1,20 +1,182 @@
 package doenit.app;
 
+import java.text.DateFormatSymbols;
+import java.util.Locale;
+import java.util.TimeZone;
+
 public class TaskUtil {
-    public static String getDate(Task task) {
-        if (task == null)
-            return null;
+    private static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+
+    private static Locale monthsLocale;
+    private static String[] shortMonths;
+
+    /**
+     * @return The due day of the row if it has one, otherwise its start day, or
+     *         {@link TaskTable#NO_DATE}.
+     */
+    public static int getDateDay(TaskTable table, int row) {
+        if (table == null)
+            return TaskTable.NO_DATE;
+
+        int dueDay = table.dueDay(row);
+        if (dueDay != TaskTable.NO_DATE) {
+            return dueDay;
+        }
+
+        return table.startDay(row);
+    }
+
+    /**
+     * A task is ongoing when today lies between its start and due day (or is its
+     * start day when it has no due day), and past when it started before today.
+     * Ongoing wins over past.
+     */
+    public static byte getState(int startDay, int dueDay, int today) {
+        if (startDay == TaskTable.NO_DATE) {
+            return TaskTable.STATE_DEFAULT;
+        }
+
+        boolean isOngoing = dueDay != TaskTable.NO_DATE
+                ? today >= startDay && today <= dueDay
+                : today == startDay;
+        if (isOngoing) {
+            return TaskTable.STATE_ONGOING;
+        }
 
-        String startDate = task.startDate;
-        String dueDate = task.dueDate;
+        return startDay < today ? TaskTable.STATE_PAST : TaskTable.STATE_DEFAULT;
+    }
 
-        if (!Utils.isEmpty(dueDate)) {
-            return dueDate;
-        } else if (!Utils.isEmpty(startDate)) {
-            return startDate;
+    /**
+     * Moves a task to {@code days} after today. A dated task keeps the length
+     * of its start-to-due range; an undated task gets a due day.
+     *
+     * @return {startDay, dueDay}
+     */
+    public static int[] postpone(int startDay, int dueDay, int days, int today) {
+        int target = today + days;
+        if (startDay == TaskTable.NO_DATE) {
+            return new int[] { TaskTable.NO_DATE, target };
         }
 
-        return null;
+        int newDueDay = dueDay != TaskTable.NO_DATE ? target + (dueDay - startDay) : TaskTable.NO_DATE;
+        return new int[] { target, newDueDay };
+    }
+
+    /**
+     * @return The current day in the device's time zone, counted from 1970-01-01.
+     */
+    public static int today() {
+        return toEpochDay(System.currentTimeMillis(), TimeZone.getDefault());
+    }
+
+    public static int toEpochDay(long millis, TimeZone zone) {
+        long local = millis + zone.getOffset(millis);
+        return (int) Math.floorDiv(local, MILLIS_PER_DAY);
+    }
+
+    /**
+     * Parses the leading "yyyy-MM-dd" of a date or date-time string.
+     *
+     * @return The epoch day, or {@link TaskTable#NO_DATE} if the value is empty
+     *         or malformed.
+     */
+    public static int parseEpochDay(String value) {
+        if (Utils.isEmpty(value) || value.length() < 10 || value.charAt(4) != '-' || value.charAt(7) != '-') {
+            return TaskTable.NO_DATE;
+        }
+
+        int year = parseDigits(value, 0, 4);
+        int month = parseDigits(value, 5, 7);
+        int day = parseDigits(value, 8, 10);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > 31) {
+            return TaskTable.NO_DATE;
+        }
+
+        return toEpochDay(year, month, day);
+    }
+
+    private static int parseDigits(String value, int start, int end) {
+        int result = 0;
+        for (int i = start; i < end; i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            result = result * 10 + (c - '0');
+        }
+        return result;
+    }
+
+    /**
+     * Days since 1970-01-01 for a proleptic Gregorian date (H. Hinnant's
+     * days_from_civil).
+     */
+    public static int toEpochDay(int year, int month, int day) {
+        int y = month <= 2 ? year - 1 : year;
+        int era = (y >= 0 ? y : y - 399) / 400;
+        int yoe = y - era * 400;
+        int doy = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        int doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+        return era * 146097 + doe - 719468;
+    }
+
+    /**
+     * Inverse of {@link #toEpochDay(int, int, int)}.
+     *
+     * @return {year, month, day}
+     */
+    public static int[] fromEpochDay(int epochDay) {
+        int z = epochDay + 719468;
+        int era = (z >= 0 ? z : z - 146096) / 146097;
+        int doe = z - era * 146097;
+        int yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+        int doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+        int mp = (5 * doy + 2) / 153;
+        int day = doy - (153 * mp + 2) / 5 + 1;
+        int month = mp < 10 ? mp + 3 : mp - 9;
+        int year = yoe + era * 400 + (month <= 2 ? 1 : 0);
+        return new int[] { year, month, day };
+    }
+
+    /**
+     * Formats an epoch day as "yyyy-MM-dd", the date format the app stores.
+     */
+    public static String toIsoDate(int epochDay) {
+        if (epochDay == TaskTable.NO_DATE) {
+            return "";
+        }
+
+        int[] date = fromEpochDay(epochDay);
+        return String.format(Locale.ROOT, "%04d-%02d-%02d", date[0], date[1], date[2]);
+    }
+
+    /**
+     * Formats an epoch day as "d MMM yyyy" in the given locale.
+     */
+    public static String toDisplayDate(int epochDay, Locale locale) {
+        if (epochDay == TaskTable.NO_DATE) {
+            return "";
+        }
+
+        int[] date = fromEpochDay(epochDay);
+        return date[2] + " " + getShortMonths(locale)[date[1] - 1] + " " + date[0];
+    }
+
+    private static synchronized String[] getShortMonths(Locale locale) {
+        if (shortMonths == null || !locale.equals(monthsLocale)) {
+            shortMonths = DateFormatSymbols.getInstance(locale).getShortMonths();
+            monthsLocale = locale;
+        }
+        return shortMonths;
+    }
+
+    public static Locale getDisplayLocale() {
+        String language = DB.getString("language", "af");
+
+        if ("en".equals(language)) {
+            return Locale.ENGLISH;
+        }
+        return new Locale("af", "ZA");
     }
 
     public static String getListIsEmptyString() {
@@ -26,4 +188,64 @@ public class TaskUtil {
             return "Jou lys is skoon!\nDruk + om een by te voeg";
         }
     }
+
+    public static String getLoadingString() {
+        String language = DB.getString("language", "af");
+
+        if ("en".equals(language)) {
+            return "Loading…";
+        } else {
+            return "Laai…";
+        }
+    }
+
+    public static String getSectionTitle(int section) {
+        boolean english = "en".equals(DB.getString("language", "af"));
+
+        switch (section) {
+            case TaskSections.OVERDUE:
+                return english ? "Overdue" : "Agterstallig";
+            case TaskSections.TODAY:
+                return english ? "Today" : "Vandag";
+            default:
+                return english ? "Upcoming" : "Binnekort";
+        }
+    }
+
+    public static String getShowMoreString(int remaining) {
+        String language = DB.getString("language", "af");
+
+        if ("en".equals(language)) {
+            return "Show more (" + remaining + ")";
+        } else {
+            return "Wys meer (" + remaining + ")";
+        }
+    }
+
+    /**
+     * Label of a row's postpone action, by the days it postpones by. "d" and
+     * "w" read as day/dag and week in both languages.
+     */
+    public static String getPostponeLabel(int days) {
+        return days == Const.POSTPONE_WEEK ? "+1w" : "+1d";
+    }
+
+    public static String getPostponeDescription(int days) {
+        boolean english = "en".equals(DB.getString("language", "af"));
+
+        if (days == Const.POSTPONE_WEEK) {
+            return english ? "Postpone to next week" : "Skuif na volgende week";
+        }
+        return english ? "Postpone to tomorrow" : "Skuif na môre";
+    }
+
+    public static String getReminderChannelName() {
+        String language = DB.getString("language", "af");
+
+        if ("en".equals(language)) {
+            return "Reminders";
+        } else {
+            return "Herinnerings";
+        }
+    }
 }
@@ -4,7 +4,6 @@ import android.appwidget.AppWidgetManager;
 import android.content.SharedPreferences;
 import android.content.ComponentName;
 import android.content.Context;
-import android.util.Log;
 
 import com.getcapacitor.JSObject;
 import com.getcapacitor.Plugin;
@@ -12,14 +11,21 @@ import com.getcapacitor.PluginCall;
 import com.getcapacitor.PluginMethod;
 import com.getcapacitor.annotation.CapacitorPlugin;
 
+import org.json.JSONException;
 import org.json.JSONObject;
 import org.json.JSONArray;
 
+import java.io.File;
+
+import java.util.HashSet;
+import java.util.Set;
+
 @CapacitorPlugin(name = "TaskWidget")
 public class TaskWidgetPlugin extends Plugin {
 
     @PluginMethod
     public void updateTasks(PluginCall call) {
+        long start = Metrics.start();
         try {
             Context context = getContext();
 
@@ -33,23 +39,13 @@ public class TaskWidgetPlugin extends Plugin {
                 return;
             }
 
-            // Categories
-            JSONArray categories = call.getArray("categories");
-            JSONObject category_hash = new JSONObject();
-            int categoriesCount = categories != null ? categories.length() : 0;
-            if (categoriesCount > 0) {
-                for (int i = 0; i < categories.length(); i++) {
-                    JSONObject category = categories.getJSONObject(i);
-                    String category_id = category.optString("id");
-                    if (!Utils.isEmpty(category_id)) {
-                        category_hash.put(category_id, category);
-                    }
-                }
-            }
+            JSONObject category_hash = getCategoryHash(call);
+            String tasksJson = tasks.toString();
 
-            Log.d(Const.LOG_TAG_DOENIT, "Tasks count: " + tasks.length());
-            Log.d(Const.LOG_TAG_DOENIT, "Categories count: " + categories.length());
-            TaskWidgetProvider.updateTasksData(context, tasks.toString(), category_hash.toString());
+            Logger.d(Const.LOG_TAG_DOENIT, () -> "Tasks count: " + tasks.length());
+            if (!call.getBoolean("dry_run", false)) {
+                TaskWidgetProvider.updateTasksData(context, tasksJson, category_hash.toString());
+            }
 
             JSObject ret = new JSObject();
             ret.put("success", true);
@@ -57,9 +53,76 @@ public class TaskWidgetPlugin extends Plugin {
             call.resolve(ret);
         } catch (Exception e) {
             call.reject("Failed to update widget: " + e.getMessage());
+        } finally {
+            Metrics.stop(Const.METRIC_UPDATE_TASKS, start);
+        }
+    }
+
+    /**
+     * Same as {@link #updateTasks}, but the tasks array is read from a file
+     * the web layer wrote (see {@link SnapshotFile}) rather than passed in the
+     * call. The file is deleted once it has been ingested.
+     *
+     * Takes {path} relative to the app's files directory, {checksum} as the
+     * SHA-256 hex of the file, {categories} as for updateTasks, and {dry_run}
+     * to skip storing the result (for benchmarking).
+     */
+    @PluginMethod
+    public void updateTasksFromFile(PluginCall call) {
+        long start = Metrics.start();
+        try {
+            Context context = getContext();
+
+            String path = call.getString("path");
+            String checksum = call.getString("checksum");
+            if (Utils.isEmpty(path) || Utils.isEmpty(checksum)) {
+                call.reject("Missing 'path' or 'checksum' parameter");
+                return;
+            }
+
+            File file = SnapshotFile.resolve(context, path);
+            String tasksJson;
+            try {
+                tasksJson = SnapshotFile.read(file, checksum);
+            } finally {
+                SnapshotFile.delete(file);
+            }
+
+            JSONObject category_hash = getCategoryHash(call);
+            if (!call.getBoolean("dry_run", false)) {
+                TaskWidgetProvider.updateTasksData(context, tasksJson, category_hash.toString());
+            }
+
+            JSObject ret = new JSObject();
+            ret.put("success", true);
+            ret.put("message", "Widget updated successfully");
+            call.resolve(ret);
+        } catch (Exception e) {
+            call.reject("Failed to update widget from file: " + e.getMessage());
+        } finally {
+            Metrics.stop(Const.METRIC_UPDATE_TASKS_FILE, start);
         }
     }
 
+    /**
+     * @return The call's categories array keyed by category ID.
+     */
+    private static JSONObject getCategoryHash(PluginCall call) throws JSONException {
+        JSONArray categories = call.getArray("categories");
+        JSONObject category_hash = new JSONObject();
+        int categoriesCount = categories != null ? categories.length() : 0;
+        for (int i = 0; i < categoriesCount; i++) {
+            JSONObject category = categories.getJSONObject(i);
+            String category_id = category.optString("id");
+            if (!Utils.isEmpty(category_id)) {
+                category_hash.put(category_id, category);
+            }
+        }
+
+        Logger.d(Const.LOG_TAG_DOENIT, () -> "Categories count: " + categoriesCount);
+        return category_hash;
+    }
+
     @PluginMethod
     public void updateLanguage(PluginCall call) {
         try {
@@ -105,4 +168,97 @@ public class TaskWidgetPlugin extends Plugin {
             call.reject("Failed to update widget theme: " + e.getMessage());
         }
     }
-}
\ No newline at end of file
+
+    @PluginMethod
+    public void setPageSize(PluginCall call) {
+        try {
+            Integer pageSize = call.getInt("page_size");
+            if (pageSize == null || pageSize <= 0 || pageSize > Const.MAX_PAGE_SIZE) {
+                call.reject("'page_size' must be between 1 and " + Const.MAX_PAGE_SIZE);
+                return;
+            }
+
+            Context context = getContext();
+
+            // Delegate to the widget provider which will persist and refresh widgets
+            TaskWidgetProvider.updatePageSize(context, pageSize);
+
+            JSObject ret = new JSObject();
+            ret.put("success", true);
+            ret.put("page_size", pageSize);
+            call.resolve(ret);
+        } catch (Exception e) {
+            call.reject("Failed to update widget page size: " + e.getMessage());
+        }
+    }
+
+    @PluginMethod
+    public void setRenderMode(PluginCall call) {
+        try {
+            String mode = call.getString("mode");
+            if (!Const.RENDER_MODE_COLLECTION.equals(mode) && !Const.RENDER_MODE_FACTORY.equals(mode)) {
+                call.reject("'mode' must be '" + Const.RENDER_MODE_COLLECTION + "' or '"
+                        + Const.RENDER_MODE_FACTORY + "'");
+                return;
+            }
+
+            Context context = getContext();
+
+            // Delegate to the widget provider which will persist and rebuild widgets
+            TaskWidgetProvider.updateRenderMode(context, mode);
+
+            JSObject ret = new JSObject();
+            ret.put("success", true);
+            ret.put("mode", mode);
+            ret.put("collection_active", TaskCollection.isEnabled(context));
+            call.resolve(ret);
+        } catch (Exception e) {
+            call.reject("Failed to update widget render mode: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Returns every task change queued natively (e.g. by the quick-add
+     * dialog) since the app last acknowledged them.
+     */
+    @PluginMethod
+    public void getPendingMutations(PluginCall call) {
+        try {
+            JSONArray mutations = PendingMutations.get(getContext()).getAll();
+
+            JSObject ret = new JSObject();
+            ret.put("success", true);
+            ret.put("mutations", mutations);
+            call.resolve(ret);
+        } catch (Exception e) {
+            call.reject("Failed to get pending mutations: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Drops the queued mutations the app has applied.
+     */
+    @PluginMethod
+    public void ackPendingMutations(PluginCall call) {
+        try {
+            JSONArray ids = call.getArray("ids");
+            if (ids == null) {
+                call.reject("Missing 'ids' parameter");
+                return;
+            }
+
+            Set<String> id_set = new HashSet<>();
+            for (int i = 0; i < ids.length(); i++) {
+                id_set.add(ids.getString(i));
+            }
+            int removed = PendingMutations.get(getContext()).ack(id_set);
+
+            JSObject ret = new JSObject();
+            ret.put("success", true);
+            ret.put("removed", removed);
+            call.resolve(ret);
+        } catch (Exception e) {
+            call.reject("Failed to acknowledge pending mutations: " + e.getMessage());
+        }
+    }
+}
@@ -9,11 +9,15 @@ import android.widget.RemoteViews;
 import android.content.ComponentName;
 import android.content.SharedPreferences;
 import android.content.res.Resources;
-import android.util.Log;
 import android.net.Uri;
+import android.os.Build;
+import android.os.Bundle;
+import android.util.SizeF;
 
 import doenit.app.R;
 
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Set;
 import java.util.Locale;
 import java.util.Date;
@@ -30,19 +34,25 @@ public class TaskWidgetProvider extends AppWidgetProvider {
     public static final String ACTION_ADD_TASK = Const.ACTION_ADD_TASK;
     public static final String ACTION_COMPLETE_TASK = Const.ACTION_COMPLETE_TASK;
     public static final String ACTION_OPEN_TASK = Const.ACTION_OPEN_TASK;
+    public static final String ACTION_SHOW_MORE = Const.ACTION_SHOW_MORE;
+    public static final String ACTION_POSTPONE_TASK = Const.ACTION_POSTPONE_TASK;
     public static final String EXTRA_TASK_ID = Const.EXTRA_TASK_ID;
 
     public static void updateTasksData(Context context, String tasksJson, String categoriesStr) {
         try {
-            DB.saveData(Const.WIDGET_TASKS, tasksJson);
-            DB.saveData(Const.WIDGET_CATEGORIES, categoriesStr);
+            DB.batch()
+                    .put(Const.WIDGET_TASKS, tasksJson)
+                    .put(Const.WIDGET_CATEGORIES, categoriesStr)
+                    .commit();
+            WidgetFirstPage.write(context, tasksJson, categoriesStr);
+            TaskWidgetService.invalidate();
     
             // Update all widgets
             AppWidgetManager appWidgetManager = AppWidgetManager.getInstance(context);
             ComponentName cn = new ComponentName(context, TaskWidgetProvider.class);
             int[] appWidgetIds = appWidgetManager.getAppWidgetIds(cn);
     
-            Log.d(Const.LOG_TAG_DOENIT_UPDATE, "Found " + appWidgetIds.length + " widget instances");
+            Logger.d(Const.LOG_TAG_DOENIT_UPDATE, () -> "Found " + appWidgetIds.length + " widget instances");
     
             for (int i = 0; i < appWidgetIds.length; i++) {
                 updateAppWidget(context, appWidgetManager, appWidgetIds[i]);
@@ -50,12 +60,56 @@ public class TaskWidgetProvider extends AppWidgetProvider {
     
             // Notify that the data has changed so ListView refreshes
             appWidgetManager.notifyAppWidgetViewDataChanged(appWidgetIds, R.id.widget_list_view);
-            Log.d(Const.LOG_TAG_DOENIT_UPDATE, "Notified " + appWidgetIds.length + " widgets of data change");
+            Logger.d(Const.LOG_TAG_DOENIT_UPDATE, () -> "Notified " + appWidgetIds.length + " widgets of data change");
         } catch (Exception e) {
-            Log.e(Const.LOG_TAG_DOENIT, "Error updating widget tasks data", e);
+            Logger.e(Const.LOG_TAG_DOENIT, "Error updating widget tasks data", e);
         }
     }
 
+    /**
+     * Adds a natively created task to the widget's snapshot so it shows before
+     * the app has seen it. The task goes before the first task dated after it
+     * (undated tasks last); the app re-sorts the list on its next update.
+     */
+    public static void addTask(Context context, JSONObject task) {
+        try {
+            String tasksJson = DB.getString(Const.WIDGET_TASKS);
+            JSONArray tasks = Utils.isEmpty(tasksJson) ? new JSONArray() : new JSONArray(tasksJson);
+
+            int day = dateDayOf(task);
+            int insertAt = tasks.length();
+            if (day != TaskTable.NO_DATE) {
+                for (int i = 0; i < tasks.length(); i++) {
+                    int other = dateDayOf(tasks.getJSONObject(i));
+                    if (other == TaskTable.NO_DATE || other > day) {
+                        insertAt = i;
+                        break;
+                    }
+                }
+            }
+
+            JSONArray updated = new JSONArray();
+            for (int i = 0; i < tasks.length(); i++) {
+                if (i == insertAt) {
+                    updated.put(task);
+                }
+                updated.put(tasks.get(i));
+            }
+            if (insertAt == tasks.length()) {
+                updated.put(task);
+            }
+
+            updateTasksData(context, updated.toString(), DB.getString(Const.WIDGET_CATEGORIES, "{}"));
+        } catch (JSONException e) {
+            Logger.e(Const.LOG_TAG_DOENIT, "Error adding task to widget", e);
+        }
+    }
+
+    static int dateDayOf(JSONObject task) {
+        int dueDay = TaskUtil.parseEpochDay(task.optString("due_date", ""));
+        return dueDay != TaskTable.NO_DATE ? dueDay : TaskUtil.parseEpochDay(task.optString("start_date", ""));
+    }
+
     @Override
     public void onUpdate(Context context, AppWidgetManager appWidgetManager, int[] appWidgetIds) {
         DB.init(context);
@@ -64,29 +118,60 @@ public class TaskWidgetProvider extends AppWidgetProvider {
         }
     }
 
+    /**
+     * On API 31+ the launcher switches between the size variants by itself;
+     * older launchers need the widget rebuilt for its new bucket. Factory rows
+     * depend on the bucket too, so factories are told to rebind.
+     */
+    @Override
+    public void onAppWidgetOptionsChanged(Context context, AppWidgetManager appWidgetManager, int appWidgetId,
+            Bundle newOptions) {
+        DB.init(context);
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.S) {
+            updateAppWidget(context, appWidgetManager, appWidgetId);
+        }
+        if (!TaskCollection.isEnabled(context, appWidgetId)) {
+            TaskWidgetService.markRefreshRequested();
+            appWidgetManager.notifyAppWidgetViewDataChanged(appWidgetId, R.id.widget_list_view);
+        }
+    }
+
+    @Override
+    public void onDisabled(Context context) {
+        RolloverScheduler.cancel(context);
+    }
+
+    @Override
+    public void onDeleted(Context context, int[] appWidgetIds) {
+        for (int appWidgetId : appWidgetIds) {
+            WidgetPager.reset(appWidgetId);
+        }
+    }
+
     @Override
     public void onReceive(Context context, Intent intent) {
         super.onReceive(context, intent);
 
         String action = intent.getAction();
-        Log.d(Const.LOG_TAG_DOENIT_SIMPLE, "onReceive called with action: " + action);
-        Log.d(Const.LOG_TAG_DOENIT_SIMPLE, "Intent extras: " + intent.getExtras());
+        Tracer.Span span = Tracer.begin("TaskWidgetProvider.onReceive", action);
+        Logger.d(Const.LOG_TAG_DOENIT_SIMPLE, () -> "onReceive called with action: " + action);
+        Logger.d(Const.LOG_TAG_DOENIT_SIMPLE, () -> "Intent extras: " + Logger.truncate(String.valueOf(intent.getExtras())));
 
         if (ACTION_ADD_TASK.equals(action)) {
             try {
-                Log.d(Const.LOG_TAG_DOENIT_SIMPLE, "Handling ADD_TASK action");
-                // Open CreateTaskActivity for fastest startup
-                Intent appIntent = new Intent(context, CreateTaskActivity.class);
+                Logger.d(Const.LOG_TAG_DOENIT_SIMPLE, "Handling ADD_TASK action");
+                // Native quick-add dialog; the full editor is one tap away from it
+                Intent appIntent = new Intent(context, QuickAddActivity.class);
                 appIntent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TOP
                         | Intent.FLAG_ACTIVITY_SINGLE_TOP);
 
                 context.startActivity(appIntent);
             } catch (Exception e) {
-                Log.e(Const.LOG_TAG_TASK_WIDGET, "Failed to start CreateTaskActivity", e);
+                Logger.e(Const.LOG_TAG_TASK_WIDGET, "Failed to start QuickAddActivity", e);
             }
         } else if (ACTION_COMPLETE_TASK.equals(action)) {
             String taskId = intent.getStringExtra(EXTRA_TASK_ID);
-            Log.d(Const.LOG_TAG_DOENIT_SIMPLE, "Handling COMPLETE_TASK action for taskId: " + taskId);
+            Logger.d(Const.LOG_TAG_DOENIT_SIMPLE, () -> "Handling COMPLETE_TASK action for taskId: " + taskId);
 
             if (taskId != null) {
                 // Handle task completion
@@ -98,7 +183,9 @@ public class TaskWidgetProvider extends AppWidgetProvider {
                 int[] appWidgetIds = appWidgetManager.getAppWidgetIds(cn);
 
                 // Notify data changed first
+                Tracer.Span notifySpan = Tracer.begin("notifyAppWidgetViewDataChanged");
                 appWidgetManager.notifyAppWidgetViewDataChanged(appWidgetIds, R.id.widget_list_view);
+                notifySpan.end();
 
                 // Then update the widgets
                 for (int appWidgetId : appWidgetIds) {
@@ -110,12 +197,12 @@ public class TaskWidgetProvider extends AppWidgetProvider {
                 appIntent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TOP);
                 context.startActivity(appIntent);
             } else {
-                Log.e(Const.LOG_TAG_TASK_WIDGET, "COMPLETE_TASK action received but no task ID found");
+                Logger.e(Const.LOG_TAG_TASK_WIDGET, "COMPLETE_TASK action received but no task ID found");
             }
         } else if (ACTION_OPEN_TASK.equals(action)) {
             try {
                 String taskId = intent.getStringExtra(EXTRA_TASK_ID);
-                Log.d(Const.LOG_TAG_DOENIT_SIMPLE, "Handling OPEN_TASK action for taskId: " + taskId);
+                Logger.d(Const.LOG_TAG_DOENIT_SIMPLE, () -> "Handling OPEN_TASK action for taskId: " + taskId);
 
                 if (taskId != null) {
                     // Open the app to view/edit the task
@@ -123,25 +210,118 @@ public class TaskWidgetProvider extends AppWidgetProvider {
                     appIntent.putExtra("route", "/" + taskId);
                     appIntent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TOP);
                     context.startActivity(appIntent);
-                    Log.d(Const.LOG_TAG_DOENIT_SIMPLE, "Started MainActivity to view task: " + taskId);
+                    Logger.d(Const.LOG_TAG_DOENIT_SIMPLE, () -> "Started MainActivity to view task: " + taskId);
                 }
             } catch (Exception e) {
-                Log.e(Const.LOG_TAG_TASK_WIDGET, "Failed to start MainActivity", e);
+                Logger.e(Const.LOG_TAG_TASK_WIDGET, "Failed to start MainActivity", e);
+            }
+        } else if (Const.ACTION_ROLLOVER.equals(action)
+                || Intent.ACTION_TIMEZONE_CHANGED.equals(action)
+                || Intent.ACTION_TIME_CHANGED.equals(action)) {
+            // Day boundary or clock change: factories re-classify their rows and
+            // reschedule the next rollover
+            Logger.d(Const.LOG_TAG_DOENIT_SIMPLE, () -> "Handling rollover for action: " + action);
+            AppWidgetManager appWidgetManager = AppWidgetManager.getInstance(context);
+            ComponentName cn = new ComponentName(context, TaskWidgetProvider.class);
+            int[] appWidgetIds = appWidgetManager.getAppWidgetIds(cn);
+            refreshLists(context, appWidgetManager, appWidgetIds);
+        } else if (ACTION_SHOW_MORE.equals(action)) {
+            int appWidgetId = intent.getIntExtra(AppWidgetManager.EXTRA_APPWIDGET_ID,
+                    AppWidgetManager.INVALID_APPWIDGET_ID);
+            Logger.d(Const.LOG_TAG_DOENIT_SIMPLE, () -> "Handling SHOW_MORE action for widget: " + appWidgetId);
+
+            if (appWidgetId != AppWidgetManager.INVALID_APPWIDGET_ID) {
+                // Extend the window by one page; only this widget's list is rebound
+                WidgetPager.showMore(appWidgetId);
+                AppWidgetManager appWidgetManager = AppWidgetManager.getInstance(context);
+                refreshLists(context, appWidgetManager, new int[] { appWidgetId });
+            }
+        } else if (ACTION_POSTPONE_TASK.equals(action)) {
+            String taskId = intent.getStringExtra(EXTRA_TASK_ID);
+            int days = intent.getIntExtra(Const.EXTRA_POSTPONE_DAYS, 0);
+            Logger.d(Const.LOG_TAG_DOENIT_SIMPLE,
+                    () -> "Handling POSTPONE_TASK action for taskId: " + taskId + " by " + days + " day(s)");
+
+            if (taskId != null && days > 0) {
+                // Handled headlessly: the app picks the change up on its next start
+                postponeTask(context, taskId, days);
+            } else {
+                Logger.e(Const.LOG_TAG_TASK_WIDGET, "POSTPONE_TASK action received without task ID or days");
             }
         } else {
             // Found unhandled action: android.appwidget.action.APPWIDGET_UPDATE
-            Log.d(Const.LOG_TAG_DOENIT_SIMPLE, "Unhandled action: " + action);
+            Logger.d(Const.LOG_TAG_DOENIT_SIMPLE, () -> "Unhandled action: " + action);
         }
+
+        span.end();
+
+        // Writes above (completed task IDs, a postponed snapshot) are group
+        // committed later; keep the process alive until they are on disk
+        PendingResult result = goAsync();
+        DB.flushThen(() -> {
+            if (result != null) {
+                result.finish();
+            }
+        });
     }
 
     static void updateAppWidget(Context context, AppWidgetManager appWidgetManager, int appWidgetId) {
-        Log.d(Const.LOG_TAG_DOENIT_SIMPLE, "[updateAppWidget] " + appWidgetId);
-        RemoteViews views = new RemoteViews(context.getPackageName(), R.layout.task_widget);
+        Logger.d(Const.LOG_TAG_DOENIT_SIMPLE, () -> "[updateAppWidget] " + appWidgetId);
+        long start = Metrics.start();
+        boolean useCollection = TaskCollection.isEnabled(context, appWidgetId);
+
+        RemoteViews views;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S) {
+            // The launcher picks the largest variant that fits, also on resize.
+            // Only the first variant's rows are timed for the first-row metric
+            Map<SizeF, RemoteViews> variants = new HashMap<>();
+            long firstRowClock = start;
+            for (int bucket : WidgetSize.BUCKETS) {
+                variants.put(WidgetSize.minSizeOf(bucket),
+                        buildWidgetViews(context, appWidgetId, bucket, useCollection, firstRowClock));
+                firstRowClock = 0;
+            }
+            views = new RemoteViews(variants);
+        } else {
+            int bucket = WidgetSize.bucketOf(context, appWidgetId);
+            views = buildWidgetViews(context, appWidgetId, bucket, false, 0);
+        }
+
+        if (!useCollection) {
+            TaskWidgetService.markRefreshRequested();
+        }
+
+        // Update the widget
+        appWidgetManager.updateAppWidget(appWidgetId, views);
+        Metrics.stop(Const.METRIC_UPDATE_APP_WIDGET, start);
+
+        Logger.d(Const.LOG_TAG_DOENIT_SIMPLE, () -> "Updated widget " + appWidgetId + " with PendingIntent template");
+    }
+
+    /**
+     * Builds the widget for one size bucket.
+     *
+     * @param firstRowClock Start of the update, to time the first collection
+     *                      row against, or 0 to not time it
+     */
+    private static RemoteViews buildWidgetViews(Context context, int appWidgetId, int bucket,
+            boolean useCollection, long firstRowClock) {
+        RemoteViews views = new RemoteViews(context.getPackageName(), WidgetSize.widgetLayout(bucket));
         setWidgetColors(context, views);
 
         // Set up the list view
-        Intent serviceIntent = new Intent(context, TaskWidgetService.class);
-        views.setRemoteAdapter(R.id.widget_list_view, serviceIntent);
+        if (useCollection) {
+            // API 31+: push the rows directly instead of binding the service
+            views.setRemoteAdapter(R.id.widget_list_view,
+                    TaskCollection.build(context, appWidgetId, bucket, firstRowClock));
+        } else {
+            // The widget ID is part of the data URI so each instance gets its
+            // own factory (and with it its own paging window)
+            Intent serviceIntent = new Intent(context, TaskWidgetService.class);
+            serviceIntent.putExtra(AppWidgetManager.EXTRA_APPWIDGET_ID, appWidgetId);
+            serviceIntent.setData(Uri.parse(serviceIntent.toUri(Intent.URI_INTENT_SCHEME)));
+            views.setRemoteAdapter(R.id.widget_list_view, serviceIntent);
+        }
 
         // Set up PendingIntent template for COMPLETE_TASK actions
         Intent completeTemplateIntent = new Intent(context, TaskWidgetProvider.class);
@@ -180,10 +360,58 @@ public class TaskWidgetProvider extends AppWidgetProvider {
         views.setOnClickPendingIntent(R.id.app_name, mainAppPendingIntent);
         views.setOnClickPendingIntent(R.id.app_logo, mainAppPendingIntent);
 
-        // Update the widget
-        appWidgetManager.updateAppWidget(appWidgetId, views);
+        return views;
+    }
 
-        Log.d(Const.LOG_TAG_DOENIT_SIMPLE, "Updated widget " + appWidgetId + " with PendingIntent template");
+    /**
+     * Refreshes the task lists of the given widgets. Factory-backed lists are
+     * notified of changed data; RemoteCollectionItems lists have no adapter
+     * to notify, so those widgets are rebuilt.
+     */
+    static void refreshLists(Context context, AppWidgetManager appWidgetManager, int[] appWidgetIds) {
+        if (!TaskCollection.isEnabled(context)) {
+            TaskWidgetService.markRefreshRequested();
+            appWidgetManager.notifyAppWidgetViewDataChanged(appWidgetIds, R.id.widget_list_view);
+            return;
+        }
+
+        // A rebuild also switches a widget between the two paths when its
+        // window crosses TaskCollection.MAX_ROWS; factory-backed ones still
+        // need their data reloaded
+        boolean notified = false;
+        for (int appWidgetId : appWidgetIds) {
+            updateAppWidget(context, appWidgetManager, appWidgetId);
+            if (!TaskCollection.isEnabled(context, appWidgetId)) {
+                if (!notified) {
+                    TaskWidgetService.markRefreshRequested();
+                    notified = true;
+                }
+                appWidgetManager.notifyAppWidgetViewDataChanged(appWidgetId, R.id.widget_list_view);
+            }
+        }
+    }
+
+    /**
+     * Switches between the RemoteCollectionItems and RemoteViewsFactory list
+     * rendering, e.g. to compare their time-to-first-row metrics. The
+     * collection mode only takes effect on API 31+.
+     */
+    public static void updateRenderMode(Context context, String mode) {
+        try {
+            WidgetSettings.setRenderMode(context, mode);
+
+            AppWidgetManager appWidgetManager = AppWidgetManager.getInstance(context);
+            ComponentName cn = new ComponentName(context, TaskWidgetProvider.class);
+            int[] appWidgetIds = appWidgetManager.getAppWidgetIds(cn);
+
+            Logger.d(Const.LOG_TAG_DOENIT_SIMPLE, () -> "updateRenderMode: updating " + appWidgetIds.length + " widget(s) to mode=" + mode);
+
+            for (int appWidgetId : appWidgetIds) {
+                updateAppWidget(context, appWidgetManager, appWidgetId);
+            }
+        } catch (Exception e) {
+            Logger.e(Const.LOG_TAG_DOENIT, "Error updating widget render mode", e);
+        }
     }
 
     static void setWidgetColors(Context context, RemoteViews views) {
@@ -212,14 +440,14 @@ public class TaskWidgetProvider extends AppWidgetProvider {
     public static void updateLanguage(Context context, String language) {
         try {
             DB.saveData("language", language);
+            TaskWidgetService.invalidate();
 
             // Trigger immediate update for all widgets
             AppWidgetManager appWidgetManager = AppWidgetManager.getInstance(context);
             ComponentName cn = new ComponentName(context, TaskWidgetProvider.class);
             int[] appWidgetIds = appWidgetManager.getAppWidgetIds(cn);
 
-            Log.d(Const.LOG_TAG_DOENIT_SIMPLE,
-                    "updateLanguage: updating " + appWidgetIds.length + " widget(s) to language=" + language);
+            Logger.d(Const.LOG_TAG_DOENIT_SIMPLE, () -> "updateLanguage: updating " + appWidgetIds.length + " widget(s) to language=" + language);
 
             // Update each widget (this will call updateAppWidget)
             for (int id : appWidgetIds) {
@@ -235,21 +463,21 @@ public class TaskWidgetProvider extends AppWidgetProvider {
             intent.putExtra(AppWidgetManager.EXTRA_APPWIDGET_IDS, appWidgetIds);
             context.sendBroadcast(intent);
         } catch (Exception e) {
-            Log.e(Const.LOG_TAG_DOENIT, "Error updating widget language", e);
+            Logger.e(Const.LOG_TAG_DOENIT, "Error updating widget language", e);
         }
     }
 
     public static void updateTheme(Context context, String theme) {
         try {
             DB.saveData("theme", theme);
+            TaskWidgetService.invalidate();
 
             // Trigger immediate update for all widgets
             AppWidgetManager appWidgetManager = AppWidgetManager.getInstance(context);
             ComponentName cn = new ComponentName(context, TaskWidgetProvider.class);
             int[] appWidgetIds = appWidgetManager.getAppWidgetIds(cn);
 
-            Log.d(Const.LOG_TAG_DOENIT_SIMPLE,
-                    "updateTheme: updating " + appWidgetIds.length + " widget(s) to theme=" + theme);
+            Logger.d(Const.LOG_TAG_DOENIT_SIMPLE, () -> "updateTheme: updating " + appWidgetIds.length + " widget(s) to theme=" + theme);
 
             // Update each widget (this will call updateAppWidget)
             for (int id : appWidgetIds) {
@@ -265,29 +493,125 @@ public class TaskWidgetProvider extends AppWidgetProvider {
             intent.putExtra(AppWidgetManager.EXTRA_APPWIDGET_IDS, appWidgetIds);
             context.sendBroadcast(intent);
         } catch (Exception e) {
-            Log.e(Const.LOG_TAG_DOENIT, "Error updating widget theme", e);
+            Logger.e(Const.LOG_TAG_DOENIT, "Error updating widget theme", e);
+        }
+    }
+
+    /**
+     * Persists a new widget page size, collapses every widget back to its
+     * first page and refreshes the lists.
+     */
+    public static void updatePageSize(Context context, int pageSize) {
+        try {
+            WidgetPager.setPageSize(context, pageSize);
+            // The stored first page was cut to the old page size
+            WidgetFirstPage.clear(context);
+
+            AppWidgetManager appWidgetManager = AppWidgetManager.getInstance(context);
+            ComponentName cn = new ComponentName(context, TaskWidgetProvider.class);
+            int[] appWidgetIds = appWidgetManager.getAppWidgetIds(cn);
+
+            Logger.d(Const.LOG_TAG_DOENIT_SIMPLE, () -> "updatePageSize: updating " + appWidgetIds.length + " widget(s) to pageSize=" + pageSize);
+
+            refreshLists(context, appWidgetManager, appWidgetIds);
+        } catch (Exception e) {
+            Logger.e(Const.LOG_TAG_DOENIT, "Error updating widget page size", e);
         }
     }
 
     public static void completeTask(Context context, String taskId) {
+        Tracer.Span span = Tracer.begin("TaskWidgetProvider.completeTask", taskId);
         try {
             // Send broadcast to notify main app of task completion
             Intent broadcastIntent = new Intent(Const.BROADCAST_TASK_COMPLETED);
             broadcastIntent.putExtra("taskId", taskId);
             context.sendBroadcast(broadcastIntent);
-            Log.d(Const.LOG_TAG_DOENIT_SIMPLE, "Broadcast sent for task completion: " + taskId);
+            Logger.d(Const.LOG_TAG_DOENIT_SIMPLE, () -> "Broadcast sent for task completion: " + taskId);
 
             // Also store in SharedPreferences as backup
-            String taskIds = DB.getString(Const.TASK_ID);
-            if (taskIds == null) {
-                taskIds = taskId;
-            } else {
-                taskIds += "," + taskId;
-            }
-            DB.saveData(Const.TASK_ID, taskIds);
+            DB.batch().append(Const.TASK_ID, taskId, ",").commit();
+
+            // The task is done, so its reminders should not fire any more
+            Utils.cancelNotification(context, taskId);
         } catch (Exception e) {
-            Log.e(Const.LOG_TAG_DOENIT, "Error completing task", e);
+            Logger.e(Const.LOG_TAG_DOENIT, "Error completing task", e);
+        } finally {
+            span.end();
+        }
+    }
+
+    /**
+     * Moves a task to {@code days} after today without starting the app: the
+     * snapshot's dates are changed in place, the change is queued for the app
+     * in {@link PendingMutations}, and the lists pick up only the patched row
+     * through {@link TaskPatches}.
+     */
+    public static void postponeTask(Context context, String taskId, int days) {
+        Tracer.Span span = Tracer.begin("TaskWidgetProvider.postponeTask", taskId);
+        try {
+            String tasksJson = DB.getString(Const.WIDGET_TASKS);
+            if (Utils.isEmpty(tasksJson)) {
+                return;
+            }
+
+            JSONArray tasks = new JSONArray(tasksJson);
+            JSONObject task = null;
+            for (int i = 0; i < tasks.length(); i++) {
+                JSONObject candidate = tasks.getJSONObject(i);
+                if (taskId.equals(candidate.optString("id"))) {
+                    task = candidate;
+                    break;
+                }
+            }
+            if (task == null) {
+                Logger.w(Const.LOG_TAG_DOENIT, () -> "Task to postpone not found: " + taskId);
+                return;
+            }
+
+            String startDate = task.optString("start_date", "");
+            String dueDate = task.optString("due_date", "");
+            int[] moved = TaskUtil.postpone(TaskUtil.parseEpochDay(startDate), TaskUtil.parseEpochDay(dueDate),
+                    days, TaskUtil.today());
+
+            Object newStartDate = withDay(startDate, moved[0]);
+            Object newDueDate = withDay(dueDate, moved[1]);
+            task.put("start_date", newStartDate);
+            task.put("due_date", newDueDate);
+
+            JSONObject fields = new JSONObject();
+            fields.put("start_date", newStartDate);
+            fields.put("due_date", newDueDate);
+
+            // Snapshot first, so a list that reloads in full already sees the change
+            DB.batch().put(Const.WIDGET_TASKS, tasks.toString()).commit();
+            WidgetFirstPage.clear(context);
+            PendingMutations.get(context).add(PendingMutations.TYPE_UPDATE, taskId, fields);
+            TaskPatches.add(taskId, moved[0], moved[1]);
+
+            AppWidgetManager appWidgetManager = AppWidgetManager.getInstance(context);
+            ComponentName cn = new ComponentName(context, TaskWidgetProvider.class);
+            refreshLists(context, appWidgetManager, appWidgetManager.getAppWidgetIds(cn));
+        } catch (JSONException e) {
+            Logger.e(Const.LOG_TAG_DOENIT, "Error postponing task", e);
+        } finally {
+            span.end();
+        }
+    }
+
+    /**
+     * @return The date for {@code epochDay}, keeping any time of day the
+     *         original value had, or JSON null when there is no date.
+     */
+    private static Object withDay(String original, int epochDay) {
+        if (epochDay == TaskTable.NO_DATE) {
+            return JSONObject.NULL;
+        }
+
+        String date = TaskUtil.toIsoDate(epochDay);
+        if (TaskUtil.parseEpochDay(original) != TaskTable.NO_DATE && original.length() > 10) {
+            return date + original.substring(10);
         }
+        return date;
     }
 
     private static String calculateNextDueDate(JSONObject task) throws JSONException {
@@ -330,13 +654,13 @@ public class TaskWidgetProvider extends AppWidgetProvider {
                     calendar.add(Calendar.YEAR, 1 * repeatIntervalNumber);
                     break;
                 default:
-                    Log.w(Const.LOG_TAG_DOENIT_SIMPLE, "Unknown repeat interval: " + repeatInterval);
+                    Logger.w(Const.LOG_TAG_DOENIT_SIMPLE, () -> "Unknown repeat interval: " + repeatInterval);
                     return null;
             }
 
             return dateFormat.format(calendar.getTime());
         } catch (ParseException e) {
-            Log.e(Const.LOG_TAG_DOENIT_SIMPLE, "Error parsing due date: " + currentDueDate, e);
+            Logger.e(Const.LOG_TAG_DOENIT_SIMPLE, () -> "Error parsing due date: " + currentDueDate, e);
             return null;
         }
     }
@@ -381,13 +705,13 @@ public class TaskWidgetProvider extends AppWidgetProvider {
                     calendar.add(Calendar.YEAR, 1 * repeatIntervalNumber);
                     break;
                 default:
-                    Log.w(Const.LOG_TAG_DOENIT_SIMPLE, "Unknown repeat interval: " + repeatInterval);
+                    Logger.w(Const.LOG_TAG_DOENIT_SIMPLE, () -> "Unknown repeat interval: " + repeatInterval);
                     return null;
             }
 
             return dateFormat.format(calendar.getTime());
         } catch (ParseException e) {
-            Log.e(Const.LOG_TAG_DOENIT_SIMPLE, "Error parsing start date: " + currentStartDate, e);
+            Logger.e(Const.LOG_TAG_DOENIT_SIMPLE, () -> "Error parsing start date: " + currentStartDate, e);
             return null;
         }
     }
@@ -1,210 +1,308 @@
 package doenit.app;
 
+import android.appwidget.AppWidgetManager;
 import android.content.Context;
 import android.content.Intent;
-import android.content.SharedPreferences;
-import android.view.View;
-import android.util.Log;
-
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
 import android.widget.RemoteViews;
 import android.widget.RemoteViewsService;
 
-import org.json.JSONArray;
 import org.json.JSONException;
-import org.json.JSONObject;
-
-import java.text.SimpleDateFormat;
-import java.text.ParseException;
 
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Locale;
-import java.util.Date;
-import java.util.Calendar;
-
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
-import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import doenit.app.R;
 
 public class TaskWidgetService extends RemoteViewsService {
+    private static final AtomicInteger dataVersion = new AtomicInteger();
+    // When the provider last asked factories for fresh rows, for the
+    // time-to-first-row metric; 0 once the first row has been served
+    private static final AtomicLong refreshRequestedAt = new AtomicLong();
+    // RemoteViews do not report their size; a built row's action list is
+    // around this much
+    private static final long ROW_VIEW_BYTES = 2 * 1024;
+
+    // Shared by every factory's background snapshot read, so cold starts do
+    // not each leave a thread behind
+    private static Handler loadHandler;
+
+    /**
+     * Marks the persisted widget data (tasks, categories, theme or language) as
+     * changed, so the next onDataSetChanged reloads it instead of only
+     * re-classifying the rows it already has.
+     */
+    public static void invalidate() {
+        dataVersion.incrementAndGet();
+        TaskPatches.clear();
+    }
+
+    public static int getDataVersion() {
+        return dataVersion.get();
+    }
+
+    private static synchronized Handler getLoadHandler() {
+        if (loadHandler == null) {
+            HandlerThread thread = new HandlerThread("DoenitWidgetLoad", Process.THREAD_PRIORITY_BACKGROUND);
+            thread.start();
+            loadHandler = new Handler(thread.getLooper());
+        }
+        return loadHandler;
+    }
+
+    /**
+     * Starts the factory path's time-to-first-row clock. Call right before
+     * binding the adapter or notifying it of changed data.
+     */
+    public static void markRefreshRequested() {
+        refreshRequestedAt.set(Metrics.start());
+    }
 
     @Override
     public RemoteViewsFactory onGetViewFactory(Intent intent) {
-        Log.d(Const.LOG_TAG_DOENIT_SIMPLE, "TaskWidgetService.onGetViewFactory called");
+        Logger.d(Const.LOG_TAG_DOENIT_SIMPLE, "TaskWidgetService.onGetViewFactory called");
         return new TaskRemoteViewsFactory(this.getApplicationContext(), intent);
     }
 
     class TaskRemoteViewsFactory implements RemoteViewsService.RemoteViewsFactory {
         private Context context;
-        private List<Task> tasks;
+        private final int appWidgetId;
+        private TaskTable tasks;
+        // Tasks in the whole snapshot; more than the table holds while it is
+        // the first page
+        private int totalTasks;
+        // The full snapshot being read in the background while the first page
+        // is shown, or null
+        private FutureTask<TaskTable> fullLoad;
+        private int fullLoadVersion;
+        private int fullLoadPatch;
+        private Locale locale;
+        private int windowSize;
+        private int bucket = WidgetSize.FULL;
+        private int loadedVersion = -1;
+        private int appliedPatch;
+        private int classifiedDay = TaskTable.NO_DATE;
+        private RemoteViews[] rowViews = new RemoteViews[0];
+        private final TaskSections sections = new TaskSections();
+        private final RemoteViews[] headerViews = new RemoteViews[TaskSections.COUNT];
+        private final BitSet changedRows = new BitSet();
+
+        /**
+         * The built row and header views; they are rebuilt from the loaded
+         * table on the next getViewAt.
+         */
+        private final CacheRegistry.Cache viewCache = new CacheRegistry.Cache() {
+            @Override
+            public String name() {
+                return "widget_rows";
+            }
+
+            @Override
+            public int tier() {
+                return CacheRegistry.TIER_RENDERED;
+            }
+
+            @Override
+            public long sizeBytes() {
+                long count = 0;
+                for (RemoteViews views : rowViews) {
+                    if (views != null) {
+                        count++;
+                    }
+                }
+                for (RemoteViews views : headerViews) {
+                    if (views != null) {
+                        count++;
+                    }
+                }
+                return count * ROW_VIEW_BYTES;
+            }
+
+            @Override
+            public void trim() {
+                Arrays.fill(rowViews, null);
+                Arrays.fill(headerViews, null);
+            }
+        };
 
         TaskRemoteViewsFactory(Context context, Intent intent) {
             this.context = context;
-            this.tasks = new ArrayList<>();
-            Log.d(Const.LOG_TAG_DOENIT_SIMPLE, "TaskRemoteViewsFactory created");
+            this.appWidgetId = intent.getIntExtra(AppWidgetManager.EXTRA_APPWIDGET_ID,
+                    AppWidgetManager.INVALID_APPWIDGET_ID);
+            this.tasks = new TaskTable();
+            Logger.d(Const.LOG_TAG_DOENIT_SIMPLE, "TaskRemoteViewsFactory created");
         }
 
+        /**
+         * Shows the first page stored at ingest when there is one for today,
+         * and reads the full snapshot in the background; otherwise loads the
+         * snapshot right away.
+         */
         @Override
         public void onCreate() {
-            Log.d(Const.LOG_TAG_DOENIT_SIMPLE, "TaskRemoteViewsFactory.onCreate called");
+            Logger.d(Const.LOG_TAG_DOENIT_SIMPLE, "TaskRemoteViewsFactory.onCreate called");
             DB.init(context);
-            loadTasks();
+            if (!loadFirstPage()) {
+                loadTasks();
+            }
+            CacheRegistry.register(viewCache);
         }
 
         @Override
         public void onDataSetChanged() {
+            Tracer.Span span = Tracer.begin("TaskRemoteViewsFactory.onDataSetChanged");
             try {
-                Log.d(Const.LOG_TAG_DOENIT_SIMPLE, "onDataSetChanged called - refreshing widget data");
-                loadTasks();
+                Logger.d(Const.LOG_TAG_DOENIT_SIMPLE, "onDataSetChanged called - refreshing widget data");
+                if (fullLoad != null) {
+                    finishFullLoad();
+                }
+
+                if (loadedVersion != dataVersion.get()) {
+                    loadTasks();
+                } else {
+                    updateWindow();
+                    applyPatches();
+                    rollover();
+                }
+
+                if (getCount() == 0) {
+                    // No row will be requested, so there is nothing to time
+                    refreshRequestedAt.set(0);
+                }
             } catch (Exception e) {
-                Log.e(Const.LOG_TAG_DOENIT_WIDGET, "Error refreshing widget data", e);
+                Logger.e(Const.LOG_TAG_DOENIT_WIDGET, "Error refreshing widget data", e);
+            } finally {
+                span.end();
             }
         }
 
         @Override
         public void onDestroy() {
+            fullLoad = null;
+            CacheRegistry.release(viewCache);
             tasks.clear();
+            rowViews = new RemoteViews[0];
         }
 
+        /**
+         * Only rows inside the current window that fit the size bucket are
+         * counted, together with their section headers, plus one trailing
+         * "show more" row while tasks remain outside it.
+         */
         @Override
         public int getCount() {
-            return Math.min(tasks.size(), 20); // Limit to 20 tasks for widget
+            int visible = getVisibleCount();
+            return hasMore() ? visible + 1 : visible;
+        }
+
+        private int getVisibleCount() {
+            return sections.positionCount(windowSize, WidgetSize.showsSectionHeaders(bucket));
+        }
+
+        private boolean hasMore() {
+            return totalTasks > windowSize && WidgetSize.showsMoreRow(bucket);
+        }
+
+        /**
+         * Re-reads the paging window and size bucket; a bucket change drops
+         * every cached row since the row layout changes with it.
+         */
+        private void updateWindow() {
+            int newBucket = WidgetSize.bucketOf(context, appWidgetId);
+            if (newBucket != bucket) {
+                bucket = newBucket;
+                Arrays.fill(rowViews, null);
+            }
+            windowSize = WidgetSize.rowLimit(bucket, WidgetPager.getWindowSize(context, appWidgetId));
         }
 
         @Override
         public RemoteViews getViewAt(int position) {
-            if (position >= tasks.size()) {
-                return null;
+            if (position == getVisibleCount() && hasMore()) {
+                return getShowMoreView();
             }
 
-            Task task = tasks.get(position);
-            Log.d(Const.LOG_TAG_DOENIT_SIMPLE, "Creating view for task: " + task.name + " (ID: " + task.id + ")");
-
-            RemoteViews views = new RemoteViews(this.context.getPackageName(), R.layout.task_widget_item);
-
-            // Determine task state
-            boolean isPast = isDatePast(task.startDate);
-            boolean isOngoing = isTaskOngoing(task.startDate, task.dueDate);
-
-            // Set task name
-            views.setTextViewText(R.id.task_name, task.name);
-            int text_name_color = Colors.get((isOngoing || isPast) ? "text-alt" : "text-normal");
-            int app_name_text_color = context.getResources().getColor(text_name_color);
-            views.setTextColor(R.id.task_name, app_name_text_color);
-
-            // Set background based on task state
-            int backgroundColor = Drawable.taskDefault();
-            if (isOngoing)
-                backgroundColor = Drawable.taskOngoing();
-            else if (isPast)
-                backgroundColor = Drawable.taskPast();
-            views.setInt(R.id.task_container, "setBackgroundResource", backgroundColor);
-
-            // Handle due date display with icon
-
-            // Show date pill if either startDate or dueDate is present
-            String date = TaskUtil.getDate(task);
-            if (!Utils.isEmpty(date)) {
-                views.setViewVisibility(R.id.date_pill, View.VISIBLE);
-                views.setViewVisibility(R.id.pills_container, View.VISIBLE);
-                views.setTextViewText(R.id.pill_date, date);
-
-                int color = Colors.get((isOngoing || isPast) ? "text-alt" : "text-normal");
-                int dueDateTextColor = context.getResources().getColor(color);
-                views.setTextColor(R.id.pill_date, dueDateTextColor);
-                int clockIconRes = Drawable.iconClockNormal();
-                if (isOngoing || isPast) {
-                    clockIconRes = Drawable.iconClockAlt();
-                }
-                views.setImageViewResource(R.id.icon_clock, clockIconRes);
-
-                // Set pill background based on state
-                int pill = Drawable.pillDefault();
-                if (isOngoing) {
-                    pill = Drawable.pillOngoing();
-                } else if (isPast) {
-                    pill = Drawable.pillPast();
-                }
-                views.setInt(R.id.date_pill, "setBackgroundResource", pill);
-
-                // Show repeat icon if task is repeating
-                views.setViewVisibility(R.id.repeat_icon, task.is_repeating ? View.VISIBLE : View.GONE);
-                if (task.is_repeating) {
-                    int repeatIconRes = Drawable.iconSyncNormal();
-                    if (isOngoing || isPast) {
-                        repeatIconRes = Drawable.iconSyncAlt();
-                    }
-                    views.setImageViewResource(R.id.repeat_icon, repeatIconRes);
-                }
-            } else {
-                views.setViewVisibility(R.id.date_pill, View.GONE);
+            if (position >= getVisibleCount()) {
+                return null;
             }
 
-            // Handle category display with icon
-            if (!Utils.isEmpty(task.category)) {
-                views.setViewVisibility(R.id.category_container, View.VISIBLE);
-                views.setViewVisibility(R.id.pills_container, View.VISIBLE);
-                views.setTextViewText(R.id.pill_category, task.category);
-
-                int color = Colors.get((isOngoing || isPast) ? "text-alt" : "text-normal");
-                int categoryTextColor = context.getResources().getColor(color);
-
-                views.setTextColor(R.id.pill_category, categoryTextColor);
-                int categoryIconRes = Drawable.iconCategoryNormal();
-                if (isOngoing || isPast) {
-                    categoryIconRes = Drawable.iconCategoryAlt();
-                }
-                views.setImageViewResource(R.id.icon_category, categoryIconRes);
-
-                // Set pill background based on state
-                int pill = Drawable.pillDefault();
-                if (isOngoing) {
-                    pill = Drawable.pillOngoing();
-                } else if (isPast) {
-                    pill = Drawable.pillPast();
+            if (position == 0) {
+                long requestedAt = refreshRequestedAt.getAndSet(0);
+                if (requestedAt != 0) {
+                    Metrics.stop(Const.METRIC_FIRST_ROW_FACTORY, requestedAt);
                 }
-                views.setInt(R.id.category_container, "setBackgroundResource", pill);
-            } else {
-                views.setViewVisibility(R.id.category_container, View.GONE);
             }
 
-            // Hide pills container if both date and category are hidden
-            if (Utils.isEmpty(date) && Utils.isEmpty(task.category)) {
-                views.setViewVisibility(R.id.pills_container, View.GONE);
+            int entry = sections.entryAt(position, WidgetSize.showsSectionHeaders(bucket));
+            if (TaskSections.isHeader(entry)) {
+                return getHeaderView(TaskSections.headerSection(entry));
             }
 
-            // Set priority indicators
-            views.setViewVisibility(R.id.important_icon, task.important ? View.VISIBLE : View.GONE);
+            int row = entry;
+            RemoteViews cached = rowViews[row];
+            if (cached != null) {
+                Metrics.increment(Const.METRIC_ROW_CACHE_HIT);
+                return cached;
+            }
 
-            // Set up fill-in intent for COMPLETE_TASK (complete_button)
-            Intent completeIntent = new Intent();
-            completeIntent.setAction(TaskWidgetProvider.ACTION_COMPLETE_TASK);
-            completeIntent.putExtra(TaskWidgetProvider.EXTRA_TASK_ID, task.id);
-            views.setOnClickFillInIntent(R.id.complete_button, completeIntent);
+            long start = Metrics.start();
+            RemoteViews views = buildTaskView(row);
+            rowViews[row] = views;
+            Metrics.increment(Const.METRIC_ROW_CACHE_MISS);
+            Metrics.stop(Const.METRIC_GET_VIEW_AT, start);
+            return views;
+        }
 
-            // Set up fill-in intent for OPEN_TASK (task_item_layout)
-            Intent openIntent = new Intent();
-            openIntent.setAction(TaskWidgetProvider.ACTION_OPEN_TASK);
-            openIntent.putExtra(TaskWidgetProvider.EXTRA_TASK_ID, task.id);
-            views.setOnClickFillInIntent(R.id.task_item_layout, openIntent);
+        private RemoteViews buildTaskView(int row) {
+            return TaskRowViews.buildTaskView(context, tasks, row, locale, bucket);
+        }
 
+        private RemoteViews getHeaderView(int section) {
+            RemoteViews views = headerViews[section];
+            if (views == null) {
+                views = TaskRowViews.buildSectionHeaderView(context, section);
+                headerViews[section] = views;
+            }
             return views;
         }
 
+        private RemoteViews getShowMoreView() {
+            int remaining = totalTasks - windowSize;
+            return TaskRowViews.buildShowMoreView(context, appWidgetId, remaining);
+        }
+
         @Override
         public RemoteViews getLoadingView() {
-            return null;
+            return TaskRowViews.buildLoadingView(context);
         }
 
         @Override
         public int getViewTypeCount() {
-            return 1;
+            return TaskRowViews.VIEW_TYPE_COUNT;
         }
 
         @Override
         public long getItemId(int position) {
-            return position;
+            if (position == getVisibleCount() && hasMore()) {
+                return TaskRowViews.SHOW_MORE_ITEM_ID;
+            }
+
+            if (position >= getVisibleCount()) {
+                return position;
+            }
+
+            int entry = sections.entryAt(position, WidgetSize.showsSectionHeaders(bucket));
+            if (TaskSections.isHeader(entry)) {
+                return TaskRowViews.HEADER_ITEM_ID + TaskSections.headerSection(entry);
+            }
+            return TaskRowViews.itemId(tasks.id(entry));
         }
 
         @Override
@@ -212,169 +310,173 @@ public class TaskWidgetService extends RemoteViewsService {
             return true;
         }
 
-        private void loadTasks() {
-            tasks.clear();
-            Log.d(Const.LOG_TAG_DOENIT_SIMPLE, "Loading tasks from widget data");
-
-            String tasksJson = DB.getString(Const.WIDGET_TASKS);
-            String categoriesJson = DB.getString(Const.WIDGET_CATEGORIES);
-
-            // Parse categories for name lookup
-            try {
-                JSONObject categories = new JSONObject(categoriesJson);
-                JSONArray tasksArray = new JSONArray(tasksJson);
-
-                for (int i = 0; i < tasksArray.length(); i++) {
-                    JSONObject taskJson = tasksArray.getJSONObject(i);
-
-                    Task task = new Task();
-                    task.id = taskJson.optString("id", "");
-                    task.name = taskJson.optString("name", "");
-                    task.dueDate = toDisplayDate(taskJson.optString("due_date", ""));
-                    task.startDate = toDisplayDate(taskJson.optString("start_date", ""));
-
-                    // Get category name from category ID
-                    String category_id = taskJson.optString("category_id", "");
-                    task.category = getCategoryName(category_id, categories);
-                    task.important = taskJson.optBoolean("important", false);
-                    task.is_repeating = !taskJson.optString("repeat_interval", "").isEmpty();
-
-                    tasks.add(task);
-                }
-
-                Log.d(Const.LOG_TAG_DOENIT_WIDGET, "Found " + tasksArray.length() + " total tasks, loaded "
-                        + tasks.size() + " active tasks for widget");
-            } catch (JSONException e) {
-                Log.e(Const.LOG_TAG_DOENIT_WIDGET, "Error parsing JSON", e);
-                e.printStackTrace();
+        /**
+         * Shows the stored first page and starts reading the full snapshot on
+         * the shared load thread; the widget is told to refresh once it is
+         * read, and the next onDataSetChanged swaps it in.
+         *
+         * @return False if there is no first page for today.
+         */
+        private boolean loadFirstPage() {
+            long start = Metrics.start();
+            int today = TaskUtil.today();
+            WidgetFirstPage.Page page = WidgetFirstPage.read(context, today);
+            if (page == null) {
+                return false;
             }
-        }
 
-        private String getCategoryName(String category_id, JSONObject categories) {
-            // Get category name from category ID
-            if (!category_id.isEmpty() && categories.has(category_id)) {
-                try {
-                    JSONObject category = categories.getJSONObject(category_id);
-                    return category.optString("name", "");
-                } catch (JSONException e) {
-                    e.printStackTrace();
-                }
-            }
-            return "";
+            fullLoadVersion = dataVersion.get();
+            fullLoadPatch = TaskPatches.latest();
+            fullLoad = new FutureTask<>(() -> {
+                TaskTable full = readSnapshot();
+                AppWidgetManager.getInstance(context).notifyAppWidgetViewDataChanged(appWidgetId,
+                        R.id.widget_list_view);
+                return full;
+            });
+            getLoadHandler().post(fullLoad);
+
+            // The page is not the snapshot, so any onDataSetChanged before the
+            // full load is swapped in must not treat it as current
+            loadedVersion = -1;
+            appliedPatch = fullLoadPatch;
+            tasks = page.tasks;
+            totalTasks = page.total;
+            prepare(today);
+            Metrics.stop(Const.METRIC_LOAD_FIRST_PAGE, start);
+            Logger.d(Const.LOG_TAG_DOENIT_WIDGET, () -> "Showing first page of " + tasks.size() + " of "
+                    + totalTasks + " tasks while the snapshot loads");
+            return true;
         }
 
-        private String toDisplayDate(String dateString) {
-            if (Utils.isEmpty(dateString)) {
-                return "";
+        /**
+         * Waits for the background read started by {@link #loadFirstPage()}
+         * and swaps the full snapshot in, unless the data changed since it
+         * started; then a full reload follows instead.
+         */
+        private void finishFullLoad() throws InterruptedException {
+            FutureTask<TaskTable> load = fullLoad;
+            fullLoad = null;
+            if (fullLoadVersion != dataVersion.get()) {
+                return;
             }
 
-            // Get user preferred language
-            Locale locale = new Locale("af", "ZA");
-            String language = DB.getString("language", "af");
-            if ("en".equals(language)) {
-                locale = Locale.ENGLISH;
+            try {
+                TaskTable full = load.get();
+                loadedVersion = fullLoadVersion;
+                appliedPatch = fullLoadPatch;
+                tasks = full;
+                totalTasks = tasks.size();
+                prepare(TaskUtil.today());
+                Metrics.setGauge(Const.METRIC_TASK_COUNT, tasks.size());
+                Logger.d(Const.LOG_TAG_DOENIT_WIDGET, () -> "Swapped in " + totalTasks + " tasks after the first page");
+            } catch (ExecutionException e) {
+                Logger.e(Const.LOG_TAG_DOENIT_WIDGET, "Error loading widget snapshot", e);
             }
+        }
 
+        private TaskTable readSnapshot() {
+            Tracer.Span span = Tracer.begin("TaskRemoteViewsFactory.readSnapshot");
+            long start = Metrics.start();
+            TaskTable table = new TaskTable();
             try {
-                SimpleDateFormat inputFormat = new SimpleDateFormat("yyyy-MM-dd", Locale.ENGLISH);
-                Date date = inputFormat.parse(dateString);
-
-                SimpleDateFormat outputFormat = new SimpleDateFormat("d MMM yyyy", locale);
-                return outputFormat.format(date);
-            } catch (ParseException e) {
-                return dateString; // Return original string if parsing fails
+                table.load(DB.getString(Const.WIDGET_TASKS), DB.getString(Const.WIDGET_CATEGORIES));
+            } catch (JSONException e) {
+                Logger.e(Const.LOG_TAG_DOENIT_WIDGET, "Error parsing JSON", e);
+                table.clear();
             }
+            Metrics.stop(Const.METRIC_LOAD_TASKS, start);
+            span.end();
+            return table;
         }
 
-        private boolean isDatePast(String startDateStr) {
-            if (startDateStr == null || startDateStr.isEmpty()) {
-                return false;
-            }
+        private void loadTasks() {
+            Logger.d(Const.LOG_TAG_DOENIT_SIMPLE, "Loading tasks from widget data");
+            Tracer.Span span = Tracer.begin("TaskRemoteViewsFactory.loadTasks");
+            long start = Metrics.start();
+            loadedVersion = dataVersion.get();
+            // The persisted snapshot already includes every logged patch
+            appliedPatch = TaskPatches.latest();
+
+            String tasksJson = DB.getString(Const.WIDGET_TASKS);
+            String categoriesJson = DB.getString(Const.WIDGET_CATEGORIES);
 
             try {
-                // Parse ISO date format (yyyy-MM-dd)
-                SimpleDateFormat inputFormat = new SimpleDateFormat("d MMM yyyy", new Locale("af", "ZA"));
-                Date startDate = inputFormat.parse(startDateStr);
-
-                // Get today's date at midnight for comparison
-                Calendar today = Calendar.getInstance();
-                today.set(Calendar.HOUR_OF_DAY, 0);
-                today.set(Calendar.MINUTE, 0);
-                today.set(Calendar.SECOND, 0);
-                today.set(Calendar.MILLISECOND, 0);
-
-                return startDate != null && startDate.before(today.getTime());
-            } catch (ParseException e) {
-                return false; // If we can't parse the date, assume it's not past
+                tasks.load(tasksJson, categoriesJson);
+            } catch (JSONException e) {
+                Logger.e(Const.LOG_TAG_DOENIT_WIDGET, "Error parsing JSON", e);
+                tasks.clear();
             }
+            totalTasks = tasks.size();
+            prepare(TaskUtil.today());
+
+            Metrics.setGauge(Const.METRIC_TASK_COUNT, tasks.size());
+            Metrics.stop(Const.METRIC_LOAD_TASKS, start);
+            span.end();
+            Logger.d(Const.LOG_TAG_DOENIT_WIDGET, () -> "Loaded " + tasks.size() + " active tasks for widget");
         }
 
-        private boolean isTaskOngoing(String startDateStr, String dueDateFormatted) {
-            if (startDateStr == null || startDateStr.isEmpty()) {
-                return false;
+        /**
+         * Resets the cached views for a newly loaded table and classifies it
+         * for {@code today}.
+         */
+        private void prepare(int today) {
+            locale = TaskUtil.getDisplayLocale();
+            if (rowViews.length < tasks.size()) {
+                rowViews = new RemoteViews[tasks.size()];
+            } else {
+                Arrays.fill(rowViews, null);
             }
+            updateWindow();
 
-            try {
-                SimpleDateFormat inputFormat = new SimpleDateFormat("d MMM yyyy", new Locale("af", "ZA"));
-                Date startDate = inputFormat.parse(startDateStr);
-
-                // Get today's date at midnight
-                Calendar today = Calendar.getInstance();
-                today.set(Calendar.HOUR_OF_DAY, 0);
-                today.set(Calendar.MINUTE, 0);
-                today.set(Calendar.SECOND, 0);
-                today.set(Calendar.MILLISECOND, 0);
-                Date todayDate = today.getTime();
-
-                if (startDate == null) {
-                    return false;
-                }
+            Arrays.fill(headerViews, null);
 
-                // If there's a due date, check if today is between start and due
-                if (dueDateFormatted != null && !dueDateFormatted.isEmpty()) {
-                    SimpleDateFormat outputFormat = new SimpleDateFormat("d MMM yyyy", new Locale("af", "ZA"));
-                    Date dueDate = outputFormat.parse(dueDateFormatted);
-
-                    if (dueDate != null) {
-                        return !todayDate.before(startDate) && !todayDate.after(dueDate);
-                    }
-                }
+            classifiedDay = today;
+            tasks.classify(classifiedDay, null);
+            sections.rebuild(tasks);
+            RolloverScheduler.schedule(context, tasks, classifiedDay);
+        }
 
-                // If no due date, check if today equals start date
-                Calendar startCal = Calendar.getInstance();
-                startCal.setTime(startDate);
-                startCal.set(Calendar.HOUR_OF_DAY, 0);
-                startCal.set(Calendar.MINUTE, 0);
-                startCal.set(Calendar.SECOND, 0);
-                startCal.set(Calendar.MILLISECOND, 0);
+        /**
+         * Applies the rows postponed from the widget since the last refresh and
+         * drops only their cached views.
+         */
+        private void applyPatches() {
+            if (appliedPatch == TaskPatches.latest()) {
+                return;
+            }
 
-                return todayDate.equals(startCal.getTime()) && !todayDate.after(startDate);
-            } catch (ParseException e) {
-                return false;
+            changedRows.clear();
+            appliedPatch = TaskPatches.apply(tasks, appliedPatch, changedRows);
+            for (int row = changedRows.nextSetBit(0); row >= 0; row = changedRows.nextSetBit(row + 1)) {
+                rowViews[row] = null;
+                if (!tasks.classifyRow(row, classifiedDay)) {
+                    changedRows.clear(row);
+                }
             }
+            sections.update(tasks, changedRows);
+            RolloverScheduler.schedule(context, tasks, classifiedDay);
         }
 
-        private int compareDueDates(String dateA, String dateB) {
-            boolean aHasDate = dateA != null && !dateA.isEmpty();
-            boolean bHasDate = dateB != null && !dateB.isEmpty();
-
-            // Tasks with due dates come before tasks without due dates
-            if (aHasDate && !bHasDate)
-                return -1;
-            if (!aHasDate && bHasDate)
-                return 1;
-            if (!aHasDate && !bHasDate)
-                return 0;
+        /**
+         * Re-classifies the loaded rows for the current day and drops the cached
+         * views of only those rows whose past/ongoing state changed.
+         */
+        private void rollover() {
+            int today = TaskUtil.today();
+            if (today == classifiedDay) {
+                return;
+            }
 
-            // Both have due dates - compare them
-            try {
-                SimpleDateFormat outputFormat = new SimpleDateFormat("d MMM yyyy", new Locale("af", "ZA"));
-                Date parsedDateA = outputFormat.parse(dateA);
-                Date parsedDateB = outputFormat.parse(dateB);
-                return parsedDateA.compareTo(parsedDateB);
-            } catch (ParseException e) {
-                return dateA.compareTo(dateB); // Fallback to string comparison
+            changedRows.clear();
+            int changed = tasks.classify(today, changedRows);
+            sections.update(tasks, changedRows);
+            for (int row = changedRows.nextSetBit(0); row >= 0; row = changedRows.nextSetBit(row + 1)) {
+                rowViews[row] = null;
             }
+
+            classifiedDay = today;
+            RolloverScheduler.schedule(context, tasks, today);
+            Logger.d(Const.LOG_TAG_DOENIT_WIDGET, () -> "Rolled over to epoch day " + today + ", " + changed + " row(s) changed");
         }
     }
 }
@@ -0,0 +1,200 @@
+package doenit.app;
+
+import android.content.Context;
+import android.os.Process;
+import android.os.SystemClock;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Records timing spans across the widget and app entry points into a bounded
+ * ring, and exports them in the Chrome trace-event format (load the file in
+ * chrome://tracing or ui.perfetto.dev).
+ *
+ * Spans are complete ("X") events tagged with the recording thread, so the
+ * viewer nests them by time containment per thread:
+ *
+ * <pre>
+ * Tracer.Span span = Tracer.begin("completeTask");
+ * try {
+ *     ...
+ * } finally {
+ *     span.end();
+ * }
+ * </pre>
+ */
+public final class Tracer {
+    private static final int CAPACITY = 1024;
+    private static final int MAX_EXPORTS = 5;
+    // Under the cache-path entry of res/xml/file_paths.xml
+    private static final String TRACE_DIR = "traces";
+
+    private static final String[] names = new String[CAPACITY];
+    private static final String[] details = new String[CAPACITY];
+    private static final long[] starts = new long[CAPACITY];
+    private static final long[] durations = new long[CAPACITY];
+    private static final int[] tids = new int[CAPACITY];
+    private static final Map<Integer, String> threadNames = new HashMap<>();
+    private static int next;
+    private static int size;
+
+    private Tracer() {
+    }
+
+    public static final class Span {
+        private final String name;
+        private final String detail;
+        private final long start;
+        private boolean ended;
+
+        private Span(String name, String detail) {
+            this.name = name;
+            this.detail = detail;
+            this.start = nowMicros();
+        }
+
+        public void end() {
+            if (ended) {
+                return;
+            }
+            ended = true;
+            record(name, detail, start, nowMicros() - start);
+        }
+    }
+
+    public static Span begin(String name) {
+        return new Span(name, null);
+    }
+
+    /**
+     * @param detail Shown as the span's "detail" argument in the viewer
+     */
+    public static Span begin(String name, String detail) {
+        return new Span(name, detail);
+    }
+
+    private static long nowMicros() {
+        return SystemClock.elapsedRealtimeNanos() / 1000;
+    }
+
+    private static synchronized void record(String name, String detail, long start, long duration) {
+        int tid = Process.myTid();
+        if (!threadNames.containsKey(tid)) {
+            threadNames.put(tid, Thread.currentThread().getName());
+        }
+
+        names[next] = name;
+        details[next] = detail;
+        starts[next] = start;
+        durations[next] = duration;
+        tids[next] = tid;
+        next = (next + 1) % CAPACITY;
+        if (size < CAPACITY) {
+            size++;
+        }
+    }
+
+    /**
+     * @return {"traceEvents": [...]} with a thread_name metadata event per
+     *         thread followed by the recorded spans, oldest first.
+     */
+    public static synchronized JSONObject toJson() throws JSONException {
+        int pid = Process.myPid();
+        JSONArray events = new JSONArray();
+
+        for (Map.Entry<Integer, String> thread : threadNames.entrySet()) {
+            JSONObject args = new JSONObject();
+            args.put("name", thread.getValue());
+
+            JSONObject event = new JSONObject();
+            event.put("name", "thread_name");
+            event.put("ph", "M");
+            event.put("pid", pid);
+            event.put("tid", thread.getKey());
+            event.put("args", args);
+            events.put(event);
+        }
+
+        int first = (next - size + CAPACITY) % CAPACITY;
+        for (int i = 0; i < size; i++) {
+            int slot = (first + i) % CAPACITY;
+
+            JSONObject event = new JSONObject();
+            event.put("name", names[slot]);
+            event.put("cat", "doenit");
+            event.put("ph", "X");
+            event.put("ts", starts[slot]);
+            event.put("dur", durations[slot]);
+            event.put("pid", pid);
+            event.put("tid", tids[slot]);
+            if (details[slot] != null) {
+                JSONObject args = new JSONObject();
+                args.put("detail", details[slot]);
+                event.put("args", args);
+            }
+            events.put(event);
+        }
+
+        JSONObject trace = new JSONObject();
+        trace.put("traceEvents", events);
+        trace.put("displayTimeUnit", "ms");
+        return trace;
+    }
+
+    /**
+     * Writes the current trace into the app's cache directory, keeping only
+     * the most recent {@code MAX_EXPORTS} files.
+     *
+     * @return The written file, shareable through the app's FileProvider.
+     */
+    public static File export(Context context) throws IOException, JSONException {
+        File dir = new File(context.getCacheDir(), TRACE_DIR);
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Could not create " + dir);
+        }
+
+        File file = new File(dir, "doenit-trace-" + System.currentTimeMillis() + ".json");
+        String json = toJson().toString();
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+            writer.write(json);
+        }
+
+        pruneExports(dir);
+        return file;
+    }
+
+    private static void pruneExports(File dir) {
+        File[] files = dir.listFiles();
+        if (files == null || files.length <= MAX_EXPORTS) {
+            return;
+        }
+
+        // Names embed the export time, so lexical order is chronological
+        Arrays.sort(files, (a, b) -> a.getName().compareTo(b.getName()));
+        for (int i = 0; i < files.length - MAX_EXPORTS; i++) {
+            files[i].delete();
+        }
+    }
+
+    public static synchronized void clear() {
+        for (int i = 0; i < CAPACITY; i++) {
+            names[i] = null;
+            details[i] = null;
+        }
+        threadNames.clear();
+        next = 0;
+        size = 0;
+    }
+}
@@ -2,14 +2,9 @@ package doenit.app;
 
 import android.content.Intent;
 import android.webkit.WebView;
-import android.app.NotificationManager;
 import android.content.Context;
 import android.content.SharedPreferences;
-import android.util.Log;
-import android.app.AlarmManager;
-import android.app.PendingIntent;
 import com.getcapacitor.Bridge;
-import com.getcapacitor.BridgeActivity;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 
@@ -33,51 +28,14 @@ public class Utils {
     }
 
     /**
-     * Cancels a notification using the taskId as the notification ID.
+     * Cancels every reminder scheduled for the task, including any that are
+     * already showing.
      * 
      * @param context The application context
-     * @param taskId  The task ID used as notification ID
+     * @param taskId  The task ID the reminders were scheduled for
      */
     public static void cancelNotification(Context context, String taskId) {
-        // TODO: I need to write my own LocalNotifications plugin that can be accessed
-        // by the widget.
-
-        // if (context == null || taskId == null) {
-        // return;
-        // }
-
-        // int notificationId = taskId.hashCode();
-
-        // // Cancel the notification
-        // NotificationManager nm = (NotificationManager)
-        // context.getSystemService(Context.NOTIFICATION_SERVICE);
-        // nm.cancel(notificationId);
-
-        // // Cancel the alarm
-        // try {
-
-        // Intent intent = new Intent(context,
-        // Class.forName("com.capacitorjs.plugins.localnotifications.LocalNotificationsPlugin"));
-        // intent.setAction("com.capacitorjs.plugins.localnotifications.NOTIFICATION_INTENT");
-        // intent.putExtra("com.capacitorjs.plugins.localnotifications.NOTIFICATION_INTENT",
-        // notificationId);
-
-        // PendingIntent pendingIntent = PendingIntent.getBroadcast(context,
-        // notificationId, intent, PendingIntent.FLAG_UPDATE_CURRENT |
-        // PendingIntent.FLAG_IMMUTABLE);
-
-        // AlarmManager alarmManager = (AlarmManager)
-        // context.getSystemService(Context.ALARM_SERVICE);
-        // alarmManager.cancel(pendingIntent);
-
-        // Log.d(Const.LOG_TAG_DOENIT, "Cancelled alarm for notificationId: " +
-        // notificationId);
-        // } catch (Exception e) {
-        // Log.e(Const.LOG_TAG_DOENIT, "Error canceling alarm", e);
-        // }
-
-        // Log.d(Const.LOG_TAG_DOENIT, "Cancelled notification for taskId HASH: " +
-        // notificationId);
+        ReminderScheduler.cancelForTask(context, taskId);
     }
 
     /**
@@ -101,11 +59,11 @@ public class Utils {
 
         WebView webView = bridge.getWebView();
         if (webView == null) {
-            Log.w(Const.LOG_TAG_DOENIT, "WebView is null, cannot navigate to route");
+            Logger.w(Const.LOG_TAG_DOENIT, "WebView is null, cannot navigate to route");
             return;
         }
 
-        Log.d(Const.LOG_TAG_DOENIT, "Navigating to route: " + encodedRoute);
+        Logger.d(Const.LOG_TAG_DOENIT, () -> "Navigating to route: " + encodedRoute);
         webView.post(() -> {
             try {
                 webView.evaluateJavascript(
@@ -114,7 +72,7 @@ public class Utils {
                                 "}",
                         null);
             } catch (Exception e) {
-                Log.e(Const.LOG_TAG_DOENIT, "Error navigating to route: " + encodedRoute, e);
+                Logger.e(Const.LOG_TAG_DOENIT, () -> "Error navigating to route: " + encodedRoute, e);
             }
         });
     }
@@ -126,7 +84,7 @@ public class Utils {
             editor.putString(name, data);
             editor.apply();
         } catch (Exception e) {
-            Log.e(Const.LOG_TAG_DOENIT_UTILS, "Error saving data", e);
+            Logger.e(Const.LOG_TAG_DOENIT_UTILS, "Error saving data", e);
         }
     }
 
@@ -135,7 +93,7 @@ public class Utils {
             SharedPreferences prefs = context.getSharedPreferences(Const.DB_NAME, Context.MODE_PRIVATE);
             return prefs.getString(name, null);
         } catch (Exception e) {
-            Log.e(Const.LOG_TAG_DOENIT_UTILS, "Error getting data", e);
+            Logger.e(Const.LOG_TAG_DOENIT_UTILS, "Error getting data", e);
             return null;
         }
     }
@@ -178,7 +136,7 @@ public class Utils {
             // Truncate to 64 characters (Google's max for obfuscatedAccountId)
             return hexString.substring(0, Math.min(64, hexString.length()));
         } catch (NoSuchAlgorithmException e) {
-            Log.e(TAG, "Failed to hash account ID", e);
+            Logger.e(TAG, "Failed to hash account ID", e);
             return null;
         }
     }
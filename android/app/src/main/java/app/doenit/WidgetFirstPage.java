@@ -0,0 +1,130 @@
+package doenit.app;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * The widget's first page of rows, projected when the snapshot is ingested, so
+ * a cold-started {@link TaskWidgetService} can show them without parsing and
+ * classifying the whole task list first.
+ *
+ * The record holds the first {@link WidgetPager#getPageSize(Context)} rows in
+ * section order (category names resolved, dates as epoch days), the total task
+ * count and the day it was classified on. It is only served on that day: after
+ * a rollover a task outside the page may have become overdue. The record lives
+ * in its own small preferences file, so reading it does not wait for the main
+ * one, which holds the full snapshot, to be parsed.
+ */
+public class WidgetFirstPage {
+    private static final String PREFS_NAME = "DoenitWidgetFirstPage";
+    private static final String KEY_PAGE = "page";
+
+    public static final class Page {
+        final TaskTable tasks;
+        final int total;
+
+        Page(TaskTable tasks, int total) {
+            this.tasks = tasks;
+            this.total = total;
+        }
+    }
+
+    /**
+     * Projects the first page of the given snapshot for today and stores it.
+     * Only factory-rendered widgets use the record, so it is dropped instead
+     * while the collection path renders a cold widget's first page.
+     */
+    public static void write(Context context, String tasksJson, String categoriesJson) {
+        if (TaskCollection.isEnabled(context) && WidgetPager.getPageSize(context) <= TaskCollection.MAX_ROWS) {
+            clear(context);
+            return;
+        }
+
+        try {
+            TaskTable tasks = new TaskTable();
+            tasks.load(tasksJson, categoriesJson);
+            int day = TaskUtil.today();
+            tasks.classify(day, null);
+            TaskSections sections = new TaskSections();
+            sections.rebuild(tasks);
+
+            int count = Math.min(tasks.size(), WidgetPager.getPageSize(context));
+            JSONArray rows = new JSONArray();
+            for (int position = 0; position < count; position++) {
+                int row = sections.entryAt(position, false);
+                JSONObject json = new JSONObject();
+                json.put("id", tasks.id(row));
+                json.put("name", tasks.name(row));
+                json.put("category", tasks.category(row));
+                json.put("start_day", tasks.startDay(row));
+                json.put("due_day", tasks.dueDay(row));
+                json.put("important", tasks.isImportant(row));
+                json.put("repeating", tasks.isRepeating(row));
+                rows.put(json);
+            }
+
+            JSONObject page = new JSONObject();
+            page.put("day", day);
+            page.put("total", tasks.size());
+            page.put("rows", rows);
+            getPrefs(context).edit().putString(KEY_PAGE, page.toString()).apply();
+            Logger.d(Const.LOG_TAG_DOENIT_WIDGET, () -> "Wrote widget first page of " + count + " row(s)");
+        } catch (JSONException e) {
+            Logger.e(Const.LOG_TAG_DOENIT_WIDGET, "Error writing widget first page", e);
+            clear(context);
+        }
+    }
+
+    /**
+     * Drops the record, e.g. when the snapshot is changed in a way that was
+     * not projected.
+     */
+    public static void clear(Context context) {
+        getPrefs(context).edit().remove(KEY_PAGE).apply();
+    }
+
+    /**
+     * @return The first page as a classified table, or null if there is none
+     *         for {@code today}.
+     */
+    public static Page read(Context context, int today) {
+        String json = getPrefs(context).getString(KEY_PAGE, null);
+        if (Utils.isEmpty(json)) {
+            return null;
+        }
+
+        try {
+            JSONObject page = new JSONObject(json);
+            if (page.getInt("day") != today) {
+                return null;
+            }
+
+            JSONArray rows = page.getJSONArray("rows");
+            TaskTable tasks = new TaskTable(rows.length());
+            for (int i = 0; i < rows.length(); i++) {
+                JSONObject row = rows.getJSONObject(i);
+                tasks.add(
+                        row.getString("id"),
+                        row.optString("name", ""),
+                        tasks.strings.intern(row.optString("category", "")),
+                        row.optInt("start_day", TaskTable.NO_DATE),
+                        row.optInt("due_day", TaskTable.NO_DATE),
+                        row.optBoolean("important", false),
+                        row.optBoolean("repeating", false));
+            }
+            tasks.classify(today, null);
+            return new Page(tasks, page.optInt("total", tasks.size()));
+        } catch (JSONException e) {
+            Logger.e(Const.LOG_TAG_DOENIT_WIDGET, "Error reading widget first page", e);
+            return null;
+        }
+    }
+
+    private static SharedPreferences getPrefs(Context context) {
+        return context.getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+}
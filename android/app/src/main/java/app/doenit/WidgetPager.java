@@ -0,0 +1,50 @@
+package doenit.app;
+
+import android.content.Context;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Tracks how many rows each widget instance currently shows. A widget starts
+ * with one page and every "show more" tap extends its window by another page.
+ * Windows live in memory only, so they fall back to a single page when the
+ * process is restarted.
+ */
+public class WidgetPager {
+    private static final Map<Integer, Integer> pages = new HashMap<>();
+
+    public static int getPageSize(Context context) {
+        int pageSize = WidgetSettings.getPageSize(context);
+        if (pageSize <= 0) {
+            return Const.DEFAULT_PAGE_SIZE;
+        }
+        return Math.min(pageSize, Const.MAX_PAGE_SIZE);
+    }
+
+    public static void setPageSize(Context context, int pageSize) {
+        WidgetSettings.setPageSize(context, pageSize);
+        resetAll();
+    }
+
+    /**
+     * @return The number of task rows inside the widget's current window.
+     */
+    public static synchronized int getWindowSize(Context context, int appWidgetId) {
+        Integer count = pages.get(appWidgetId);
+        return getPageSize(context) * (count != null ? count : 1);
+    }
+
+    public static synchronized void showMore(int appWidgetId) {
+        Integer count = pages.get(appWidgetId);
+        pages.put(appWidgetId, (count != null ? count : 1) + 1);
+    }
+
+    public static synchronized void reset(int appWidgetId) {
+        pages.remove(appWidgetId);
+    }
+
+    public static synchronized void resetAll() {
+        pages.clear();
+    }
+}
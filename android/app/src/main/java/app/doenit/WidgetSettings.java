@@ -0,0 +1,38 @@
+package doenit.app;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+/**
+ * Widget settings the app sets through the TaskWidget plugin. They live in
+ * their own preferences file, so they are not reset to their defaults when
+ * {@link DB#clearData()} wipes the widget's data.
+ */
+public class WidgetSettings {
+    private static final String PREFS_NAME = "DoenitWidgetSettings";
+    private static final String KEY_PAGE_SIZE = "page_size";
+    private static final String KEY_RENDER_MODE = "render_mode";
+
+    /**
+     * @return The stored page size, or 0 if none was set.
+     */
+    public static int getPageSize(Context context) {
+        return getPrefs(context).getInt(KEY_PAGE_SIZE, 0);
+    }
+
+    public static void setPageSize(Context context, int pageSize) {
+        getPrefs(context).edit().putInt(KEY_PAGE_SIZE, pageSize).apply();
+    }
+
+    public static String getRenderMode(Context context) {
+        return getPrefs(context).getString(KEY_RENDER_MODE, Const.RENDER_MODE_COLLECTION);
+    }
+
+    public static void setRenderMode(Context context, String mode) {
+        getPrefs(context).edit().putString(KEY_RENDER_MODE, mode).apply();
+    }
+
+    private static SharedPreferences getPrefs(Context context) {
+        return context.getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+}
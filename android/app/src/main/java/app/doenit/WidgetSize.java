@@ -0,0 +1,92 @@
+package doenit.app;
+
+import android.appwidget.AppWidgetManager;
+import android.content.Context;
+import android.os.Bundle;
+import android.util.SizeF;
+
+import doenit.app.R;
+
+/**
+ * Size buckets for the widget. Compact widgets use their own layouts, skip
+ * pills and icons and show at most {@link #COMPACT_MAX_ROWS} rows, so small
+ * widgets bind and send less.
+ *
+ * On API 31+ both variants are handed to the launcher as a
+ * {@code Map<SizeF, RemoteViews>} and it picks the largest one that fits;
+ * below that the bucket is chosen from the widget's reported options.
+ */
+public class WidgetSize {
+    public static final int FULL = 0;
+    public static final int COMPACT = 1;
+
+    public static final int COMPACT_MAX_ROWS = 5;
+
+    // Smallest size (dp) at which the full layout is used; matches the
+    // provider's minWidth/minHeight
+    private static final float FULL_MIN_WIDTH = 250f;
+    private static final float FULL_MIN_HEIGHT = 180f;
+    // Matches the provider's minResizeWidth/minResizeHeight
+    private static final float COMPACT_MIN_WIDTH = 180f;
+    private static final float COMPACT_MIN_HEIGHT = 110f;
+
+    public static final int[] BUCKETS = { COMPACT, FULL };
+
+    /**
+     * @return The smallest size at which the launcher should pick the
+     *         bucket's layout.
+     */
+    public static SizeF minSizeOf(int bucket) {
+        if (bucket == COMPACT) {
+            return new SizeF(COMPACT_MIN_WIDTH, COMPACT_MIN_HEIGHT);
+        }
+        return new SizeF(FULL_MIN_WIDTH, FULL_MIN_HEIGHT);
+    }
+
+    /**
+     * Picks the bucket from the widget's current options. Width is the
+     * portrait (minimum) width and height the portrait (maximum) height, as
+     * recommended for sizing widgets; unknown sizes count as full.
+     */
+    public static int bucketOf(Context context, int appWidgetId) {
+        Bundle options = AppWidgetManager.getInstance(context).getAppWidgetOptions(appWidgetId);
+        if (options == null) {
+            return FULL;
+        }
+
+        int width = options.getInt(AppWidgetManager.OPTION_APPWIDGET_MIN_WIDTH, 0);
+        int height = options.getInt(AppWidgetManager.OPTION_APPWIDGET_MAX_HEIGHT, 0);
+        if (width <= 0 || height <= 0) {
+            return FULL;
+        }
+
+        return width < FULL_MIN_WIDTH || height < FULL_MIN_HEIGHT ? COMPACT : FULL;
+    }
+
+    public static int widgetLayout(int bucket) {
+        return bucket == COMPACT ? R.layout.task_widget_compact : R.layout.task_widget;
+    }
+
+    /**
+     * @return How many task rows fit the bucket, given the widget's paging
+     *         window.
+     */
+    public static int rowLimit(int bucket, int windowSize) {
+        return bucket == COMPACT ? Math.min(windowSize, COMPACT_MAX_ROWS) : windowSize;
+    }
+
+    /**
+     * Compact widgets list their rows without section headers.
+     */
+    public static boolean showsSectionHeaders(int bucket) {
+        return bucket != COMPACT;
+    }
+
+    /**
+     * Compact widgets have no "show more" row; tapping the header opens the
+     * app instead.
+     */
+    public static boolean showsMoreRow(int bucket) {
+        return bucket != COMPACT;
+    }
+}
@@ -0,0 +1,394 @@
+package doenit.app;
+
+import android.app.job.JobInfo;
+import android.app.job.JobScheduler;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keeps the widget snapshot current from task deltas pushed over FCM, so edits
+ * made on another device show up without the WebView running.
+ *
+ * A delta is a data message (all values are strings, as FCM requires):
+ *
+ * <pre>
+ * type:     "widget_delta"
+ * revision: per-user counter, increasing with every change
+ * upserts:  JSON array of tasks, shaped like the ones sent to updateTasks
+ * removed:  JSON array of task IDs
+ * </pre>
+ *
+ * Deltas are persisted to a queue and applied by {@link WidgetSyncJobService}
+ * {@code COALESCE_MS} after the first one arrives: a burst of messages costs a
+ * single snapshot write and a single widget refresh. Deltas are applied in
+ * revision order and those at or below the last applied revision are dropped
+ * as duplicates. The queue and that revision live in their own preferences
+ * file: {@link DB#clearData()} must not make applied deltas look new again.
+ */
+public class WidgetSync {
+    public static final String MESSAGE_TYPE = "widget_delta";
+
+    private static final String PREFS_NAME = "DoenitWidgetSync";
+    private static final String KEY_QUEUE = "queue";
+    private static final String KEY_REVISION = "revision";
+    private static final long COALESCE_MS = 500;
+
+    // A stopped job's worker can still be draining when the retry starts
+    private static final Object drainLock = new Object();
+
+    public static final class Delta {
+        final long revision;
+        final JSONArray upserts;
+        final JSONArray removed;
+
+        Delta(long revision, JSONArray upserts, JSONArray removed) {
+            this.revision = revision;
+            this.upserts = upserts;
+            this.removed = removed;
+        }
+
+        JSONObject toJson() throws JSONException {
+            JSONObject json = new JSONObject();
+            json.put("revision", revision);
+            json.put("upserts", upserts);
+            json.put("removed", removed);
+            return json;
+        }
+
+        static Delta fromJson(JSONObject json) throws JSONException {
+            JSONArray upserts = json.optJSONArray("upserts");
+            JSONArray removed = json.optJSONArray("removed");
+            return new Delta(json.getLong("revision"),
+                    upserts != null ? upserts : new JSONArray(),
+                    removed != null ? removed : new JSONArray());
+        }
+    }
+
+    /**
+     * Parses a message's data payload.
+     *
+     * @return The delta, or null if the message is not a widget delta.
+     */
+    public static Delta parse(Map<String, String> data) throws JSONException {
+        if (data == null || !MESSAGE_TYPE.equals(data.get("type"))) {
+            return null;
+        }
+
+        String revision = data.get("revision");
+        if (Utils.isEmpty(revision)) {
+            throw new JSONException("Widget delta without revision");
+        }
+
+        String upserts = data.get("upserts");
+        String removed = data.get("removed");
+        try {
+            return new Delta(Long.parseLong(revision),
+                    Utils.isEmpty(upserts) ? new JSONArray() : new JSONArray(upserts),
+                    Utils.isEmpty(removed) ? new JSONArray() : new JSONArray(removed));
+        } catch (NumberFormatException e) {
+            throw new JSONException("Invalid widget delta revision: " + revision);
+        }
+    }
+
+    /**
+     * Entry point for every message source (FCM or the local fake one).
+     *
+     * @return Whether the message was a widget delta and has been queued.
+     */
+    public static boolean handle(Context context, Map<String, String> data) {
+        try {
+            Delta delta = parse(data);
+            if (delta == null) {
+                return false;
+            }
+
+            enqueue(context, delta);
+            return true;
+        } catch (JSONException e) {
+            Logger.e(Const.LOG_TAG_DOENIT_WIDGET, "Invalid widget delta", e);
+            Metrics.increment(Const.METRIC_WIDGET_SYNC_INVALID);
+            return true;
+        }
+    }
+
+    private static synchronized void enqueue(Context context, Delta delta) throws JSONException {
+        SharedPreferences prefs = getPrefs(context);
+        String queueJson = prefs.getString(KEY_QUEUE, null);
+        JSONArray queue = Utils.isEmpty(queueJson) ? new JSONArray() : new JSONArray(queueJson);
+
+        queue.put(delta.toJson());
+        // Written synchronously: the process may die right after the message
+        prefs.edit().putString(KEY_QUEUE, queue.toString()).commit();
+        Logger.d(Const.LOG_TAG_DOENIT_WIDGET, () -> "Queued widget delta " + delta.revision);
+
+        scheduleJob(context);
+    }
+
+    /**
+     * Reads the queue without removing it; entries are only dropped by
+     * {@link #removeThrough} once they are applied and saved, so a failed or
+     * killed drain retries them.
+     */
+    private static synchronized List<Delta> readQueue(Context context) {
+        String queueJson = getPrefs(context).getString(KEY_QUEUE, null);
+
+        List<Delta> deltas = new ArrayList<>();
+        if (Utils.isEmpty(queueJson)) {
+            return deltas;
+        }
+
+        try {
+            JSONArray queue = new JSONArray(queueJson);
+            for (int i = 0; i < queue.length(); i++) {
+                deltas.add(Delta.fromJson(queue.getJSONObject(i)));
+            }
+        } catch (JSONException e) {
+            // Entries were validated when queued, so this queue can never be
+            // applied; drop it rather than retry it forever
+            Logger.e(Const.LOG_TAG_DOENIT_WIDGET, "Error reading widget delta queue, dropping it", e);
+            getPrefs(context).edit().remove(KEY_QUEUE).commit();
+            deltas.clear();
+        }
+        return deltas;
+    }
+
+    /**
+     * Drops the queued deltas at or below {@code revision}, keeping any that
+     * arrived while the drain ran.
+     */
+    private static synchronized void removeThrough(Context context, long revision) throws JSONException {
+        SharedPreferences prefs = getPrefs(context);
+        String queueJson = prefs.getString(KEY_QUEUE, null);
+        if (Utils.isEmpty(queueJson)) {
+            return;
+        }
+
+        JSONArray queue = new JSONArray(queueJson);
+        JSONArray remaining = new JSONArray();
+        for (int i = 0; i < queue.length(); i++) {
+            JSONObject delta = queue.getJSONObject(i);
+            if (delta.getLong("revision") > revision) {
+                remaining.put(delta);
+            }
+        }
+
+        if (remaining.length() == 0) {
+            prefs.edit().remove(KEY_QUEUE).commit();
+        } else {
+            prefs.edit().putString(KEY_QUEUE, remaining.toString()).commit();
+        }
+    }
+
+    /**
+     * @return The revision of the last delta applied and saved, or 0.
+     */
+    static synchronized long getRevision(Context context) {
+        return getPrefs(context).getLong(KEY_REVISION, 0);
+    }
+
+    private static synchronized void saveRevision(Context context, long revision) {
+        getPrefs(context).edit().putLong(KEY_REVISION, revision).commit();
+    }
+
+    static synchronized boolean hasQueued(Context context) {
+        return getPrefs(context).contains(KEY_QUEUE);
+    }
+
+    private static SharedPreferences getPrefs(Context context) {
+        return context.getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * Schedules the drain unless it is already pending; rescheduling would
+     * push it back with every message of a burst.
+     */
+    private static void scheduleJob(Context context) {
+        JobScheduler scheduler = (JobScheduler) context.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+        if (scheduler == null) {
+            return;
+        }
+        for (JobInfo pending : scheduler.getAllPendingJobs()) {
+            if (pending.getId() == Const.JOB_WIDGET_SYNC) {
+                return;
+            }
+        }
+        schedule(context, scheduler);
+    }
+
+    /**
+     * Schedules another drain if deltas are still queued. Called after a job
+     * finished: a delta enqueued between its last check and jobFinished saw
+     * the job as pending and did not schedule one.
+     */
+    static void rescheduleIfQueued(Context context) {
+        if (!hasQueued(context)) {
+            return;
+        }
+
+        JobScheduler scheduler = (JobScheduler) context.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+        if (scheduler != null) {
+            schedule(context, scheduler);
+        }
+    }
+
+    private static void schedule(Context context, JobScheduler scheduler) {
+        JobInfo job = new JobInfo.Builder(Const.JOB_WIDGET_SYNC,
+                new ComponentName(context, WidgetSyncJobService.class))
+                .setMinimumLatency(COALESCE_MS)
+                .setOverrideDeadline(COALESCE_MS * 2)
+                .build();
+        scheduler.schedule(job);
+    }
+
+    /**
+     * Applies every queued delta to the snapshot and refreshes the widgets
+     * once. Runs on the job's worker thread. The deltas leave the queue only
+     * once the snapshot and the revision are on disk.
+     *
+     * @return False if the deltas could not be applied; they stay queued.
+     */
+    static boolean drain(Context context) {
+        synchronized (drainLock) {
+            return drainLocked(context);
+        }
+    }
+
+    private static boolean drainLocked(Context context) {
+        Tracer.Span span = Tracer.begin("WidgetSync.drain");
+        long start = Metrics.start();
+        try {
+            DB.init(context);
+            List<Delta> deltas = readQueue(context);
+            if (deltas.isEmpty()) {
+                return true;
+            }
+
+            String tasksJson = DB.getString(Const.WIDGET_TASKS);
+            JSONArray snapshot = Utils.isEmpty(tasksJson) ? new JSONArray() : new JSONArray(tasksJson);
+            List<JSONObject> tasks = new ArrayList<>(snapshot.length());
+            for (int i = 0; i < snapshot.length(); i++) {
+                tasks.add(snapshot.getJSONObject(i));
+            }
+
+            long lastRevision = getRevision(context);
+            long revision = apply(tasks, deltas, lastRevision);
+            Metrics.add(Const.METRIC_WIDGET_SYNC_DELTAS, deltas.size());
+            if (revision == lastRevision) {
+                Logger.d(Const.LOG_TAG_DOENIT_WIDGET, "Only stale widget deltas, nothing to apply");
+                removeThrough(context, revision);
+                return true;
+            }
+
+            TaskWidgetProvider.updateTasksData(context, new JSONArray(tasks).toString(),
+                    DB.getString(Const.WIDGET_CATEGORIES, "{}"));
+            if (!DB.flushNow()) {
+                Logger.e(Const.LOG_TAG_DOENIT_WIDGET, "Widget deltas applied but not saved, keeping them queued");
+                return false;
+            }
+
+            saveRevision(context, revision);
+            removeThrough(context, revision);
+            Logger.d(Const.LOG_TAG_DOENIT_WIDGET,
+                    () -> "Applied " + deltas.size() + " widget delta(s) up to revision " + revision);
+            return true;
+        } catch (JSONException e) {
+            Logger.e(Const.LOG_TAG_DOENIT_WIDGET, "Error applying widget deltas", e);
+            return false;
+        } finally {
+            Metrics.stop(Const.METRIC_WIDGET_SYNC, start);
+            span.end();
+        }
+    }
+
+    /**
+     * Applies the deltas newer than {@code lastRevision} to the task list in
+     * revision order. Upserted tasks keep their position when they exist and
+     * are inserted by date otherwise; archived tasks are removed, since the
+     * widget only shows active ones.
+     *
+     * @return The highest revision applied, or {@code lastRevision} if none
+     *         was newer.
+     */
+    static long apply(List<JSONObject> tasks, List<Delta> deltas, long lastRevision) throws JSONException {
+        List<Delta> ordered = new ArrayList<>(deltas);
+        Collections.sort(ordered, (a, b) -> Long.compare(a.revision, b.revision));
+
+        long revision = lastRevision;
+        for (Delta delta : ordered) {
+            if (delta.revision <= revision) {
+                Metrics.increment(Const.METRIC_WIDGET_SYNC_STALE);
+                continue;
+            }
+
+            Set<String> removed = new HashSet<>();
+            for (int i = 0; i < delta.removed.length(); i++) {
+                removed.add(delta.removed.getString(i));
+            }
+
+            for (int i = 0; i < delta.upserts.length(); i++) {
+                JSONObject task = delta.upserts.getJSONObject(i);
+                String id = task.optString("id", "");
+                if (id.isEmpty()) {
+                    continue;
+                }
+                if (task.optBoolean("archived", false)) {
+                    removed.add(id);
+                    continue;
+                }
+
+                int index = indexOf(tasks, id);
+                if (index >= 0) {
+                    tasks.set(index, task);
+                } else {
+                    tasks.add(insertionIndex(tasks, task), task);
+                }
+            }
+
+            if (!removed.isEmpty()) {
+                tasks.removeIf(task -> removed.contains(task.optString("id", "")));
+            }
+            revision = delta.revision;
+        }
+        return revision;
+    }
+
+    private static int indexOf(List<JSONObject> tasks, String id) {
+        for (int i = 0; i < tasks.size(); i++) {
+            if (id.equals(tasks.get(i).optString("id", ""))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Same placement as {@link TaskWidgetProvider#addTask}: before the first
+     * task dated after it, undated tasks last.
+     */
+    private static int insertionIndex(List<JSONObject> tasks, JSONObject task) {
+        int day = TaskWidgetProvider.dateDayOf(task);
+        if (day == TaskTable.NO_DATE) {
+            return tasks.size();
+        }
+
+        for (int i = 0; i < tasks.size(); i++) {
+            int other = TaskWidgetProvider.dateDayOf(tasks.get(i));
+            if (other == TaskTable.NO_DATE || other > day) {
+                return i;
+            }
+        }
+        return tasks.size();
+    }
+}
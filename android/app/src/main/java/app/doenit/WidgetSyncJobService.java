@@ -0,0 +1,42 @@
+package doenit.app;
+
+import android.app.job.JobParameters;
+import android.app.job.JobService;
+
+/**
+ * Background job that applies the queued FCM widget deltas; see
+ * {@link WidgetSync}. Runs the work off the main thread and finishes once
+ * the snapshot is written.
+ */
+public class WidgetSyncJobService extends JobService {
+
+    @Override
+    public boolean onStartJob(JobParameters params) {
+        Thread worker = new Thread(() -> {
+            boolean applied = false;
+            try {
+                // Deltas arriving while a drain runs do not schedule another
+                // job, so keep draining until the queue stays empty
+                do {
+                    applied = WidgetSync.drain(getApplicationContext());
+                } while (applied && WidgetSync.hasQueued(getApplicationContext()));
+                // The process may be stopped once the job finishes
+                DB.flushNow();
+            } finally {
+                // A failed drain left its deltas queued; retry with backoff
+                jobFinished(params, !applied);
+            }
+            if (applied) {
+                WidgetSync.rescheduleIfQueued(getApplicationContext());
+            }
+        }, "DoenitWidgetSync");
+        worker.start();
+        return true;
+    }
+
+    @Override
+    public boolean onStopJob(JobParameters params) {
+        // Retry, so deltas still in the queue are applied later
+        return true;
+    }
+}
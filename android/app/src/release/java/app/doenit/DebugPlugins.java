@@ -0,0 +1,15 @@
+package doenit.app;
+
+import com.getcapacitor.Plugin;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Release builds register no debug plugins; see the debug source set's copy.
+ */
+class DebugPlugins {
+    static List<Class<? extends Plugin>> all() {
+        return Collections.emptyList();
+    }
+}
@@ -0,0 +1,151 @@
+package doenit.app;
+
+import static org.junit.Assert.assertEquals;
+
+import android.content.Context;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.android.billingclient.api.BillingClient.BillingResponseCode;
+import com.android.billingclient.api.BillingResult;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@link AcknowledgementQueue} against a gateway whose acknowledgements are
+ * answered by the test, one request at a time.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 30)
+public class AcknowledgementQueueTest {
+    private static final String TOKEN = "token-1";
+    private static final long DAY_MS = 24 * 60 * 60 * 1000;
+
+    private final Context context = ApplicationProvider.getApplicationContext();
+    private final FakeBillingGateway gateway = new FakeBillingGateway().connected().holdAcknowledgements();
+    private AcknowledgementQueue queue;
+
+    @Before
+    public void setUp() {
+        queue = reload();
+    }
+
+    @After
+    public void tearDown() {
+        gateway.shutdown();
+    }
+
+    @Test
+    public void sharesOneRequestPerToken() {
+        List<BillingResult> first = new ArrayList<>();
+        List<BillingResult> second = new ArrayList<>();
+        queue.add(TOKEN, System.currentTimeMillis(), first::add);
+        queue.add(TOKEN, 0, second::add);
+        queue.drain();
+        queue.drain();
+
+        assertEquals(1, queue.size());
+        assertEquals(1, gateway.heldAcknowledgements().size());
+
+        gateway.answerAcknowledgement(0, BillingResponseCode.OK);
+        assertEquals(1, first.size());
+        assertEquals(1, second.size());
+        assertEquals(BillingResponseCode.OK, second.get(0).getResponseCode());
+        assertEquals(0, queue.size());
+    }
+
+    @Test
+    public void keepsTokensAcrossRestart() {
+        queue.attach(null);
+        queue.add(TOKEN, System.currentTimeMillis(), null);
+        queue.drain();
+        assertEquals(0, gateway.heldAcknowledgements().size());
+
+        AcknowledgementQueue restarted = reload();
+        assertEquals(1, restarted.size());
+        restarted.drain();
+        assertEquals(1, gateway.heldAcknowledgements().size());
+        assertEquals(TOKEN, gateway.heldAcknowledgements().get(0));
+    }
+
+    @Test
+    public void backsOffAfterFailureUntilCallerJoins() {
+        List<BillingResult> results = new ArrayList<>();
+        queue.add(TOKEN, System.currentTimeMillis(), results::add);
+        queue.drain();
+        gateway.answerAcknowledgement(0, BillingResponseCode.SERVICE_UNAVAILABLE);
+
+        assertEquals(1, results.size());
+        assertEquals(BillingResponseCode.SERVICE_UNAVAILABLE, results.get(0).getResponseCode());
+        assertEquals(1, queue.size());
+
+        // Not due yet, here or after a restart
+        queue.drain();
+        AcknowledgementQueue restarted = reload();
+        restarted.drain();
+        assertEquals(1, gateway.heldAcknowledgements().size());
+
+        restarted.add(TOKEN, 0, results::add);
+        restarted.drain();
+        assertEquals(2, gateway.heldAcknowledgements().size());
+
+        gateway.answerAcknowledgement(1, BillingResponseCode.OK);
+        assertEquals(2, results.size());
+        assertEquals(0, restarted.size());
+    }
+
+    @Test
+    public void givesUpWhenPlayRejectsToken() {
+        queue.add(TOKEN, System.currentTimeMillis(), null);
+        queue.drain();
+        gateway.answerAcknowledgement(0, BillingResponseCode.ITEM_NOT_OWNED);
+
+        assertEquals(0, queue.size());
+        assertEquals(0, reload().size());
+    }
+
+    @Test
+    public void givesUpOnceAcknowledgementWindowHasPassed() {
+        long now = System.currentTimeMillis();
+        queue.add(TOKEN, now - 4 * DAY_MS, null);
+        queue.add("token-2", now - DAY_MS, null);
+        queue.drain();
+        gateway.answerAcknowledgement(0, BillingResponseCode.SERVICE_UNAVAILABLE);
+        gateway.answerAcknowledgement(1, BillingResponseCode.SERVICE_UNAVAILABLE);
+
+        // Only the purchase made within the last three days is kept
+        assertEquals(1, queue.size());
+        assertEquals("token-2", gateway.heldAcknowledgements().get(1));
+    }
+
+    @Test
+    public void limitsRequestsInFlight() {
+        for (int i = 0; i < 8; i++) {
+            queue.add("token-" + i, System.currentTimeMillis(), null);
+        }
+        queue.drain();
+        assertEquals(5, gateway.heldAcknowledgements().size());
+
+        gateway.answerAcknowledgement(0, BillingResponseCode.OK);
+        assertEquals(6, gateway.heldAcknowledgements().size());
+        assertEquals(7, queue.size());
+    }
+
+    /**
+     * A fresh queue read from the shared preferences file, as a restarted
+     * process would load it.
+     */
+    private AcknowledgementQueue reload() {
+        AcknowledgementQueue loaded = new AcknowledgementQueue(context);
+        loaded.attach(gateway);
+        return loaded;
+    }
+}
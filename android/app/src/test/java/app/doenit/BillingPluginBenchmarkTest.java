@@ -0,0 +1,272 @@
+package doenit.app;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.os.Looper;
+
+import androidx.appcompat.app.AppCompatActivity;
+
+import com.getcapacitor.Bridge;
+import com.getcapacitor.JSArray;
+import com.getcapacitor.JSObject;
+
+import org.json.JSONException;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end latency of {@link BillingPlugin} calls against
+ * {@link FakeBillingGateway}, and how often the plugin reconnects on the way.
+ *
+ * Each scenario initializes a fresh plugin, then issues a mix of
+ * queryProducts, queryPurchases, acknowledgePurchase and startPurchase calls,
+ * one at a time or in bursts, and times each call from the plugin method to
+ * its resolve or reject. The report (calls, failures, p50/p95/max latency,
+ * connection attempts, plugin reconnects, dropped connections) is written to
+ * build/reports/billing-benchmark.txt and included in the failure message.
+ *
+ * Sequential scenarios must resolve every call, however often the connection
+ * drops or Play is unavailable for fewer attempts than the plugin retries.
+ * Bursts are only measured: concurrent reconnects can fail each other. In a
+ * burst, startPurchase calls for the same product share one billing flow.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 30)
+public class BillingPluginBenchmarkTest {
+    private static final String ACCOUNT_ID = "account-hash";
+    private static final String PRODUCT_ID = "doenit_premium";
+    private static final long CALL_TIMEOUT_MS = 30_000;
+
+    private static final String[] MIX = {
+            "queryProducts", "queryPurchases", "acknowledgePurchase", "startPurchase"
+    };
+
+    private static final class Scenario {
+        final String name;
+        final FakeBillingGateway gateway;
+        final int calls;
+        final int burst;
+
+        /**
+         * @param burst Calls issued before waiting for any of them; 1 runs
+         *              the calls one at a time
+         */
+        Scenario(String name, FakeBillingGateway gateway, int calls, int burst) {
+            this.name = name;
+            this.gateway = gateway;
+            this.calls = calls;
+            this.burst = burst;
+        }
+    }
+
+    private static final class Result {
+        final Scenario scenario;
+        final long[] nanos;
+        final int failed;
+        final int timedOut;
+        final long reconnects;
+        final List<String> errors;
+
+        Result(Scenario scenario, long[] nanos, int failed, int timedOut, long reconnects, List<String> errors) {
+            this.scenario = scenario;
+            this.nanos = nanos;
+            this.failed = failed;
+            this.timedOut = timedOut;
+            this.reconnects = reconnects;
+            this.errors = errors;
+        }
+    }
+
+    private final List<FakeBillingGateway> gateways = new ArrayList<>();
+
+    @After
+    public void tearDown() {
+        BillingPlugin.setGatewayFactory(null);
+        for (FakeBillingGateway gateway : gateways) {
+            gateway.shutdown();
+        }
+    }
+
+    @Test
+    public void billingCallsSurviveDisconnectsAndStorms() throws Exception {
+        AppCompatActivity activity = Robolectric.buildActivity(AppCompatActivity.class).create().get();
+        Bridge bridge = mock(Bridge.class);
+        when(bridge.getActivity()).thenReturn(activity);
+        when(bridge.getContext()).thenReturn(activity);
+
+        List<Scenario> scenarios = Arrays.asList(
+                new Scenario("steady", gateway(1000).setLatency(10, 5), 40, 1),
+                new Scenario("large_list", gateway(10000).setLatency(10, 5), 12, 1),
+                new Scenario("disconnects", gateway(1000).setLatency(10, 5).disconnectEvery(5), 40, 1),
+                new Scenario("storms", gateway(1000).setLatency(10, 5).disconnectEvery(25)
+                        .stormAfterDisconnect(2), 20, 1),
+                new Scenario("bursts", gateway(1000).setLatency(10, 10).disconnectEvery(15), 40, 10));
+
+        List<Result> results = new ArrayList<>();
+        for (Scenario scenario : scenarios) {
+            results.add(run(bridge, scenario));
+        }
+
+        List<String> problems = new ArrayList<>();
+        PerfReport report = new PerfReport();
+        report.line("%-12s %6s %7s %8s %8s %8s %9s %11s %12s%n",
+                "scenario", "calls", "failed", "p50 ms", "p95 ms", "max ms", "connects", "reconnects",
+                "disconnects");
+        for (Result result : results) {
+            Scenario scenario = result.scenario;
+            report.line("%-12s %6d %7d %8.1f %8.1f %8.1f %9d %11d %12d%n",
+                    scenario.name, scenario.calls, result.failed + result.timedOut,
+                    percentileMillis(result.nanos, 0.50), percentileMillis(result.nanos, 0.95),
+                    percentileMillis(result.nanos, 1.0),
+                    scenario.gateway.connectionAttempts(), result.reconnects, scenario.gateway.disconnects());
+
+            if (result.timedOut > 0) {
+                problems.add(scenario.name + ": " + result.timedOut + " call(s) never settled");
+            }
+            if (scenario.burst == 1 && result.failed > 0) {
+                problems.add(scenario.name + ": " + result.failed + " call(s) failed: " + result.errors);
+            }
+        }
+
+        report.write("billing-benchmark.txt");
+        report.failIf(problems, "Billing benchmark failed");
+
+        Result steady = results.get(0);
+        assertEquals("Reconnects without a dropped connection", 0, steady.reconnects);
+    }
+
+    /**
+     * A gateway selling one subscription, with {@code purchases} purchases of
+     * which half belong to the queried account.
+     */
+    private FakeBillingGateway gateway(int purchases) throws JSONException {
+        FakeBillingGateway gateway = new FakeBillingGateway()
+                .addSubscription(PRODUCT_ID, "Doenit Premium", "€1,99", 1_990_000)
+                .addPurchases(purchases / 2, PRODUCT_ID, ACCOUNT_ID)
+                .addPurchases(purchases - purchases / 2, PRODUCT_ID, "other-account");
+        gateways.add(gateway);
+        return gateway;
+    }
+
+    private Result run(Bridge bridge, Scenario scenario) throws Exception {
+        BillingPlugin.setGatewayFactory(scenario.gateway.factory());
+        BillingPlugin plugin = new BillingPlugin();
+        plugin.setBridge(bridge);
+
+        RecordingCall init = new RecordingCall("BillingService", "initialize", new JSObject());
+        plugin.initialize(init);
+        if (!await(init) || init.rejected != null) {
+            fail(scenario.name + ": initialize failed: " + init.rejected);
+        }
+
+        Metrics.reset();
+        long[] nanos = new long[scenario.calls];
+        int failed = 0;
+        int timedOut = 0;
+        List<String> errors = new ArrayList<>();
+
+        for (int first = 0; first < scenario.calls; first += scenario.burst) {
+            int last = Math.min(scenario.calls, first + scenario.burst);
+            RecordingCall[] calls = new RecordingCall[last - first];
+            long[] started = new long[calls.length];
+
+            for (int i = 0; i < calls.length; i++) {
+                String method = MIX[(first + i) % MIX.length];
+                calls[i] = new RecordingCall("BillingService", method, arguments(method, first + i));
+                started[i] = System.nanoTime();
+                invoke(plugin, method, calls[i]);
+            }
+
+            for (int i = 0; i < calls.length; i++) {
+                RecordingCall call = calls[i];
+                if (!await(call)) {
+                    timedOut++;
+                    nanos[first + i] = TimeUnit.MILLISECONDS.toNanos(CALL_TIMEOUT_MS);
+                    continue;
+                }
+
+                nanos[first + i] = call.settledNanos - started[i];
+                if (call.rejected != null) {
+                    failed++;
+                    errors.add(call.getMethodName() + ": " + call.rejectedCode);
+                }
+            }
+        }
+
+        long reconnects = Metrics.snapshot().getJSONObject("counters")
+                .optLong(Const.METRIC_BILLING_RECONNECT, 0);
+        return new Result(scenario, nanos, failed, timedOut, reconnects, errors);
+    }
+
+    private static JSObject arguments(String method, int index) {
+        JSObject data = new JSObject();
+        switch (method) {
+            case "queryProducts":
+                JSArray productIds = new JSArray();
+                productIds.put(PRODUCT_ID);
+                data.put("product_ids", productIds);
+                break;
+            case "acknowledgePurchase":
+                data.put("purchase_token", "token-" + PRODUCT_ID + "-" + index);
+                break;
+            default:
+                data.put("product_id", PRODUCT_ID);
+                data.put("account_id", ACCOUNT_ID);
+                break;
+        }
+        return data;
+    }
+
+    private static void invoke(BillingPlugin plugin, String method, RecordingCall call) {
+        switch (method) {
+            case "queryProducts":
+                plugin.queryProducts(call);
+                break;
+            case "queryPurchases":
+                plugin.queryPurchases(call);
+                break;
+            case "acknowledgePurchase":
+                plugin.acknowledgePurchase(call);
+                break;
+            case "startPurchase":
+                plugin.startPurchase(call);
+                break;
+            default:
+                throw new IllegalArgumentException(method);
+        }
+    }
+
+    /**
+     * Waits for the call to settle, running main-thread work (the gateway's
+     * answers and the plugin's connection retries) in the meantime.
+     *
+     * @return False if it did not settle within {@code CALL_TIMEOUT_MS}.
+     */
+    private static boolean await(RecordingCall call) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(CALL_TIMEOUT_MS);
+        while (System.nanoTime() < deadline) {
+            shadowOf(Looper.getMainLooper()).idle();
+            if (call.await(2, TimeUnit.MILLISECONDS)) {
+                return true;
+            }
+        }
+        return call.isSettled();
+    }
+
+    private static double percentileMillis(long[] nanos, double quantile) {
+        return PerfReport.millis(PerfReport.percentile(nanos, quantile));
+    }
+}
@@ -0,0 +1,399 @@
+package doenit.app;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import android.app.Activity;
+import android.os.Handler;
+import android.os.Looper;
+
+import com.android.billingclient.api.AcknowledgePurchaseResponseListener;
+import com.android.billingclient.api.BillingClient.BillingResponseCode;
+import com.android.billingclient.api.BillingClientStateListener;
+import com.android.billingclient.api.BillingResult;
+import com.android.billingclient.api.ProductDetails;
+import com.android.billingclient.api.ProductDetailsResponseListener;
+import com.android.billingclient.api.Purchase;
+import com.android.billingclient.api.PurchasesResponseListener;
+import com.android.billingclient.api.PurchasesUpdatedListener;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Scriptable stand-in for Play Billing, for driving {@link BillingPlugin} on
+ * the JVM.
+ *
+ * Every answer is posted to the main looper after the configured latency, as
+ * Play delivers its answers on the main thread, so the test runs them by
+ * idling that looper and the plugin never sees two at once. The script
+ * can drop the connection after every n-th operation, make the next
+ * connection attempts fail with SERVICE_UNAVAILABLE (a storm), and fill the
+ * account with any number of purchases. Connection attempts are counted so a
+ * run can report how often the plugin had to reconnect.
+ *
+ * With {@link #holdAcknowledgements()} acknowledgements are not answered by
+ * the script but held until the test answers each one with the response
+ * code it wants, on the calling thread.
+ */
+class FakeBillingGateway implements BillingGateway {
+    private static final int DISCONNECTED = 0;
+    private static final int CONNECTING = 1;
+    private static final int CONNECTED = 2;
+
+    // Only waits out the latency; answers run on the main looper
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+    private final Handler main = new Handler(Looper.getMainLooper());
+    private final Random random = new Random(42);
+    private final Map<String, ProductDetails> products = new ConcurrentHashMap<>();
+    private final List<Purchase> purchases = new CopyOnWriteArrayList<>();
+    private final Set<String> acknowledged = ConcurrentHashMap.newKeySet();
+    private final List<HeldAcknowledgement> held = new CopyOnWriteArrayList<>();
+
+    private final AtomicInteger state = new AtomicInteger(DISCONNECTED);
+    private final AtomicInteger storm = new AtomicInteger();
+    private final AtomicInteger operations = new AtomicInteger();
+    private final AtomicInteger connectionAttempts = new AtomicInteger();
+    private final AtomicInteger disconnects = new AtomicInteger();
+    private final AtomicInteger purchaseCount = new AtomicInteger();
+
+    private volatile long latencyMs;
+    private volatile long jitterMs;
+    private volatile int disconnectEvery;
+    private volatile int stormAfterDisconnect;
+    private volatile boolean holdAcknowledgements;
+    private volatile BillingClientStateListener connectionListener;
+    private volatile PurchasesUpdatedListener updatesListener;
+
+    /**
+     * @return A factory handing out this gateway, for
+     *         {@link BillingPlugin#setGatewayFactory}.
+     */
+    BillingGateway.Factory factory() {
+        return (activity, listener) -> {
+            updatesListener = listener;
+            return this;
+        };
+    }
+
+    /**
+     * Every answer is delayed by {@code latencyMs} plus up to
+     * {@code jitterMs}.
+     */
+    FakeBillingGateway setLatency(long latencyMs, long jitterMs) {
+        this.latencyMs = latencyMs;
+        this.jitterMs = jitterMs;
+        return this;
+    }
+
+    /**
+     * Drops the connection after every {@code operations} answered
+     * operations; 0 keeps it up.
+     */
+    FakeBillingGateway disconnectEvery(int operations) {
+        this.disconnectEvery = operations;
+        return this;
+    }
+
+    /**
+     * Fails the next {@code attempts} connection attempts with
+     * SERVICE_UNAVAILABLE.
+     */
+    FakeBillingGateway serviceUnavailableStorm(int attempts) {
+        storm.set(attempts);
+        return this;
+    }
+
+    /**
+     * Starts a storm of {@code attempts} failed connection attempts every
+     * time the connection drops.
+     */
+    FakeBillingGateway stormAfterDisconnect(int attempts) {
+        this.stormAfterDisconnect = attempts;
+        return this;
+    }
+
+    /**
+     * Starts out connected, for callers that never set up a connection
+     * themselves.
+     */
+    FakeBillingGateway connected() {
+        state.set(CONNECTED);
+        return this;
+    }
+
+    /**
+     * Holds every acknowledgement until {@link #answerAcknowledgement} is
+     * called for it, instead of answering OK after the latency.
+     */
+    FakeBillingGateway holdAcknowledgements() {
+        this.holdAcknowledgements = true;
+        return this;
+    }
+
+    FakeBillingGateway addSubscription(String productId, String title, String formattedPrice, long priceMicros) {
+        ProductDetails.PricingPhase phase = mock(ProductDetails.PricingPhase.class);
+        when(phase.getFormattedPrice()).thenReturn(formattedPrice);
+        when(phase.getPriceAmountMicros()).thenReturn(priceMicros);
+        when(phase.getPriceCurrencyCode()).thenReturn("EUR");
+
+        ProductDetails.PricingPhases phases = mock(ProductDetails.PricingPhases.class);
+        when(phases.getPricingPhaseList()).thenReturn(Collections.singletonList(phase));
+
+        ProductDetails.SubscriptionOfferDetails offer = mock(ProductDetails.SubscriptionOfferDetails.class);
+        when(offer.getOfferToken()).thenReturn("offer-" + productId);
+        when(offer.getPricingPhases()).thenReturn(phases);
+
+        ProductDetails details = mock(ProductDetails.class);
+        when(details.getProductId()).thenReturn(productId);
+        when(details.getTitle()).thenReturn(title);
+        when(details.getDescription()).thenReturn(title + " subscription");
+        when(details.getSubscriptionOfferDetails()).thenReturn(Collections.singletonList(offer));
+
+        products.put(productId, details);
+        return this;
+    }
+
+    /**
+     * Adds {@code count} purchased, already acknowledged subscriptions of a
+     * product, tagged with an obfuscated account ID.
+     */
+    FakeBillingGateway addPurchases(int count, String productId, String accountId) throws JSONException {
+        for (int i = 0; i < count; i++) {
+            purchases.add(purchase(productId, accountId, true));
+        }
+        return this;
+    }
+
+    int connectionAttempts() {
+        return connectionAttempts.get();
+    }
+
+    int disconnects() {
+        return disconnects.get();
+    }
+
+    boolean isAcknowledged(String purchaseToken) {
+        return acknowledged.contains(purchaseToken);
+    }
+
+    /**
+     * @return The tokens of all held acknowledgements, answered or not, in
+     *         the order they were requested.
+     */
+    List<String> heldAcknowledgements() {
+        List<String> tokens = new ArrayList<>();
+        for (HeldAcknowledgement acknowledgement : held) {
+            tokens.add(acknowledgement.token);
+        }
+        return tokens;
+    }
+
+    /**
+     * Answers the {@code index}-th held acknowledgement with {@code code}.
+     */
+    void answerAcknowledgement(int index, int code) {
+        HeldAcknowledgement acknowledgement = held.get(index);
+        if (code == BillingResponseCode.OK) {
+            acknowledged.add(acknowledgement.token);
+        }
+        acknowledgement.listener.onAcknowledgePurchaseResponse(result(code, "Answered by test"));
+    }
+
+    void shutdown() {
+        timer.shutdownNow();
+    }
+
+    @Override
+    public void startConnection(BillingClientStateListener listener) {
+        connectionAttempts.incrementAndGet();
+        connectionListener = listener;
+
+        // As Play's client: connected answers OK at once, a second attempt
+        // while one is in flight is a developer error
+        if (state.get() == CONNECTED) {
+            listener.onBillingSetupFinished(result(BillingResponseCode.OK, ""));
+            return;
+        }
+        if (!state.compareAndSet(DISCONNECTED, CONNECTING)) {
+            listener.onBillingSetupFinished(result(BillingResponseCode.DEVELOPER_ERROR,
+                    "Client is already in the process of connecting to billing service."));
+            return;
+        }
+
+        later(() -> {
+            if (storm.getAndUpdate(remaining -> Math.max(0, remaining - 1)) > 0) {
+                state.set(DISCONNECTED);
+                listener.onBillingSetupFinished(result(BillingResponseCode.SERVICE_UNAVAILABLE,
+                        "Service unavailable (scripted)"));
+                return;
+            }
+
+            state.set(CONNECTED);
+            listener.onBillingSetupFinished(result(BillingResponseCode.OK, ""));
+        });
+    }
+
+    @Override
+    public boolean isReady() {
+        return state.get() == CONNECTED;
+    }
+
+    @Override
+    public void endConnection() {
+        state.set(DISCONNECTED);
+    }
+
+    @Override
+    public void queryProductDetails(String productType, List<String> productIds,
+            ProductDetailsResponseListener listener) {
+        answer(() -> {
+            List<ProductDetails> found = new ArrayList<>();
+            for (String productId : productIds) {
+                ProductDetails details = products.get(productId);
+                if (details != null) {
+                    found.add(details);
+                }
+            }
+            listener.onProductDetailsResponse(result(BillingResponseCode.OK, ""), found);
+        }, () -> listener.onProductDetailsResponse(disconnected(), Collections.emptyList()));
+    }
+
+    @Override
+    public void queryPurchases(String productType, PurchasesResponseListener listener) {
+        answer(() -> {
+            List<Purchase> owned = new ArrayList<>(purchases);
+            listener.onQueryPurchasesResponse(result(BillingResponseCode.OK, ""), owned);
+        }, () -> listener.onQueryPurchasesResponse(disconnected(), Collections.emptyList()));
+    }
+
+    @Override
+    public void acknowledgePurchase(String purchaseToken, AcknowledgePurchaseResponseListener listener) {
+        if (holdAcknowledgements) {
+            held.add(new HeldAcknowledgement(purchaseToken, listener));
+            return;
+        }
+
+        answer(() -> {
+            acknowledged.add(purchaseToken);
+            listener.onAcknowledgePurchaseResponse(result(BillingResponseCode.OK, ""));
+        }, () -> listener.onAcknowledgePurchaseResponse(disconnected()));
+    }
+
+    /**
+     * Opens no UI: the purchase is delivered to the plugin's update listener
+     * after the configured latency, as if the user bought it at once.
+     */
+    @Override
+    public BillingResult launchBillingFlow(Activity activity, ProductDetails details, String offerToken,
+            String accountId) {
+        if (!isReady()) {
+            return disconnected();
+        }
+
+        answer(() -> {
+            Purchase purchase = purchase(details.getProductId(), accountId, false);
+            purchases.add(purchase);
+            updatesListener.onPurchasesUpdated(result(BillingResponseCode.OK, ""),
+                    Collections.singletonList(purchase));
+        }, () -> updatesListener.onPurchasesUpdated(disconnected(), null));
+        return result(BillingResponseCode.OK, "");
+    }
+
+    /**
+     * Runs {@code ok} after the latency if connected when called, {@code
+     * failed} otherwise, then drops the connection if the script says so. A
+     * drop only fails operations issued after it, so runs stay repeatable.
+     */
+    private void answer(ThrowingRunnable ok, Runnable failed) {
+        if (!isReady()) {
+            later(failed::run);
+            return;
+        }
+
+        later(() -> {
+            ok.run();
+
+            int every = disconnectEvery;
+            boolean drop = every > 0 && operations.incrementAndGet() % every == 0;
+            if (drop && state.compareAndSet(CONNECTED, DISCONNECTED)) {
+                disconnects.incrementAndGet();
+                storm.set(stormAfterDisconnect);
+                BillingClientStateListener listener = connectionListener;
+                if (listener != null) {
+                    listener.onBillingServiceDisconnected();
+                }
+            }
+        });
+    }
+
+    private void later(ThrowingRunnable task) {
+        long delay = latencyMs;
+        long jitter = jitterMs;
+        if (jitter > 0) {
+            synchronized (random) {
+                delay += (long) (random.nextDouble() * jitter);
+            }
+        }
+
+        timer.schedule(() -> main.post(() -> {
+            try {
+                task.run();
+            } catch (Exception e) {
+                throw new IllegalStateException("Fake billing answer failed", e);
+            }
+        }), delay, TimeUnit.MILLISECONDS);
+    }
+
+    private Purchase purchase(String productId, String accountId, boolean acknowledged) throws JSONException {
+        int n = purchaseCount.getAndIncrement();
+        JSONObject json = new JSONObject();
+        json.put("orderId", "GPA.fake-" + n);
+        json.put("packageName", "doenit.app");
+        json.put("productId", productId);
+        json.put("purchaseTime", System.currentTimeMillis());
+        json.put("purchaseState", 0);
+        json.put("purchaseToken", "token-" + productId + "-" + n);
+        json.put("acknowledged", acknowledged);
+        json.put("autoRenewing", true);
+        if (accountId != null) {
+            json.put("obfuscatedAccountId", accountId);
+        }
+        return new Purchase(json.toString(), "fake-signature");
+    }
+
+    private static BillingResult disconnected() {
+        return result(BillingResponseCode.SERVICE_DISCONNECTED, "Not connected (scripted)");
+    }
+
+    private static BillingResult result(int code, String message) {
+        return BillingResult.newBuilder().setResponseCode(code).setDebugMessage(message).build();
+    }
+
+    private static final class HeldAcknowledgement {
+        final String token;
+        final AcknowledgePurchaseResponseListener listener;
+
+        HeldAcknowledgement(String token, AcknowledgePurchaseResponseListener listener) {
+            this.token = token;
+            this.listener = listener;
+        }
+    }
+
+    private interface ThrowingRunnable {
+        void run() throws Exception;
+    }
+}
@@ -0,0 +1,64 @@
+package doenit.app;
+
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * A plain-text table for the performance tests, written to build/reports
+ * and attached to the failure message, so results never go to stdout.
+ */
+final class PerfReport {
+    private final StringBuilder text = new StringBuilder();
+
+    /**
+     * Appends a formatted line; {@code format} ends with its own {@code %n}.
+     */
+    PerfReport line(String format, Object... args) {
+        text.append(String.format(Locale.ROOT, format, args));
+        return this;
+    }
+
+    /**
+     * Writes the report to build/reports/{@code fileName}.
+     */
+    void write(String fileName) throws IOException {
+        File file = new File("build/reports/" + fileName);
+        File dir = file.getParentFile();
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Could not create " + dir);
+        }
+        try (Writer writer = new FileWriter(file)) {
+            writer.write(text.toString());
+        }
+    }
+
+    /**
+     * Fails the test with every problem and the report, if there are any.
+     */
+    void failIf(List<String> problems, String title) {
+        if (!problems.isEmpty()) {
+            fail(title + ":\n" + String.join("\n", problems) + "\n\n" + text);
+        }
+    }
+
+    /**
+     * Nearest-rank percentile.
+     */
+    static long percentile(long[] values, double quantile) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        int rank = (int) Math.ceil(quantile * sorted.length);
+        return sorted[Math.max(0, rank - 1)];
+    }
+
+    static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+}
@@ -0,0 +1,113 @@
+package doenit.app;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.os.Looper;
+
+import com.getcapacitor.JSObject;
+import com.getcapacitor.PluginCall;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@link PurchaseFlows}: one flow per product, shared by every startPurchase
+ * for it, and ended by an answer or the timeout.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 30)
+public class PurchaseFlowsTest {
+    private static final String PRODUCT_ID = "doenit.plus";
+    private static final String OTHER_PRODUCT_ID = "doenit.testing";
+
+    private final List<String> timedOut = new ArrayList<>();
+    private final List<PluginCall> timedOutCalls = new ArrayList<>();
+    private final PurchaseFlows flows = new PurchaseFlows((productId, calls) -> {
+        timedOut.add(productId);
+        timedOutCalls.addAll(calls);
+    });
+
+    @Test
+    public void callsForSameProductJoinOneFlow() {
+        PluginCall first = call();
+        PluginCall second = call();
+
+        assertTrue(flows.join(PRODUCT_ID, first));
+        assertFalse(flows.join(PRODUCT_ID, second));
+        assertTrue(flows.join(OTHER_PRODUCT_ID, call()));
+        assertEquals(2, flows.size());
+
+        List<PluginCall> calls = flows.take(PRODUCT_ID);
+        assertEquals(2, calls.size());
+        assertSame(first, calls.get(0));
+        assertSame(second, calls.get(1));
+        assertEquals(1, flows.size());
+
+        // Ended, so the next call starts a new flow
+        assertTrue(flows.take(PRODUCT_ID).isEmpty());
+        assertTrue(flows.join(PRODUCT_ID, call()));
+    }
+
+    @Test
+    public void updatesWithoutProductEndLaunchedFlow() {
+        flows.join(PRODUCT_ID, call());
+        flows.join(OTHER_PRODUCT_ID, call());
+        assertTrue(flows.takeLaunched().isEmpty());
+
+        flows.markLaunched(OTHER_PRODUCT_ID, "offer");
+        assertEquals(1, flows.takeLaunched().size());
+        assertEquals(1, flows.size());
+        assertTrue(flows.takeLaunched().isEmpty());
+    }
+
+    @Test
+    public void takeAllEndsEveryFlow() {
+        flows.join(PRODUCT_ID, call());
+        flows.join(PRODUCT_ID, call());
+        flows.join(OTHER_PRODUCT_ID, call());
+
+        assertEquals(3, flows.takeAll().size());
+        assertEquals(0, flows.size());
+    }
+
+    @Test
+    public void unansweredFlowTimesOut() {
+        PluginCall first = call();
+        PluginCall second = call();
+        flows.join(PRODUCT_ID, first);
+        flows.join(PRODUCT_ID, second);
+
+        shadowOf(Looper.getMainLooper()).idleFor(Duration.ofMillis(PurchaseFlows.TIMEOUT_MS - 1));
+        assertTrue(timedOut.isEmpty());
+
+        shadowOf(Looper.getMainLooper()).idleFor(Duration.ofMillis(1));
+        assertEquals(1, timedOut.size());
+        assertEquals(PRODUCT_ID, timedOut.get(0));
+        assertEquals(2, timedOutCalls.size());
+        assertSame(first, timedOutCalls.get(0));
+        assertEquals(0, flows.size());
+    }
+
+    @Test
+    public void answeredFlowDoesNotTimeOut() {
+        flows.join(PRODUCT_ID, call());
+        flows.take(PRODUCT_ID);
+
+        shadowOf(Looper.getMainLooper()).idleFor(Duration.ofMillis(PurchaseFlows.TIMEOUT_MS));
+        assertTrue(timedOut.isEmpty());
+    }
+
+    private static PluginCall call() {
+        return new RecordingCall("BillingService", "startPurchase", new JSObject());
+    }
+}
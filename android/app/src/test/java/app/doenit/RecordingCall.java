@@ -0,0 +1,54 @@
+package doenit.app;
+
+import com.getcapacitor.JSObject;
+import com.getcapacitor.PluginCall;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A plugin call that records its outcome instead of answering over the bridge.
+ * Safe to settle from a callback thread while the test thread waits on it.
+ */
+class RecordingCall extends PluginCall {
+    private final CountDownLatch settled = new CountDownLatch(1);
+
+    volatile JSObject resolved;
+    volatile String rejected;
+    /** The {@code code} of the rejection's error data, if it had one */
+    volatile String rejectedCode;
+    /** {@link System#nanoTime()} when the call was resolved or rejected */
+    volatile long settledNanos;
+
+    RecordingCall(String pluginId, String methodName, JSObject data) {
+        super(null, pluginId, "test", methodName, data);
+    }
+
+    @Override
+    public void resolve() {
+        resolve(new JSObject());
+    }
+
+    @Override
+    public void resolve(JSObject data) {
+        resolved = data != null ? data : new JSObject();
+        settledNanos = System.nanoTime();
+        settled.countDown();
+    }
+
+    @Override
+    public void reject(String msg, String code, Exception ex, JSObject data) {
+        rejected = msg;
+        rejectedCode = data != null ? data.optString("code", code) : code;
+        settledNanos = System.nanoTime();
+        settled.countDown();
+    }
+
+    boolean isSettled() {
+        return settled.getCount() == 0;
+    }
+
+    boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+        return settled.await(timeout, unit);
+    }
+}
@@ -0,0 +1,280 @@
+package doenit.app;
+
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.appwidget.AppWidgetManager;
+import android.content.Context;
+import android.content.Intent;
+import android.widget.RemoteViewsService;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.getcapacitor.Bridge;
+import com.getcapacitor.JSObject;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.Random;
+
+/**
+ * End-to-end timing of a widget refresh on generated task lists, on the JVM.
+ *
+ * Three stages are measured for every dataset size: the plugin's updateTasks,
+ * the provider handling COMPLETE_TASK, and a full factory cycle (onCreate,
+ * onDataSetChanged, getViewAt for every row, onDestroy). Each stage is warmed
+ * up, then its median wall time and allocations on the test thread are
+ * compared with widget-perf-budgets.properties. Every stage runs before the
+ * test fails, so one report lists all exceeded budgets; the report is
+ * written to build/reports/widget-performance.txt and included in the
+ * failure message.
+ *
+ * Runs on API 30 so the widget stays on the factory path on every stage.
+ * Budgets can be scaled for slow machines with -Dwidget.perf.budgetScale=2.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 30)
+public class WidgetPerformanceTest {
+    private static final int[] SIZES = { 100, 1000, 10000 };
+    private static final int WARMUP_RUNS = 2;
+    private static final int MEASURED_RUNS = 5;
+    private static final int CATEGORY_COUNT = 8;
+    private static final long SEED = 42;
+
+    private static final String STAGE_UPDATE_TASKS = "update_tasks";
+    private static final String STAGE_COMPLETE_TASK = "complete_task";
+    private static final String STAGE_FACTORY_CYCLE = "factory_cycle";
+
+    private interface Stage {
+        void run(int iteration) throws Exception;
+    }
+
+    private static final class Result {
+        final String stage;
+        final int size;
+        final double millis;
+        final long bytes;
+
+        Result(String stage, int size, double millis, long bytes) {
+            this.stage = stage;
+            this.size = size;
+            this.millis = millis;
+            this.bytes = bytes;
+        }
+    }
+
+    private final Context context = ApplicationProvider.getApplicationContext();
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+    @Test
+    public void widgetRefreshStaysWithinBudgets() throws Exception {
+        DB.init(context);
+        WidgetSettings.setRenderMode(context, Const.RENDER_MODE_FACTORY);
+        int appWidgetId = shadowOf(AppWidgetManager.getInstance(context))
+                .createWidget(TaskWidgetProvider.class, R.layout.task_widget);
+
+        TaskWidgetPlugin plugin = new TaskWidgetPlugin();
+        Bridge bridge = mock(Bridge.class);
+        when(bridge.getContext()).thenReturn(context);
+        plugin.setBridge(bridge);
+
+        TaskWidgetService service = Robolectric.setupService(TaskWidgetService.class);
+        Properties budgets = loadBudgets();
+        List<Result> results = new ArrayList<>();
+
+        for (int size : SIZES) {
+            JSONArray tasks = generateTasks(size);
+            JSONArray categories = generateCategories();
+
+            results.add(measure(STAGE_UPDATE_TASKS, size, iteration -> {
+                JSObject data = new JSObject();
+                data.put("tasks", tasks);
+                data.put("categories", categories);
+                RecordingCall call = new RecordingCall("TaskWidget", "updateTasks", data);
+                plugin.updateTasks(call);
+                assertTrue("updateTasks rejected: " + call.rejected, call.resolved != null);
+            }));
+
+            results.add(measure(STAGE_COMPLETE_TASK, size, iteration -> {
+                Intent intent = new Intent(context, TaskWidgetProvider.class);
+                intent.setAction(Const.ACTION_COMPLETE_TASK);
+                intent.putExtra(Const.EXTRA_TASK_ID, tasks.getJSONObject(iteration % size).getString("id"));
+                new TaskWidgetProvider().onReceive(context, intent);
+            }));
+
+            // Every row in one window, so getViewAt covers the whole list
+            WidgetPager.resetAll();
+            while (WidgetPager.getWindowSize(context, appWidgetId) < size) {
+                WidgetPager.showMore(appWidgetId);
+            }
+
+            results.add(measure(STAGE_FACTORY_CYCLE, size, iteration -> {
+                Intent intent = new Intent(context, TaskWidgetService.class);
+                intent.putExtra(AppWidgetManager.EXTRA_APPWIDGET_ID, appWidgetId);
+                RemoteViewsService.RemoteViewsFactory factory = service.onGetViewFactory(intent);
+
+                factory.onCreate();
+                factory.onDataSetChanged();
+                int count = factory.getCount();
+                for (int position = 0; position < count; position++) {
+                    factory.getViewAt(position);
+                }
+                factory.onDestroy();
+                assertTrue("Factory showed " + count + " of " + size + " rows", count >= size);
+            }));
+        }
+
+        List<String> exceeded = new ArrayList<>();
+        PerfReport report = new PerfReport();
+        report.line("%-14s %6s %10s %12s %10s %12s%n",
+                "stage", "tasks", "median ms", "budget ms", "alloc KB", "budget KB");
+        for (Result result : results) {
+            double millisBudget = budget(budgets, result.stage, result.size, "ms");
+            double kbBudget = budget(budgets, result.stage, result.size, "kb");
+            long kb = result.bytes / 1024;
+
+            report.line("%-14s %6d %10.1f %12.0f %10s %12.0f%n",
+                    result.stage, result.size, result.millis, millisBudget,
+                    result.bytes >= 0 ? String.valueOf(kb) : "n/a", kbBudget);
+
+            if (result.millis > millisBudget) {
+                exceeded.add(String.format(Locale.ROOT, "%s x%d: %.1f ms > %.0f ms",
+                        result.stage, result.size, result.millis, millisBudget));
+            }
+            if (result.bytes >= 0 && kb > kbBudget) {
+                exceeded.add(String.format(Locale.ROOT, "%s x%d: %d KB > %.0f KB",
+                        result.stage, result.size, kb, kbBudget));
+            }
+        }
+
+        report.write("widget-performance.txt");
+        report.failIf(exceeded, "Widget performance budgets exceeded");
+    }
+
+    /**
+     * Runs the stage {@code WARMUP_RUNS} times unmeasured, then
+     * {@code MEASURED_RUNS} times.
+     *
+     * @return The median wall time and median allocated bytes (-1 when the
+     *         JVM cannot count allocations).
+     */
+    private Result measure(String stage, int size, Stage body) throws Exception {
+        for (int i = 0; i < WARMUP_RUNS; i++) {
+            body.run(i);
+        }
+
+        long[] nanos = new long[MEASURED_RUNS];
+        long[] bytes = new long[MEASURED_RUNS];
+        for (int i = 0; i < MEASURED_RUNS; i++) {
+            long allocatedBefore = allocatedBytes();
+            long start = System.nanoTime();
+            body.run(WARMUP_RUNS + i);
+            nanos[i] = System.nanoTime() - start;
+            long allocatedAfter = allocatedBytes();
+            bytes[i] = allocatedBefore >= 0 && allocatedAfter >= 0 ? allocatedAfter - allocatedBefore : -1;
+        }
+
+        return new Result(stage, size, PerfReport.millis(median(nanos)), median(bytes));
+    }
+
+    /**
+     * @return The bytes allocated by this thread so far, or -1 on JVMs without
+     *         allocation counting.
+     */
+    private long allocatedBytes() {
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean hotspot = (com.sun.management.ThreadMXBean) threads;
+            if (hotspot.isThreadAllocatedMemorySupported() && hotspot.isThreadAllocatedMemoryEnabled()) {
+                return hotspot.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+
+    private static long median(long[] values) {
+        return PerfReport.percentile(values, 0.5);
+    }
+
+    private static Properties loadBudgets() throws IOException {
+        Properties budgets = new Properties();
+        try (InputStream in = WidgetPerformanceTest.class.getClassLoader()
+                .getResourceAsStream("widget-perf-budgets.properties")) {
+            if (in == null) {
+                throw new IOException("widget-perf-budgets.properties not found");
+            }
+            budgets.load(in);
+        }
+        return budgets;
+    }
+
+    private static double budget(Properties budgets, String stage, int size, String unit) {
+        String key = stage + "." + size + "." + unit;
+        String value = budgets.getProperty(key);
+        if (value == null) {
+            throw new IllegalStateException("No budget configured for " + key);
+        }
+        double scale = Double.parseDouble(System.getProperty("widget.perf.budgetScale", "1"));
+        return Double.parseDouble(value.trim()) * scale;
+    }
+
+    /**
+     * Tasks shaped like the ones the app sends: a spread of past, current and
+     * future dates, some undated, ranged, important or repeating.
+     */
+    private static JSONArray generateTasks(int count) throws JSONException {
+        Random random = new Random(SEED + count);
+        int today = TaskUtil.today();
+
+        JSONArray tasks = new JSONArray();
+        for (int i = 0; i < count; i++) {
+            JSONObject task = new JSONObject();
+            task.put("id", "task-" + count + "-" + i);
+            task.put("name", "Generated task " + i + " " + Long.toHexString(random.nextLong()));
+
+            int kind = random.nextInt(10);
+            if (kind < 8) {
+                int start = today + random.nextInt(60) - 20;
+                task.put("start_date", TaskUtil.toIsoDate(start));
+                if (kind < 3) {
+                    task.put("due_date", TaskUtil.toIsoDate(start + 1 + random.nextInt(7)));
+                }
+            }
+
+            if (random.nextInt(3) > 0) {
+                task.put("category_id", "category-" + random.nextInt(CATEGORY_COUNT));
+            }
+            task.put("important", random.nextInt(8) == 0);
+            task.put("repeat_interval", random.nextInt(10) == 0 ? "weekly" : "");
+            tasks.put(task);
+        }
+        return tasks;
+    }
+
+    private static JSONArray generateCategories() throws JSONException {
+        JSONArray categories = new JSONArray();
+        for (int i = 0; i < CATEGORY_COUNT; i++) {
+            JSONObject category = new JSONObject();
+            category.put("id", "category-" + i);
+            category.put("name", "Category " + i);
+            categories.put(category);
+        }
+        return categories;
+    }
+}
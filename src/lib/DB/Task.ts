@@ -1,5 +1,6 @@
 import type { RxCollection } from "$lib/chunk/rxdb";
 import { DateUtil } from "$lib/core/date_util";
+import { Reminders } from "$lib/core/reminders";
 import { Secure } from "$lib/core/secure";
 import { user } from "$lib/base/user.svelte";
 
@@ -145,6 +146,7 @@ export class TaskTable extends Table<Task> {
     }
 
     task.completed_at = DateUtil.format(new Date(), "YYYY-MM-DD HH:mm:ss");
+    Reminders.cancelForTasks([task.id]);
     return this.update(task.id, task);
   }
 
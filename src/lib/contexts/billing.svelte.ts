@@ -21,6 +21,7 @@ interface BillingPlugin {
   startPurchase(options: { product_id: string; account_id: string }): Promise<{ purchase_token: string }>;
   queryPurchases(options: { account_id: string }): Promise<{ purchases: Purchase[] }>;
   acknowledgePurchase(options: { purchase_token: string }): Promise<void>;
+  recordVerification(options: { purchase_token: string; valid: boolean; expiry_time?: number }): Promise<void>;
 }
 
 const BillingService = Capacitor.registerPlugin<BillingPlugin>("BillingService");
@@ -86,6 +87,7 @@ export class BillingContext {
       const { purchases } = await BillingService.queryPurchases({
         account_id: user.uid,
       });
+      const to_revalidate: Purchase[] = [];
       for (const purchase of purchases) {
         purchase.title = purchase.title.replace(/\(.*\)$/, "");
 
@@ -100,16 +102,24 @@ export class BillingContext {
         let details: SubscriptionDetails | null = null;
         let verified_at = null;
         const WEEK_IN_MS = 7 * 24 * 60 * 60 * 1000;
-        // Verifieer die aankoop met die backend, as dit langer as 'n week gelede was.
 
-        // Could not (yet) sync with google.
-        if (!user.getToken) return;
+        if (purchase.entitled !== undefined) {
+          // Die handtekening is reeds op die toestel geverifieer; die backend hervalideer net in die agtergrond.
+          isValid = purchase.entitled;
+          if (purchase.verified_time) verified_at = new Date(purchase.verified_time).toISOString();
+          if (purchase.needs_revalidation && user.getToken) to_revalidate.push(purchase);
+        } else {
+          // Verifieer die aankoop met die backend, as dit langer as 'n week gelede was.
+
+          // Could not (yet) sync with google.
+          if (!user.getToken) return;
 
-        if (!purchase.verified_at || Date.now() - +new Date(purchase.verified_at) > WEEK_IN_MS) {
-          const result = await verifyPurchaseWithBackend(purchase);
-          verified_at = new Date().toISOString();
-          isValid = result.isValid;
-          details = result.details;
+          if (!purchase.verified_at || Date.now() - +new Date(purchase.verified_at) > WEEK_IN_MS) {
+            const result = await verifyPurchaseWithBackend(purchase);
+            verified_at = new Date().toISOString();
+            isValid = result.isValid;
+            details = result.details;
+          }
         }
 
         const index = products.findIndex((p) => p.product_id === purchase.product_id);
@@ -134,21 +144,57 @@ export class BillingContext {
       }
 
       user.products = products;
+      for (const purchase of to_revalidate) this.#revalidate(purchase);
     } catch (error) {
       const error_message = error instanceof Error ? error.message : String(error);
       Alert.error(`Kon nie betaaldiens-initialisering voltooi nie: ${error_message}`);
     }
   }
+
+  /**
+   * Hervalideer 'n aankoop wat reeds op die toestel geverifieer is met die backend, sonder om die refresh op
+   * te hou. Die uitslag word natief gestoor sodat die volgende kontroles plaaslik beantwoord word.
+   */
+  #revalidate(purchase: Purchase) {
+    verifyPurchaseWithBackend(purchase)
+      .then(async ({ isValid, details, checked }) => {
+        if (!checked) return;
+
+        await BillingService.recordVerification({
+          purchase_token: purchase.purchase_token,
+          valid: isValid,
+          expiry_time: details?.expiryTime?.getTime(),
+        });
+
+        user.products = user.products.map((product) => {
+          if (product.product_id !== purchase.product_id) return product;
+          return {
+            ...product,
+            is_active: isValid,
+            is_canceled: details?.isCancelled ?? product.is_canceled,
+            verified_at: new Date().toISOString(),
+            expiry_date: details?.expiryTime ?? product.expiry_date,
+          };
+        });
+      })
+      .catch((error) => {
+        const error_message = error instanceof Error ? error.message : String(error);
+        console.log("Background purchase revalidation failed:", error_message);
+      });
+  }
 }
 
 export const [getBillingContext, setBillingContext] = createContext<BillingContext>();
 
+/**
+ * @returns `checked` is false when the backend could not be reached, so `isValid` says nothing about the purchase.
+ */
 async function verifyPurchaseWithBackend(
   purchase: Purchase
-): Promise<{ isValid: boolean; details: SubscriptionDetails | null }> {
+): Promise<{ isValid: boolean; details: SubscriptionDetails | null; checked: boolean }> {
   try {
     const id_token = user.getToken ? await user.getToken() : null;
-    if (!id_token) return { isValid: false, details: null };
+    if (!id_token) return { isValid: false, details: null, checked: false };
 
     const package_name = PUBLIC_APP_ID ?? "doenit.app";
 
@@ -171,7 +217,7 @@ async function verifyPurchaseWithBackend(
       // If valid is explicitly false, don't throw error - just return false
       if (data.valid === false) {
         console.log("Purchase verification failed:", data.error);
-        return { isValid: false, details: null };
+        return { isValid: false, details: null, checked: true };
       }
       throw new Error(data.error || "Iets het verkeerd geloop tydens verifikasie.");
     }
@@ -187,13 +233,13 @@ async function verifyPurchaseWithBackend(
           }
         : null;
 
-    return { isValid, details };
+    return { isValid, details, checked: true };
   } catch (error) {
     const error_message = error instanceof Error ? error.message : String(error);
-    if (error_message === "User not found") return { isValid: false, details: null };
-    if (error_message === "Failed to fetch") return { isValid: false, details: null };
+    if (error_message === "User not found") return { isValid: false, details: null, checked: false };
+    if (error_message === "Failed to fetch") return { isValid: false, details: null, checked: false };
 
     alert(`Kon nie aankoop met backend verifieer nie: ${error_message}`);
-    return { isValid: false, details: null };
+    return { isValid: false, details: null, checked: false };
   }
 }
@@ -0,0 +1,230 @@
+import { Capacitor } from "@capacitor/core";
+import { Logger } from "$lib/core/logger";
+
+export interface NativeLogEntry {
+  /** Epoch milliseconds */
+  time: number;
+  level: "V" | "D" | "I" | "W" | "E";
+  tag: string;
+  thread: string;
+  message: string;
+}
+
+export interface NativeHistogram {
+  count: number;
+  sum_us: number;
+  max_us: number;
+  p50_us: number;
+  p90_us: number;
+  p99_us: number;
+}
+
+export interface NativeMetrics {
+  counters: Record<string, number>;
+  gauges: Record<string, number>;
+  histograms: Record<string, NativeHistogram>;
+}
+
+export interface StartupStage {
+  count: number;
+  p50_ms: number;
+  p90_ms: number;
+  p99_ms: number;
+  max_ms: number;
+}
+
+/**
+ * How the launch served the web bundle: "asset_server" from the native cache
+ * of precompressed chunks, "default_assets" through Capacitor's handler
+ */
+export type StartupVariant = "asset_server" | "default_assets";
+
+/**
+ * Milliseconds from process start to each stage of a cold launch, over the
+ * most recent launches
+ */
+export interface StartupTimeline {
+  launches: number;
+  /** The last launch: {time, variant, [stage]: ms} */
+  latest: Record<string, number | string>;
+  stages: Record<string, StartupStage>;
+}
+
+export interface DiagnosticsPlugin {
+  getNativeLog(): Promise<{ entries: NativeLogEntry[] }>;
+  clearNativeLog(): Promise<{ success: boolean }>;
+  getNativeMetrics(): Promise<{ metrics: NativeMetrics }>;
+  resetNativeMetrics(): Promise<{ success: boolean }>;
+  exportTrace({ share }: { share?: boolean }): Promise<{ path: string; uri: string }>;
+  clearTrace(): Promise<{ success: boolean }>;
+  markStartup(): Promise<{ success: boolean }>;
+  getStartupTimeline({ variant }: { variant?: StartupVariant }): Promise<{ timeline: StartupTimeline }>;
+  setAssetServing({ enabled }: { enabled: boolean }): Promise<{ success: boolean; enabled: boolean }>;
+  clearStartupTimeline(): Promise<{ success: boolean }>;
+}
+
+/** Only registered in debug builds */
+interface WidgetSyncDebugPlugin {
+  simulateWidgetDeltas({
+    count,
+    messages,
+  }: {
+    count?: number;
+    messages?: Record<string, string>[];
+  }): Promise<{ success: boolean; sent: number }>;
+}
+
+const DiagnosticsNative = Capacitor.registerPlugin<DiagnosticsPlugin>("Diagnostics");
+const WidgetSyncDebugNative = Capacitor.registerPlugin<WidgetSyncDebugPlugin>("WidgetSyncDebug");
+
+/**
+ * Native diagnostics for bug reports. Only available on Android.
+ */
+export class Diagnostics {
+  static isAvailable() {
+    return Capacitor.getPlatform() === "android";
+  }
+
+  static async getNativeLog(): Promise<NativeLogEntry[]> {
+    try {
+      if (!Diagnostics.isAvailable()) return [];
+
+      const { entries } = await DiagnosticsNative.getNativeLog();
+      return entries;
+    } catch (error) {
+      Logger.error("Diagnostics getNativeLog failed", error);
+      return [];
+    }
+  }
+
+  static async clearNativeLog() {
+    try {
+      if (!Diagnostics.isAvailable()) return;
+
+      await DiagnosticsNative.clearNativeLog();
+    } catch (error) {
+      Logger.error("Diagnostics clearNativeLog failed", error);
+    }
+  }
+
+  /**
+   * Native counters, gauges and latency histograms (in microseconds) since
+   * the last reset, for attaching to the app's own telemetry.
+   */
+  static async getNativeMetrics(): Promise<NativeMetrics | null> {
+    try {
+      if (!Diagnostics.isAvailable()) return null;
+
+      const { metrics } = await DiagnosticsNative.getNativeMetrics();
+      return metrics;
+    } catch (error) {
+      Logger.error("Diagnostics getNativeMetrics failed", error);
+      return null;
+    }
+  }
+
+  static async resetNativeMetrics() {
+    try {
+      if (!Diagnostics.isAvailable()) return;
+
+      await DiagnosticsNative.resetNativeMetrics();
+    } catch (error) {
+      Logger.error("Diagnostics resetNativeMetrics failed", error);
+    }
+  }
+
+  /**
+   * Writes the native span trace as a Chrome trace-event file (open it in
+   * ui.perfetto.dev) and optionally opens the share sheet for it.
+   */
+  static async exportTrace(share = false): Promise<string | null> {
+    try {
+      if (!Diagnostics.isAvailable()) return null;
+
+      const { uri } = await DiagnosticsNative.exportTrace({ share });
+      return uri;
+    } catch (error) {
+      Logger.error("Diagnostics exportTrace failed", error);
+      return null;
+    }
+  }
+
+  static async clearTrace() {
+    try {
+      if (!Diagnostics.isAvailable()) return;
+
+      await DiagnosticsNative.clearTrace();
+    } catch (error) {
+      Logger.error("Diagnostics clearTrace failed", error);
+    }
+  }
+
+  static async markStartup() {
+    try {
+      if (!Diagnostics.isAvailable()) return;
+
+      await DiagnosticsNative.markStartup();
+    } catch (error) {
+      Logger.error("Diagnostics markStartup failed", error);
+    }
+  }
+
+  /**
+   * Percentiles of the cold-start stages (application create, plugin
+   * registration, bridge ready, page finished, first JS call, pending
+   * updates) across recent launches, optionally only those of one variant
+   */
+  static async getStartupTimeline(variant?: StartupVariant): Promise<StartupTimeline | null> {
+    try {
+      if (!Diagnostics.isAvailable()) return null;
+
+      const { timeline } = await DiagnosticsNative.getStartupTimeline({ variant });
+      return timeline;
+    } catch (error) {
+      Logger.error("Diagnostics getStartupTimeline failed", error);
+      return null;
+    }
+  }
+
+  /**
+   * Serve the precompressed bundle chunks natively (the default) or through
+   * Capacitor's handler, from the next launch on. Compare the two with
+   * getStartupTimeline("asset_server") and getStartupTimeline("default_assets")
+   */
+  static async setAssetServing(enabled: boolean) {
+    try {
+      if (!Diagnostics.isAvailable()) return;
+
+      await DiagnosticsNative.setAssetServing({ enabled });
+    } catch (error) {
+      Logger.error("Diagnostics setAssetServing failed", error);
+    }
+  }
+
+  static async clearStartupTimeline() {
+    try {
+      if (!Diagnostics.isAvailable()) return;
+
+      await DiagnosticsNative.clearStartupTimeline();
+    } catch (error) {
+      Logger.error("Diagnostics clearStartupTimeline failed", error);
+    }
+  }
+
+  /**
+   * Feeds widget deltas to the native sync handler as if they came over FCM.
+   * Without messages, generates {@link count} random deltas against the
+   * current widget snapshot. Debug builds only.
+   */
+  static async simulateWidgetDeltas(count = 1, messages?: Record<string, string>[]): Promise<number> {
+    try {
+      if (!Diagnostics.isAvailable()) return 0;
+
+      const { sent } = await WidgetSyncDebugNative.simulateWidgetDeltas({ count, messages });
+      return sent;
+    } catch (error) {
+      Logger.error("Diagnostics simulateWidgetDeltas failed", error);
+      return 0;
+    }
+  }
+}
@@ -0,0 +1,62 @@
+import { Capacitor } from "@capacitor/core";
+import { Logger } from "$lib/core/logger";
+
+export interface NativeReminder {
+  id: number;
+  title: string;
+  body: string;
+  /** Epoch milliseconds */
+  at: number;
+  task_ids: string[];
+}
+
+export interface RemindersPlugin {
+  schedule({ reminders }: { reminders: NativeReminder[] }): Promise<{ success: boolean; count: number }>;
+  cancelForTasks({ task_ids }: { task_ids: string[] }): Promise<{ success: boolean }>;
+  cancel({ ids }: { ids: number[] }): Promise<{ success: boolean }>;
+  cancelAll(): Promise<{ success: boolean }>;
+  getPending(): Promise<{ reminders: Omit<NativeReminder, "body">[] }>;
+}
+
+const RemindersNative = Capacitor.registerPlugin<RemindersPlugin>("Reminders");
+
+/**
+ * Task reminders scheduled natively, so the widget can cancel a task's
+ * reminders when it is completed there.
+ */
+export class Reminders {
+  static isAvailable() {
+    return Capacitor.getPlatform() === "android";
+  }
+
+  static async schedule(reminders: NativeReminder[]) {
+    try {
+      if (!Reminders.isAvailable() || !reminders.length) return;
+
+      const result = await RemindersNative.schedule({ reminders });
+      Logger.notification("Reminders scheduled", result);
+    } catch (error) {
+      Logger.error("Reminders schedule failed", error);
+    }
+  }
+
+  static async cancelForTasks(task_ids: string[]) {
+    try {
+      if (!Reminders.isAvailable() || !task_ids.length) return;
+
+      await RemindersNative.cancelForTasks({ task_ids });
+    } catch (error) {
+      Logger.error("Reminders cancelForTasks failed", error);
+    }
+  }
+
+  static async cancelAll() {
+    try {
+      if (!Reminders.isAvailable()) return;
+
+      await RemindersNative.cancelAll();
+    } catch (error) {
+      Logger.error("Reminders cancelAll failed", error);
+    }
+  }
+}
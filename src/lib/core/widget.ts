@@ -1,14 +1,77 @@
 import { Capacitor } from "@capacitor/core";
+import { Directory, Encoding, Filesystem } from "@capacitor/filesystem";
 import { Logger } from "$lib/core/logger";
 
 export interface TaskWidgetPlugin {
-  updateTasks({ tasks, categories }: { tasks: Task[]; categories: Category[] }): Promise<{ success: boolean }>;
+  updateTasks({
+    tasks,
+    categories,
+    dry_run,
+  }: {
+    tasks: Task[];
+    categories: Category[];
+    dry_run?: boolean;
+  }): Promise<{ success: boolean }>;
+  updateTasksFromFile({
+    path,
+    checksum,
+    categories,
+    dry_run,
+  }: {
+    path: string;
+    checksum: string;
+    categories: Category[];
+    dry_run?: boolean;
+  }): Promise<{ success: boolean }>;
   updateLanguage({ language }: { language: Language }): Promise<{ success: boolean }>;
   updateTheme({ theme }: { theme: Theme }): Promise<{ success: boolean }>;
+  setPageSize({ page_size }: { page_size: number }): Promise<{ success: boolean; page_size: number }>;
+  setRenderMode({
+    mode,
+  }: {
+    mode: WidgetRenderMode;
+  }): Promise<{ success: boolean; mode: WidgetRenderMode; collection_active: boolean }>;
+  getPendingMutations(): Promise<{ success: boolean; mutations: PendingMutation[] }>;
+  ackPendingMutations({ ids }: { ids: string[] }): Promise<{ success: boolean; removed: number }>;
+}
+
+/**
+ * A task change made natively (the widget's quick-add dialog or postpone
+ * actions) while the app was closed, waiting to be applied to the local database
+ */
+export interface PendingMutation {
+  id: string;
+  type: "create" | "update";
+  task_id: string;
+  fields: Partial<Task>;
+  created_at: number;
+}
+
+/**
+ * "collection" pushes the rows with the widget on Android 12+; "factory" binds
+ * the RemoteViewsService, which is also what older devices always use.
+ */
+export type WidgetRenderMode = "collection" | "factory";
+
+export interface SnapshotHandoffResult {
+  count: number;
+  bytes: number;
+  /** Median milliseconds per updateTasks call */
+  bridge_ms: number;
+  /** Median milliseconds per file write plus updateTasksFromFile call */
+  file_ms: number;
 }
 
 const TaskWidget = Capacitor.registerPlugin<TaskWidgetPlugin>("TaskWidget");
 
+/**
+ * From this many tasks on, the snapshot is handed over as a file: below it the
+ * extra file write costs more than the bridge copies it saves
+ */
+const FILE_HANDOFF_MIN_TASKS = 500;
+const SNAPSHOT_DIR = "widget";
+let snapshot_seq = 0;
+
 export class Widget {
   static async updateLanguage(language: Language) {
     try {
@@ -37,12 +100,54 @@ export class Widget {
   }
 
   /**
-   * Update the widget display
+   * Set how many tasks the widget shows per page before its "show more" row
+   */
+  static async setPageSize(page_size: number) {
+    try {
+      if (!Capacitor.isNativePlatform()) return;
+
+      const result = await TaskWidget.setPageSize({ page_size });
+      Logger.widget("Page size updated", result);
+    } catch (error) {
+      const error_message = error instanceof Error ? error.message : String(error);
+      Logger.error("Widget setPageSize failed", error);
+      alert(`Kon nie widget se 'setPageSize' bywerk nie: ${error_message}`);
+    }
+  }
+
+  /**
+   * Switch the widget list's rendering path, e.g. to compare the
+   * widget.first_row.* native metrics of both
+   */
+  static async setRenderMode(mode: WidgetRenderMode) {
+    try {
+      if (!Capacitor.isNativePlatform()) return;
+
+      const result = await TaskWidget.setRenderMode({ mode });
+      Logger.widget("Render mode updated", result);
+    } catch (error) {
+      Logger.error("Widget setRenderMode failed", error);
+    }
+  }
+
+  /**
+   * Update the widget display. Large lists are written to a file and handed
+   * over by path, so the bridge does not carry (and re-parse) the whole list
    */
   static async updateTasks(tasks: Task[], categories: Category[]) {
     try {
       if (!Capacitor.isNativePlatform()) return;
 
+      if (tasks.length >= FILE_HANDOFF_MIN_TASKS) {
+        try {
+          const result = await Widget.handOffTasks(JSON.stringify(tasks), categories);
+          Logger.widget("Tasks updated from file", result);
+          return;
+        } catch (error) {
+          Logger.error("Widget file handoff failed, using the bridge", error);
+        }
+      }
+
       const result = await TaskWidget.updateTasks({ tasks, categories });
       Logger.widget("Tasks updated", result);
     } catch (error) {
@@ -51,4 +156,123 @@ export class Widget {
       alert(`Kon nie widget se 'updateTasks' bywerk nie: ${error_message}`);
     }
   }
+
+  /**
+   * Write the tasks JSON to a uniquely named app-private file and let the
+   * native side ingest it; the native side deletes the file afterwards
+   */
+  private static async handOffTasks(tasks_json: string, categories: Category[], dry_run = false) {
+    const path = `${SNAPSHOT_DIR}/snapshot-${Date.now()}-${snapshot_seq++}.json`;
+    const checksum = await sha256(tasks_json);
+
+    await Filesystem.writeFile({
+      path,
+      data: tasks_json,
+      directory: Directory.Data,
+      encoding: Encoding.UTF8,
+      recursive: true,
+    });
+
+    return TaskWidget.updateTasksFromFile({ path, checksum, categories, dry_run });
+  }
+
+  /**
+   * Compare the bridge and file handoff paths on generated lists. Both run as
+   * dry runs, so the widget keeps its real tasks
+   */
+  static async benchmarkSnapshotHandoff(counts = [1000, 10000], runs = 5): Promise<SnapshotHandoffResult[]> {
+    const results: SnapshotHandoffResult[] = [];
+    if (!Capacitor.isNativePlatform()) return results;
+
+    for (const count of counts) {
+      const tasks = generateTasks(count);
+      const bridge_times = [];
+      const file_times = [];
+
+      for (let run = 0; run < runs; run++) {
+        let start = performance.now();
+        await TaskWidget.updateTasks({ tasks, categories: [], dry_run: true });
+        bridge_times.push(performance.now() - start);
+
+        start = performance.now();
+        await Widget.handOffTasks(JSON.stringify(tasks), [], true);
+        file_times.push(performance.now() - start);
+      }
+
+      const result = {
+        count,
+        bytes: new TextEncoder().encode(JSON.stringify(tasks)).length,
+        bridge_ms: median(bridge_times),
+        file_ms: median(file_times),
+      };
+      Logger.widget("Snapshot handoff benchmark", result);
+      results.push(result);
+    }
+
+    return results;
+  }
+
+  /**
+   * Get the task changes queued natively since they were last acknowledged
+   */
+  static async getPendingMutations(): Promise<PendingMutation[]> {
+    try {
+      if (!Capacitor.isNativePlatform()) return [];
+
+      const result = await TaskWidget.getPendingMutations();
+      return result.mutations ?? [];
+    } catch (error) {
+      Logger.error("Widget getPendingMutations failed", error);
+      return [];
+    }
+  }
+
+  /**
+   * Drop the queued changes that have been applied
+   */
+  static async ackPendingMutations(ids: string[]) {
+    try {
+      if (!Capacitor.isNativePlatform() || !ids.length) return;
+
+      const result = await TaskWidget.ackPendingMutations({ ids });
+      Logger.widget("Pending mutations acknowledged", result);
+    } catch (error) {
+      Logger.error("Widget ackPendingMutations failed", error);
+    }
+  }
+}
+
+async function sha256(text: string) {
+  const hash = await crypto.subtle.digest("SHA-256", new TextEncoder().encode(text));
+  return Array.from(new Uint8Array(hash))
+    .map((b) => b.toString(16).padStart(2, "0"))
+    .join("");
+}
+
+function median(values: number[]) {
+  const sorted = [...values].sort((a, b) => a - b);
+  return sorted[Math.floor(sorted.length / 2)];
+}
+
+/**
+ * Tasks shaped like the real ones, as far as the widget reads them
+ */
+function generateTasks(count: number): Task[] {
+  const DAY = 24 * 60 * 60 * 1000;
+  const tasks = [];
+  for (let i = 0; i < count; i++) {
+    const due_date = new Date(Date.now() + ((i % 60) - 10) * DAY).toISOString().slice(0, 10);
+    tasks.push({
+      id: `benchmark-${i}`,
+      name: `Benchmark task ${i}`,
+      description: "",
+      due_date,
+      start_date: null,
+      important: i % 7 === 0,
+      category_id: null,
+      repeat_interval: "",
+      archived: false,
+    } as unknown as Task);
+  }
+  return tasks;
 }
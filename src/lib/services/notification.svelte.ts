@@ -6,6 +6,7 @@ import { sortTasksByDueDate, wait } from "$lib";
 import { App } from "@capacitor/app";
 import { user } from "$lib/base/user.svelte";
 import { DateUtil } from "$lib/core/date_util";
+import { Reminders, type NativeReminder } from "$lib/core/reminders";
 
 class Notification {
   #initiated: boolean = false;
@@ -106,7 +107,10 @@ class Notification {
       await this.cancelAll();
 
       // Schedule a notification for 30 days in advance.
+      // Summaries cover several tasks, so they stay on LocalNotifications;
+      // only per-task reminders are cancelled when their task is completed.
       const notifications = [];
+      const reminders: NativeReminder[] = [];
 
       // Today at the specified time or default to 8:00 AM.
       const date = new Date();
@@ -178,11 +182,12 @@ class Notification {
               continue;
             }
 
-            notifications.push({
+            reminders.push({
               title: task.name,
               body: t("scheduled_for_now"),
               id: TIME_SPECIFIC_ID_BASE + i * 1000 + j,
-              schedule: { at: task_date },
+              at: +task_date,
+              task_ids: [task.id],
             });
           }
         }
@@ -193,7 +198,13 @@ class Notification {
 
       if (!!notifications.length) {
         await LocalNotifications.schedule({ notifications });
-        console.debug(`[😨 Doenit]: ${notifications.length} kennisgewings geskeduleer.`);
+      }
+      if (!!reminders.length) {
+        await this.scheduleTaskReminders(reminders);
+      }
+
+      if (!!notifications.length || !!reminders.length) {
+        console.debug(`[😨 Doenit]: ${notifications.length + reminders.length} kennisgewings geskeduleer.`);
       } else {
         console.debug("[😨 Doenit]: Geen kennisgewings om te skeduleer");
       }
@@ -203,6 +214,25 @@ class Notification {
     }
   }
 
+  /**
+   * Task reminders go through the native scheduler on Android so completing a
+   * task (also from the widget) cancels its reminders.
+   */
+  private async scheduleTaskReminders(reminders: NativeReminder[]) {
+    if (Reminders.isAvailable()) {
+      await Reminders.schedule(reminders);
+      return;
+    }
+
+    const notifications = reminders.map(({ id, title, body, at }) => ({
+      id,
+      title,
+      body,
+      schedule: { at: new Date(at) },
+    }));
+    await LocalNotifications.schedule({ notifications });
+  }
+
   private getPastTaskNotification(all_tasks: Task[], start_date: Date, past_tasks_enabled?: boolean) {
     if (!past_tasks_enabled) return [];
 
@@ -337,6 +367,8 @@ class Notification {
   }
 
   async cancelAll() {
+    await Reminders.cancelAll();
+
     // Cancel all scheduled notifications
     const pending = await LocalNotifications.getPending();
     const ids = pending.notifications.map((n) => ({ id: n.id }));
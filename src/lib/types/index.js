@@ -161,6 +161,11 @@
  * @property {number} purchase_time
  * @property {boolean} acknowledged
  * @property {string} [verified_at]
+ * @property {boolean} [signature_valid] - Play's signature checked on-device; absent when the app has no public key.
+ * @property {boolean} [entitled] - Valid signature and not rejected by the server's last check.
+ * @property {boolean} [needs_revalidation] - The server's last check is missing or older than a week.
+ * @property {number} [verified_time] - When the server last verified the purchase (ms).
+ * @property {number} [expiry_time] - Expiry the server last reported (ms).
  */
 
 /**